@@ -5,7 +5,15 @@ CREATE TABLE IF NOT EXISTS sync_config (
     primary_key VARCHAR(64) NOT NULL,
     include_columns VARCHAR(4000),
     last_update_column VARCHAR(64),
-    active_flag CHAR(1) DEFAULT 'Y'
+    active_flag CHAR(1) DEFAULT 'Y',
+    page_size INT,
+    fetch_size INT,
+    -- INTERVAL is a reserved word, so the column is quoted
+    "INTERVAL" BIGINT,
+    min_interval BIGINT,
+    max_interval BIGINT,
+    priority INT,
+    delete_check_interval BIGINT
     );
 
 CREATE UNIQUE INDEX ux_sync_config_table ON sync_config(table_name);
@@ -21,4 +29,49 @@ CREATE TABLE IF NOT EXISTS sync_log (
     message VARCHAR(4000)
     );
 
-CREATE INDEX ix_sync_log_time ON sync_log(create_time DESC);
\ No newline at end of file
+CREATE INDEX ix_sync_log_time ON sync_log(create_time DESC);
+
+CREATE TABLE IF NOT EXISTS sync_watermark (
+    table_name VARCHAR(128) NOT NULL,
+    db_name VARCHAR(16) NOT NULL,
+    config_signature VARCHAR(4000),
+    last_update TIMESTAMP,
+    last_key VARCHAR(256),
+    last_key_type INT,
+    update_time TIMESTAMP,
+    PRIMARY KEY (table_name, db_name)
+    );
+
+CREATE TABLE IF NOT EXISTS sync_scan_checkpoint (
+    table_name VARCHAR(128) PRIMARY KEY,
+    config_signature VARCHAR(4000),
+    last_key VARCHAR(256),
+    last_key_type INT,
+    cutoff_a TIMESTAMP,
+    cutoff_b TIMESTAMP,
+    keys_inspected BIGINT,
+    update_time TIMESTAMP
+    );
+
+CREATE TABLE IF NOT EXISTS sync_node_checkpoint (
+    table_name VARCHAR(128) PRIMARY KEY,
+    config_signature VARCHAR(4000),
+    last_key VARCHAR(256),
+    last_key_type INT,
+    update_time TIMESTAMP
+    );
+
+CREATE TABLE IF NOT EXISTS sync_capture_state (
+    table_name VARCHAR(128) PRIMARY KEY,
+    config_signature VARCHAR(4000),
+    ready_time TIMESTAMP
+    );
+
+-- created on both databases when dm.sync.cdc.enabled is set; filled by the sync_cdc_<table> triggers
+CREATE TABLE IF NOT EXISTS sync_change_log (
+    seq_id IDENTITY PRIMARY KEY,
+    table_name VARCHAR(128) NOT NULL,
+    pk_value VARCHAR(256) NOT NULL,
+    op CHAR(1) NOT NULL,
+    change_time TIMESTAMP
+    );
@@ -0,0 +1,73 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.entity.SyncConfig;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+final class BenchmarkTables {
+
+    static final String TABLE = "bench";
+
+    private BenchmarkTables() {
+    }
+
+    static EmbeddedDatabase database() {
+        return new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+    }
+
+    static void create(JdbcTemplate jdbcTemplate, int columns, String columnType) {
+        StringBuilder ddl = new StringBuilder("CREATE TABLE " + TABLE + " (id BIGINT PRIMARY KEY, last_update TIMESTAMP");
+        for (int i = 0; i < columns; i++) {
+            ddl.append(", c").append(i).append(' ').append(columnType);
+        }
+        jdbcTemplate.execute(ddl.append(')').toString());
+    }
+
+    static void fill(JdbcTemplate jdbcTemplate, int rows, int columns, String columnType, Timestamp lastUpdate) {
+        List<Object[]> batch = new ArrayList<>(rows);
+        for (long id = 1; id <= rows; id++) {
+            Object[] values = new Object[columns + 2];
+            values[0] = id;
+            values[1] = lastUpdate;
+            for (int i = 0; i < columns; i++) {
+                values[i + 2] = value(columnType, id * 31 + i);
+            }
+            batch.add(values);
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO " + TABLE + " VALUES ("
+                + String.join(", ", Collections.nCopies(columns + 2, "?")) + ")", batch);
+    }
+
+    static Object value(String columnType, long seed) {
+        if (columnType.startsWith("VARCHAR")) {
+            return "value-" + seed;
+        }
+        if (columnType.startsWith("DECIMAL")) {
+            return BigDecimal.valueOf(seed, 2);
+        }
+        if (columnType.startsWith("TIMESTAMP")) {
+            return new Timestamp(1_600_000_000_000L + seed * 1000);
+        }
+        return (int) seed;
+    }
+
+    static SyncConfig config(boolean withLastUpdate) {
+        SyncConfig config = new SyncConfig();
+        config.setTableName(TABLE);
+        config.setPrimaryKey("id");
+        config.setLastUpdateColumn(withLastUpdate ? "last_update" : null);
+        config.setActiveFlag(true);
+        return config;
+    }
+}
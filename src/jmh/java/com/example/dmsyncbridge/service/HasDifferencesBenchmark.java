@@ -0,0 +1,84 @@
+package com.example.dmsyncbridge.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collections;
+
+// column comparison of matched row pairs; half of the pairs differ in their last column
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HasDifferencesBenchmark {
+
+    private static final int PAIRS = 1024;
+
+    @Param({"4", "16", "64"})
+    public int columns;
+
+    @Param({"INT", "VARCHAR(64)", "DECIMAL(18,2)", "TIMESTAMP"})
+    public String columnType;
+
+    private SyncPlan plan;
+    private CompactRow[] rowsA;
+    private CompactRow[] rowsB;
+
+    @Setup
+    public void setUp() throws SQLException {
+        EmbeddedDatabase databaseA = BenchmarkTables.database();
+        EmbeddedDatabase databaseB = BenchmarkTables.database();
+        try {
+            JdbcTemplate jdbcA = new JdbcTemplate(databaseA);
+            JdbcTemplate jdbcB = new JdbcTemplate(databaseB);
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            BenchmarkTables.create(jdbcA, columns, columnType);
+            BenchmarkTables.create(jdbcB, columns, columnType);
+            BenchmarkTables.fill(jdbcA, PAIRS, columns, columnType, now);
+            BenchmarkTables.fill(jdbcB, PAIRS, columns, columnType, now);
+            jdbcB.update("UPDATE " + BenchmarkTables.TABLE + " SET c" + (columns - 1) + " = ? WHERE MOD(id, 2) = 0",
+                    BenchmarkTables.value(columnType, -1));
+
+            plan = SyncPlan.compile(BenchmarkTables.config(true), new DmDialect(), jdbcA, jdbcB);
+            rowsA = load(databaseA, plan.getSchemaA());
+            rowsB = load(databaseB, plan.getSchemaB());
+        } finally {
+            databaseA.shutdown();
+            databaseB.shutdown();
+        }
+    }
+
+    private CompactRow[] load(EmbeddedDatabase database, RowSchema schema) throws SQLException {
+        CompactRow[] rows = new CompactRow[PAIRS];
+        try (RowCursor cursor = RowCursor.open(database, plan.orderedSelectSql(null), Collections.emptyList(),
+                1000, schema, "id")) {
+            for (int i = 0; cursor.next(); i++) {
+                rows[i] = cursor.row();
+            }
+        }
+        return rows;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void compareRows(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(plan.hasDifferences(rowsA[i], rowsB[i]));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.dmsyncbridge.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collections;
+
+// key-ordered merge of both sides; replaces indexing each side by primary key and diffing the key union
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MergeDiffBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"0", "10"})
+    public int missingPercent;
+
+    private EmbeddedDatabase databaseA;
+    private EmbeddedDatabase databaseB;
+    private final MergeReconciler reconciler = new MergeReconciler();
+    private String sql;
+
+    @Setup
+    public void setUp() {
+        databaseA = BenchmarkTables.database();
+        databaseB = BenchmarkTables.database();
+        JdbcTemplate jdbcA = new JdbcTemplate(databaseA);
+        JdbcTemplate jdbcB = new JdbcTemplate(databaseB);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        BenchmarkTables.create(jdbcA, 2, "INT");
+        BenchmarkTables.create(jdbcB, 2, "INT");
+        BenchmarkTables.fill(jdbcA, rows, 2, "INT", now);
+        BenchmarkTables.fill(jdbcB, rows, 2, "INT", now);
+        if (missingPercent > 0) {
+            jdbcB.update("DELETE FROM " + BenchmarkTables.TABLE + " WHERE MOD(id, ?) = 0", 100 / missingPercent);
+        }
+        sql = "SELECT id FROM " + BenchmarkTables.TABLE + " ORDER BY id";
+    }
+
+    @TearDown
+    public void tearDown() {
+        databaseA.shutdown();
+        databaseB.shutdown();
+    }
+
+    @Benchmark
+    public long mergeKeys(Blackhole blackhole) throws SQLException {
+        try (RowCursor cursorA = RowCursor.open(databaseA, sql, Collections.emptyList(), 1000, null, "id");
+             RowCursor cursorB = RowCursor.open(databaseB, sql, Collections.emptyList(), 1000, null, "id")) {
+            return reconciler.reconcile(BenchmarkTables.TABLE, cursorA, cursorB, (key, rowA, rowB) -> {
+                blackhole.consume(key);
+                blackhole.consume(rowB);
+            });
+        }
+    }
+}
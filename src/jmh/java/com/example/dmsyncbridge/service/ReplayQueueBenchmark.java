@@ -0,0 +1,86 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.config.SyncProperties;
+import com.example.dmsyncbridge.entity.SyncConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+
+// a replay pass over a deep queue in which every operation is still backing off
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayQueueBenchmark {
+
+    @Param({"10000", "100000"})
+    public int depth;
+
+    private EmbeddedDatabase databaseA;
+    private EmbeddedDatabase databaseB;
+    private SyncLogService logService;
+    private DmSyncService service;
+
+    @Setup
+    public void setUp() throws SQLException {
+        databaseA = BenchmarkTables.database();
+        databaseB = BenchmarkTables.database();
+        JdbcTemplate jdbcA = new JdbcTemplate(databaseA);
+        JdbcTemplate jdbcB = new JdbcTemplate(databaseB);
+        BenchmarkTables.create(jdbcA, 4, "INT");
+        BenchmarkTables.create(jdbcB, 4, "INT");
+        BenchmarkTables.fill(jdbcA, 1, 4, "INT", new Timestamp(System.currentTimeMillis()));
+
+        SyncProperties properties = new SyncProperties();
+        logService = new SyncLogService(jdbcA, properties);
+        service = new DmSyncService(jdbcA, jdbcB, databaseA, databaseB, new SyncConfigService(), logService, properties,
+                new SimpleMeterRegistry());
+
+        SyncConfig config = BenchmarkTables.config(true);
+        SyncPlan plan = SyncPlan.compile(config, new DmDialect(), jdbcA, jdbcB);
+        CompactRow row;
+        try (RowCursor cursor = RowCursor.open(databaseA, plan.orderedSelectSql(null), Collections.emptyList(),
+                1000, plan.getSchemaA(), "id")) {
+            cursor.next();
+            row = cursor.row();
+        }
+        Instant later = Instant.now().plus(1, ChronoUnit.DAYS);
+        for (int i = 0; i < depth; i++) {
+            SyncOperation operation = new SyncOperation("dbA", "dbB", config, plan, OperationType.INSERT, row, 1L);
+            operation.setNextRetryTime(later);
+            service.enqueue(operation);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+        logService.shutdown();
+        databaseA.shutdown();
+        databaseB.shutdown();
+    }
+
+    @Benchmark
+    public int replayPass() {
+        service.flushPending();
+        return service.getPendingOperationCount("dbB");
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.dmsyncbridge.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collections;
+
+// fetch-side row mapping: result set to CompactRow through a forward-only cursor
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMappingBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"4", "16"})
+    public int columns;
+
+    @Param({"INT", "VARCHAR(64)", "DECIMAL(18,2)", "TIMESTAMP"})
+    public String columnType;
+
+    private EmbeddedDatabase database;
+    private String sql;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkTables.database();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+        BenchmarkTables.create(jdbcTemplate, columns, columnType);
+        BenchmarkTables.fill(jdbcTemplate, rows, columns, columnType, new Timestamp(System.currentTimeMillis()));
+        sql = "SELECT * FROM " + BenchmarkTables.TABLE + " ORDER BY id";
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public long mapRows(Blackhole blackhole) throws SQLException {
+        long count = 0;
+        try (RowCursor cursor = RowCursor.open(database, sql, Collections.emptyList(), 1000, null, "id")) {
+            while (cursor.next()) {
+                blackhole.consume(cursor.row());
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.config.SyncProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+
+// full-table synchronization between two embedded databases; a share of dbB rows is made stale before each run
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SynchronizeTableBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"0", "5"})
+    public int stalePercent;
+
+    @Param({"DM", "GENERIC"})
+    public SyncProperties.Dialect dialect;
+
+    private EmbeddedDatabase databaseA;
+    private EmbeddedDatabase databaseB;
+    private JdbcTemplate jdbcB;
+    private SyncConfigService configService;
+    private SyncLogService logService;
+    private DmSyncService service;
+
+    @Setup
+    public void setUp() {
+        databaseA = BenchmarkTables.database();
+        databaseB = BenchmarkTables.database();
+        JdbcTemplate jdbcA = new JdbcTemplate(databaseA);
+        jdbcB = new JdbcTemplate(databaseB);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        BenchmarkTables.create(jdbcA, 8, "VARCHAR(64)");
+        BenchmarkTables.create(jdbcB, 8, "VARCHAR(64)");
+        BenchmarkTables.fill(jdbcA, rows, 8, "VARCHAR(64)", now);
+        BenchmarkTables.fill(jdbcB, rows, 8, "VARCHAR(64)", now);
+
+        SyncProperties properties = new SyncProperties();
+        properties.setDialect(dialect);
+        configService = new SyncConfigService();
+        configService.create(BenchmarkTables.config(true));
+        logService = new SyncLogService(jdbcA, properties);
+        logService.ensureTableExists();
+        service = new DmSyncService(jdbcA, jdbcB, databaseA, databaseB, configService, logService, properties,
+                new SimpleMeterRegistry());
+    }
+
+    @Setup(Level.Invocation)
+    public void makeStale() {
+        configService.updateLastSyncTime(BenchmarkTables.TABLE, null);
+        if (stalePercent > 0) {
+            jdbcB.update("UPDATE " + BenchmarkTables.TABLE + " SET c0 = 'stale', last_update = ? WHERE MOD(id, ?) = 0",
+                    new Timestamp(0), 100 / stalePercent);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+        logService.shutdown();
+        databaseA.shutdown();
+        databaseB.shutdown();
+    }
+
+    @Benchmark
+    public int synchronizeTable() {
+        service.synchronizeTables(Collections.singletonList(BenchmarkTables.TABLE));
+        return service.getPendingOperationCount("dbB");
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.dmsyncbridge.config;
 
+import com.zaxxer.hikari.HikariDataSource;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -7,40 +8,81 @@ import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StringUtils;
 
 import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Configuration
-@EnableConfigurationProperties({DatabaseConfig.DbAProperties.class, DatabaseConfig.DbBProperties.class})
+@EnableConfigurationProperties({DatabaseConfig.DbAProperties.class, DatabaseConfig.DbBProperties.class,
+        DatabaseConfig.NodesProperties.class, SyncProperties.class})
 public class DatabaseConfig {
 
     @Bean(name = "dbADataSource")
     public DataSource dbADataSource(DbAProperties properties) {
-        return createDataSource(properties);
+        return createDataSource("dbA", properties);
     }
 
     @Bean(name = "dbBDataSource")
     public DataSource dbBDataSource(DbBProperties properties) {
-        return createDataSource(properties);
+        return createDataSource("dbB", properties);
     }
 
     @Bean(name = "dbAJdbcTemplate")
-    public JdbcTemplate dbAJdbcTemplate(@Qualifier("dbADataSource") DataSource dataSource) {
-        return new JdbcTemplate(dataSource);
+    public JdbcTemplate dbAJdbcTemplate(@Qualifier("dbADataSource") DataSource dataSource, DbAProperties properties) {
+        return createJdbcTemplate(dataSource, properties);
     }
 
     @Bean(name = "dbBJdbcTemplate")
-    public JdbcTemplate dbBJdbcTemplate(@Qualifier("dbBDataSource") DataSource dataSource) {
-        return new JdbcTemplate(dataSource);
+    public JdbcTemplate dbBJdbcTemplate(@Qualifier("dbBDataSource") DataSource dataSource, DbBProperties properties) {
+        return createJdbcTemplate(dataSource, properties);
     }
 
-    private DataSource createDataSource(DatabaseProperties properties) {
-        return DataSourceBuilder.create()
+    @Bean
+    public SyncNodes syncNodes(NodesProperties properties) {
+        Map<String, JdbcTemplate> templates = new LinkedHashMap<>();
+        properties.getNodes().forEach((name, node) -> {
+            if ("dbA".equalsIgnoreCase(name) || "dbB".equalsIgnoreCase(name)) {
+                throw new IllegalStateException("Node name " + name + " is reserved for dm.databases.db-a and db-b");
+            }
+            templates.put(name, createJdbcTemplate(createDataSource(name, node), node));
+        });
+        return new SyncNodes(templates);
+    }
+
+    private HikariDataSource createDataSource(String poolName, DatabaseProperties properties) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
                 .driverClassName(properties.getDriverClassName())
                 .url(properties.getUrl())
                 .username(properties.getUsername())
                 .password(properties.getPassword())
                 .build();
+        PoolProperties pool = properties.getPool();
+        dataSource.setPoolName(poolName);
+        dataSource.setMinimumIdle(pool.getMinSize());
+        dataSource.setMaximumPoolSize(Math.max(pool.getMinSize(), pool.getMaxSize()));
+        dataSource.setConnectionTimeout(pool.getConnectionTimeout());
+        if (StringUtils.hasText(pool.getValidationQuery())) {
+            dataSource.setConnectionTestQuery(pool.getValidationQuery());
+        }
+        if (pool.getLeakDetectionThreshold() > 0) {
+            dataSource.setLeakDetectionThreshold(pool.getLeakDetectionThreshold());
+        }
+        if (pool.getStatementCacheSize() > 0) {
+            dataSource.addDataSourceProperty("pstmtPoolSize", String.valueOf(pool.getStatementCacheSize()));
+        }
+        pool.getDriverProperties().forEach(dataSource::addDataSourceProperty);
+        return dataSource;
+    }
+
+    private JdbcTemplate createJdbcTemplate(DataSource dataSource, DatabaseProperties properties) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        if (properties.getFetchSize() > 0) {
+            jdbcTemplate.setFetchSize(properties.getFetchSize());
+        }
+        return jdbcTemplate;
     }
 
     public interface DatabaseProperties {
@@ -51,14 +93,19 @@ public class DatabaseConfig {
         String getPassword();
 
         String getDriverClassName();
+
+        int getFetchSize();
+
+        PoolProperties getPool();
     }
 
-    @ConfigurationProperties(prefix = "dm.databases.db-a")
-    public static class DbAProperties implements DatabaseProperties {
+    public abstract static class AbstractDatabaseProperties implements DatabaseProperties {
         private String url;
         private String username;
         private String password;
         private String driverClassName;
+        private int fetchSize = 1000;
+        private PoolProperties pool = new PoolProperties();
 
         @Override
         public String getUrl() {
@@ -95,49 +142,113 @@ public class DatabaseConfig {
         public void setDriverClassName(String driverClassName) {
             this.driverClassName = driverClassName;
         }
+
+        @Override
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
+        public void setFetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+        }
+
+        @Override
+        public PoolProperties getPool() {
+            return pool;
+        }
+
+        public void setPool(PoolProperties pool) {
+            this.pool = pool;
+        }
+    }
+
+    @ConfigurationProperties(prefix = "dm.databases.db-a")
+    public static class DbAProperties extends AbstractDatabaseProperties {
     }
 
     @ConfigurationProperties(prefix = "dm.databases.db-b")
-    public static class DbBProperties implements DatabaseProperties {
-        private String url;
-        private String username;
-        private String password;
-        private String driverClassName;
+    public static class DbBProperties extends AbstractDatabaseProperties {
+    }
 
-        @Override
-        public String getUrl() {
-            return url;
+    @ConfigurationProperties(prefix = "dm.databases")
+    public static class NodesProperties {
+        private Map<String, NodeProperties> nodes = new LinkedHashMap<>();
+
+        public Map<String, NodeProperties> getNodes() {
+            return nodes;
         }
 
-        public void setUrl(String url) {
-            this.url = url;
+        public void setNodes(Map<String, NodeProperties> nodes) {
+            this.nodes = nodes == null ? new LinkedHashMap<>() : nodes;
         }
+    }
 
-        @Override
-        public String getUsername() {
-            return username;
+    public static class NodeProperties extends AbstractDatabaseProperties {
+    }
+
+    public static class PoolProperties {
+        private int minSize = 2;
+        private int maxSize = 10;
+        private long connectionTimeout = 30000;
+        private String validationQuery;
+        private long leakDetectionThreshold;
+        private int statementCacheSize;
+        private Map<String, String> driverProperties = new LinkedHashMap<>();
+
+        public int getMinSize() {
+            return minSize;
         }
 
-        public void setUsername(String username) {
-            this.username = username;
+        public void setMinSize(int minSize) {
+            this.minSize = minSize;
         }
 
-        @Override
-        public String getPassword() {
-            return password;
+        public int getMaxSize() {
+            return maxSize;
         }
 
-        public void setPassword(String password) {
-            this.password = password;
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
         }
 
-        @Override
-        public String getDriverClassName() {
-            return driverClassName;
+        public long getConnectionTimeout() {
+            return connectionTimeout;
         }
 
-        public void setDriverClassName(String driverClassName) {
-            this.driverClassName = driverClassName;
+        public void setConnectionTimeout(long connectionTimeout) {
+            this.connectionTimeout = connectionTimeout;
+        }
+
+        public String getValidationQuery() {
+            return validationQuery;
+        }
+
+        public void setValidationQuery(String validationQuery) {
+            this.validationQuery = validationQuery;
+        }
+
+        public long getLeakDetectionThreshold() {
+            return leakDetectionThreshold;
+        }
+
+        public void setLeakDetectionThreshold(long leakDetectionThreshold) {
+            this.leakDetectionThreshold = leakDetectionThreshold;
+        }
+
+        public int getStatementCacheSize() {
+            return statementCacheSize;
+        }
+
+        public void setStatementCacheSize(int statementCacheSize) {
+            this.statementCacheSize = statementCacheSize;
+        }
+
+        public Map<String, String> getDriverProperties() {
+            return driverProperties;
+        }
+
+        public void setDriverProperties(Map<String, String> driverProperties) {
+            this.driverProperties = driverProperties == null ? new LinkedHashMap<>() : driverProperties;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+package com.example.dmsyncbridge.config;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// databases under dm.databases.nodes kept consistent with dbA and dbB, by name in configuration order
+public class SyncNodes implements Closeable {
+
+    private final Map<String, JdbcTemplate> templates;
+
+    public SyncNodes(Map<String, JdbcTemplate> templates) {
+        this.templates = Collections.unmodifiableMap(new LinkedHashMap<>(templates));
+    }
+
+    public static SyncNodes none() {
+        return new SyncNodes(Collections.emptyMap());
+    }
+
+    public Map<String, JdbcTemplate> getTemplates() {
+        return templates;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (JdbcTemplate template : templates.values()) {
+            if (template.getDataSource() instanceof Closeable) {
+                ((Closeable) template.getDataSource()).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,560 @@
+package com.example.dmsyncbridge.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+@ConfigurationProperties(prefix = "dm.sync")
+public class SyncProperties {
+
+    private long interval = 10000;
+    private int batchSize = 500;
+    private int pageSize = 1000;
+    private int workers = 4;
+    private Dialect dialect = Dialect.DM;
+    private long watermarkLag = 5000;
+    private long deleteCheckInterval = 600000;
+    private LogProperties log = new LogProperties();
+    private ChecksumProperties checksum = new ChecksumProperties();
+    private QueueProperties queue = new QueueProperties();
+    private CdcProperties cdc = new CdcProperties();
+    private SchedulerProperties scheduler = new SchedulerProperties();
+    private JobProperties jobs = new JobProperties();
+    private RetryProperties retry = new RetryProperties();
+    private FingerprintProperties fingerprint = new FingerprintProperties();
+    private PipelineProperties pipeline = new PipelineProperties();
+    private ClusterProperties cluster = new ClusterProperties();
+    private Map<String, Integer> maxConcurrentTables = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    public Dialect getDialect() {
+        return dialect;
+    }
+
+    public void setDialect(Dialect dialect) {
+        this.dialect = dialect;
+    }
+
+    public long getWatermarkLag() {
+        return watermarkLag;
+    }
+
+    public void setWatermarkLag(long watermarkLag) {
+        this.watermarkLag = watermarkLag;
+    }
+
+    public long getDeleteCheckInterval() {
+        return deleteCheckInterval;
+    }
+
+    public void setDeleteCheckInterval(long deleteCheckInterval) {
+        this.deleteCheckInterval = deleteCheckInterval;
+    }
+
+    public Map<String, Integer> getMaxConcurrentTables() {
+        return maxConcurrentTables;
+    }
+
+    public void setMaxConcurrentTables(Map<String, Integer> maxConcurrentTables) {
+        this.maxConcurrentTables = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (maxConcurrentTables != null) {
+            this.maxConcurrentTables.putAll(maxConcurrentTables);
+        }
+    }
+
+    public int getMaxConcurrentTables(String db) {
+        return maxConcurrentTables.getOrDefault(db, workers);
+    }
+
+    public LogProperties getLog() {
+        return log;
+    }
+
+    public void setLog(LogProperties log) {
+        this.log = log;
+    }
+
+    public ChecksumProperties getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(ChecksumProperties checksum) {
+        this.checksum = checksum;
+    }
+
+    public QueueProperties getQueue() {
+        return queue;
+    }
+
+    public void setQueue(QueueProperties queue) {
+        this.queue = queue;
+    }
+
+    public CdcProperties getCdc() {
+        return cdc;
+    }
+
+    public void setCdc(CdcProperties cdc) {
+        this.cdc = cdc;
+    }
+
+    public SchedulerProperties getScheduler() {
+        return scheduler;
+    }
+
+    public void setScheduler(SchedulerProperties scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public JobProperties getJobs() {
+        return jobs;
+    }
+
+    public void setJobs(JobProperties jobs) {
+        this.jobs = jobs;
+    }
+
+    public RetryProperties getRetry() {
+        return retry;
+    }
+
+    public void setRetry(RetryProperties retry) {
+        this.retry = retry;
+    }
+
+    public FingerprintProperties getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(FingerprintProperties fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public PipelineProperties getPipeline() {
+        return pipeline;
+    }
+
+    public void setPipeline(PipelineProperties pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    public ClusterProperties getCluster() {
+        return cluster;
+    }
+
+    public void setCluster(ClusterProperties cluster) {
+        this.cluster = cluster;
+    }
+
+    public enum OverflowPolicy {
+        DROP, SAMPLE, BLOCK
+    }
+
+    public enum Dialect {
+        DM, H2, GENERIC
+    }
+
+    public static class LogProperties {
+        private int capacity = 8192;
+        private int batchSize = 200;
+        private long flushInterval = 500;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.SAMPLE;
+        private int sampleRate = 10;
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public long getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(long flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(int sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+    }
+
+    public static class ChecksumProperties {
+        private boolean enabled;
+        private int fanout = 16;
+        private long leafRows = 1000;
+        private String hashFunction = "ORA_HASH";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getFanout() {
+            return fanout;
+        }
+
+        public void setFanout(int fanout) {
+            this.fanout = fanout;
+        }
+
+        public long getLeafRows() {
+            return leafRows;
+        }
+
+        public void setLeafRows(long leafRows) {
+            this.leafRows = leafRows;
+        }
+
+        public String getHashFunction() {
+            return hashFunction;
+        }
+
+        public void setHashFunction(String hashFunction) {
+            this.hashFunction = hashFunction;
+        }
+    }
+
+    public static class QueueProperties {
+        private String directory;
+        private int segmentSize = 64 * 1024 * 1024;
+        private int indexCapacity = 4 * 1024 * 1024;
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public int getIndexCapacity() {
+            return indexCapacity;
+        }
+
+        public void setIndexCapacity(int indexCapacity) {
+            this.indexCapacity = indexCapacity;
+        }
+    }
+
+    public static class CdcProperties {
+        private boolean enabled;
+        private String changeLogTable = "sync_change_log";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getChangeLogTable() {
+            return changeLogTable;
+        }
+
+        public void setChangeLogTable(String changeLogTable) {
+            this.changeLogTable = changeLogTable;
+        }
+    }
+
+    public static class SchedulerProperties {
+        private boolean enabled = true;
+        private long tick = 500;
+        private long minInterval = 1000;
+        private long maxInterval = 300000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getTick() {
+            return tick;
+        }
+
+        public void setTick(long tick) {
+            this.tick = tick;
+        }
+
+        public long getMinInterval() {
+            return minInterval;
+        }
+
+        public void setMinInterval(long minInterval) {
+            this.minInterval = minInterval;
+        }
+
+        public long getMaxInterval() {
+            return maxInterval;
+        }
+
+        public void setMaxInterval(long maxInterval) {
+            this.maxInterval = maxInterval;
+        }
+    }
+
+    public static class JobProperties {
+        private int concurrency = 2;
+        private int queueCapacity = 16;
+        private int retained = 100;
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getRetained() {
+            return retained;
+        }
+
+        public void setRetained(int retained) {
+            this.retained = retained;
+        }
+    }
+
+    public static class RetryProperties {
+        private int maxAttempts = 3;
+        private long initialBackoff = 1000;
+        private double multiplier = 2.0;
+        private long maxBackoff = 60000;
+        private double jitter = 0.2;
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getInitialBackoff() {
+            return initialBackoff;
+        }
+
+        public void setInitialBackoff(long initialBackoff) {
+            this.initialBackoff = initialBackoff;
+        }
+
+        public double getMultiplier() {
+            return multiplier;
+        }
+
+        public void setMultiplier(double multiplier) {
+            this.multiplier = multiplier;
+        }
+
+        public long getMaxBackoff() {
+            return maxBackoff;
+        }
+
+        public void setMaxBackoff(long maxBackoff) {
+            this.maxBackoff = maxBackoff;
+        }
+
+        public double getJitter() {
+            return jitter;
+        }
+
+        public void setJitter(double jitter) {
+            this.jitter = jitter;
+        }
+    }
+
+    public static class FingerprintProperties {
+        private boolean enabled;
+        private String directory;
+        private int initialCapacity = 65536;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public int getInitialCapacity() {
+            return initialCapacity;
+        }
+
+        public void setInitialCapacity(int initialCapacity) {
+            this.initialCapacity = initialCapacity;
+        }
+    }
+
+    public static class PipelineProperties {
+        private boolean enabled = true;
+        private int prefetchPages = 2;
+        private int applySteps = 4;
+        private boolean virtualThreads;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getPrefetchPages() {
+            return prefetchPages;
+        }
+
+        public void setPrefetchPages(int prefetchPages) {
+            this.prefetchPages = prefetchPages;
+        }
+
+        public int getApplySteps() {
+            return applySteps;
+        }
+
+        public void setApplySteps(int applySteps) {
+            this.applySteps = applySteps;
+        }
+
+        public boolean isVirtualThreads() {
+            return virtualThreads;
+        }
+
+        public void setVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+        }
+    }
+
+    public static class ClusterProperties {
+        private boolean enabled;
+        private String instanceId;
+        private long heartbeatInterval = 5000;
+        private long leaseTimeout = 30000;
+        private int virtualNodes = 64;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getInstanceId() {
+            return instanceId;
+        }
+
+        public void setInstanceId(String instanceId) {
+            this.instanceId = instanceId;
+        }
+
+        public long getHeartbeatInterval() {
+            return heartbeatInterval;
+        }
+
+        public void setHeartbeatInterval(long heartbeatInterval) {
+            this.heartbeatInterval = heartbeatInterval;
+        }
+
+        public long getLeaseTimeout() {
+            return leaseTimeout;
+        }
+
+        public void setLeaseTimeout(long leaseTimeout) {
+            this.leaseTimeout = leaseTimeout;
+        }
+
+        public int getVirtualNodes() {
+            return virtualNodes;
+        }
+
+        public void setVirtualNodes(int virtualNodes) {
+            this.virtualNodes = virtualNodes;
+        }
+    }
+}
@@ -2,10 +2,16 @@ package com.example.dmsyncbridge.controller;
 
 import com.example.dmsyncbridge.entity.SyncLog;
 import com.example.dmsyncbridge.service.DmSyncService;
+import com.example.dmsyncbridge.service.SyncJob;
+import com.example.dmsyncbridge.service.SyncJobService;
 import com.example.dmsyncbridge.service.SyncLogService;
+import com.example.dmsyncbridge.service.SyncProgress;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,10 +22,12 @@ public class SyncController {
 
     private final DmSyncService dmSyncService;
     private final SyncLogService syncLogService;
+    private final SyncJobService syncJobService;
 
-    public SyncController(DmSyncService dmSyncService, SyncLogService syncLogService) {
+    public SyncController(DmSyncService dmSyncService, SyncLogService syncLogService, SyncJobService syncJobService) {
         this.dmSyncService = dmSyncService;
         this.syncLogService = syncLogService;
+        this.syncJobService = syncJobService;
     }
 
     @GetMapping("/health")
@@ -29,17 +37,30 @@ public class SyncController {
         status.put("dbB", dmSyncService.isDbBAvailable());
         status.put("pendingToDbA", dmSyncService.getPendingOperationCount("dbA"));
         status.put("pendingToDbB", dmSyncService.getPendingOperationCount("dbB"));
+        status.put("poolDbA", dmSyncService.getPoolStatus("dbA"));
+        status.put("poolDbB", dmSyncService.getPoolStatus("dbB"));
+        status.put("pendingToNodes", dmSyncService.getNodePendingOperationCounts());
+        status.put("cluster", dmSyncService.getClusterStatus());
         return ResponseEntity.ok(status);
     }
 
     @PostMapping("/sync/trigger")
-    public ResponseEntity<Void> triggerSync(@RequestBody(required = false) SyncTriggerRequest request) {
-        if (request == null || request.getTableNames().isEmpty()) {
-            dmSyncService.synchronizeAll();
-        } else {
-            dmSyncService.synchronizeTables(request.getTableNames());
+    public ResponseEntity<SyncJob> triggerSync(@RequestBody(required = false) SyncTriggerRequest request) {
+        SyncJob job = syncJobService.submit(request == null ? Collections.emptyList() : request.getTableNames());
+        if (job.getStatus() == SyncJob.Status.REJECTED) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(job);
         }
-        return ResponseEntity.accepted().build();
+        return ResponseEntity.accepted().location(URI.create("/sync/jobs/" + job.getId())).body(job);
+    }
+
+    @GetMapping("/sync/jobs")
+    public ResponseEntity<List<SyncJob>> jobs() {
+        return ResponseEntity.ok(syncJobService.findAll());
+    }
+
+    @GetMapping("/sync/jobs/{id}")
+    public ResponseEntity<SyncJob> job(@PathVariable long id) {
+        return syncJobService.find(id).map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @GetMapping("/sync/logs")
@@ -47,4 +68,9 @@ public class SyncController {
         List<SyncLog> logs = syncLogService.findRecent(Math.max(1, Math.min(500, limit)));
         return ResponseEntity.ok(logs);
     }
+
+    @GetMapping("/sync/progress")
+    public ResponseEntity<List<SyncProgress>> progress() {
+        return ResponseEntity.ok(dmSyncService.getProgress());
+    }
 }
\ No newline at end of file
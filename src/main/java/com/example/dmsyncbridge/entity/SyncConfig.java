@@ -18,6 +18,13 @@ public class SyncConfig {
     private List<String> includeColumns = new ArrayList<>();
     private String lastUpdateColumn;
     private boolean activeFlag = true;
+    private Integer pageSize;
+    private Integer fetchSize;
+    private Long interval;
+    private Long minInterval;
+    private Long maxInterval;
+    private Integer priority;
+    private Long deleteCheckInterval;
 
     @JsonIgnore
     private Instant lastSyncTime;
@@ -85,6 +92,62 @@ public class SyncConfig {
         this.activeFlag = activeFlag;
     }
 
+    public Integer getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(Integer pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public Integer getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(Integer fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public Long getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Long interval) {
+        this.interval = interval;
+    }
+
+    public Long getMinInterval() {
+        return minInterval;
+    }
+
+    public void setMinInterval(Long minInterval) {
+        this.minInterval = minInterval;
+    }
+
+    public Long getMaxInterval() {
+        return maxInterval;
+    }
+
+    public void setMaxInterval(Long maxInterval) {
+        this.maxInterval = maxInterval;
+    }
+
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Integer priority) {
+        this.priority = priority;
+    }
+
+    public Long getDeleteCheckInterval() {
+        return deleteCheckInterval;
+    }
+
+    public void setDeleteCheckInterval(Long deleteCheckInterval) {
+        this.deleteCheckInterval = deleteCheckInterval;
+    }
+
     public Instant getLastSyncTime() {
         return lastSyncTime;
     }
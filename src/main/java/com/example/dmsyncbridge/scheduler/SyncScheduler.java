@@ -19,9 +19,20 @@ public class SyncScheduler {
         this.dmSyncService = dmSyncService;
     }
 
+    // each table runs on its own adaptive interval; the tick only decides how quickly a due table is noticed
+    @Scheduled(fixedDelayString = "${dm.sync.scheduler.tick:500}")
+    public void dispatchDueTables() {
+        dmSyncService.dispatchDueTables();
+    }
+
+    @Scheduled(fixedDelayString = "${dm.sync.cluster.heartbeat-interval:5000}")
+    public void heartbeat() {
+        dmSyncService.heartbeat();
+    }
+
     @Scheduled(fixedDelayString = "${dm.sync.interval:10000}")
-    public void runSync() {
-        log.debug("Running scheduled synchronization");
-        dmSyncService.synchronizeAll();
+    public void replayPendingOperations() {
+        log.debug("Replaying pending operations");
+        dmSyncService.flushPending();
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package com.example.dmsyncbridge.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+// runs one table's apply steps in submission order on a stage thread while its merge goes on. At most `capacity`
+// steps wait; submit then blocks, which holds the merge back. After a failed step the remaining ones are skipped,
+// so no checkpoint is saved past operations that were not applied
+class ApplyStage {
+
+    private final Executor executor;
+    private final Semaphore slots;
+    private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+    private volatile RuntimeException failure;
+
+    ApplyStage(Executor executor, int capacity) {
+        this.executor = executor;
+        this.slots = new Semaphore(Math.max(1, capacity));
+    }
+
+    void submit(Runnable step) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the apply stage", e);
+        }
+        tail = tail.thenRunAsync(() -> {
+            try {
+                if (failure == null) {
+                    step.run();
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                slots.release();
+            }
+        }, executor);
+    }
+
+    // waits for every submitted step and rethrows the first failure
+    void await() {
+        tail.join();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
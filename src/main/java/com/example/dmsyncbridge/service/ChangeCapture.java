@@ -0,0 +1,108 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.config.SyncProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// trigger-maintained change log on each database; consumed deltas are trimmed instead of tracked by position,
+// so sequence values committed out of order are still picked up by the next read
+class ChangeCapture {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeCapture.class);
+
+    private final JdbcTemplate dbAJdbcTemplate;
+    private final JdbcTemplate dbBJdbcTemplate;
+    private final SqlDialect dialect;
+    private final SyncProperties.CdcProperties properties;
+    private final Map<String, String> installedSignatures = new ConcurrentHashMap<>();
+
+    ChangeCapture(JdbcTemplate dbAJdbcTemplate, JdbcTemplate dbBJdbcTemplate, SqlDialect dialect,
+                  SyncProperties.CdcProperties properties) {
+        this.dbAJdbcTemplate = dbAJdbcTemplate;
+        this.dbBJdbcTemplate = dbBJdbcTemplate;
+        this.dialect = dialect;
+        this.properties = properties;
+    }
+
+    boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    // installs the change log and triggers on both databases; false leaves the table to the regular diff
+    boolean install(SyncPlan plan) {
+        String tableName = plan.getTableName().toLowerCase();
+        if (plan.getSignature().equals(installedSignatures.get(tableName))) {
+            return true;
+        }
+        List<String> triggerSql = dialect.changeCaptureSql(triggerName(tableName), tableName, plan.getPrimaryKey(),
+                properties.getChangeLogTable());
+        if (triggerSql == null) {
+            log.warn("The configured dialect cannot capture changes, table {} is compared instead", tableName);
+            return false;
+        }
+        try {
+            for (JdbcTemplate jdbcTemplate : new JdbcTemplate[]{dbAJdbcTemplate, dbBJdbcTemplate}) {
+                jdbcTemplate.execute(dialect.changeLogTableSql(properties.getChangeLogTable()));
+                for (String sql : triggerSql) {
+                    jdbcTemplate.execute(sql);
+                }
+            }
+        } catch (DataAccessException e) {
+            log.warn("Unable to install change capture for table {}: {}", tableName, e.getMessage());
+            return false;
+        }
+        installedSignatures.put(tableName, plan.getSignature());
+        log.info("Installed change capture trigger {} for table {}", triggerName(tableName), tableName);
+        return true;
+    }
+
+    // changes in sequence order; the same key may appear several times
+    List<Change> read(boolean sideA, String tableName, int limit) {
+        return template(sideA).query("SELECT seq_id, pk_value FROM " + properties.getChangeLogTable()
+                        + " WHERE table_name = ? ORDER BY seq_id FETCH FIRST " + limit + " ROWS ONLY",
+                (rs, rowNum) -> new Change(rs.getLong(1), rs.getString(2)), tableName.toLowerCase());
+    }
+
+    long lastSequence(boolean sideA, String tableName) {
+        Long last = template(sideA).queryForObject("SELECT MAX(seq_id) FROM " + properties.getChangeLogTable()
+                + " WHERE table_name = ?", Long.class, tableName.toLowerCase());
+        return last == null ? 0 : last;
+    }
+
+    void trim(boolean sideA, String tableName, long upToSequence) {
+        template(sideA).update("DELETE FROM " + properties.getChangeLogTable() + " WHERE table_name = ? AND seq_id <= ?",
+                tableName.toLowerCase(), upToSequence);
+    }
+
+    private JdbcTemplate template(boolean sideA) {
+        return sideA ? dbAJdbcTemplate : dbBJdbcTemplate;
+    }
+
+    private static String triggerName(String tableName) {
+        return "sync_cdc_" + tableName;
+    }
+
+    static final class Change {
+        private final long sequence;
+        private final String key;
+
+        private Change(long sequence, String key) {
+            this.sequence = sequence;
+            this.key = key;
+        }
+
+        long getSequence() {
+            return sequence;
+        }
+
+        String getKey() {
+            return key;
+        }
+    }
+}
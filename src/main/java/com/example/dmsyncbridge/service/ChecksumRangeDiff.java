@@ -0,0 +1,176 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.config.SyncProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+class ChecksumRangeDiff {
+
+    private static final Logger log = LoggerFactory.getLogger(ChecksumRangeDiff.class);
+
+    private final JdbcTemplate dbAJdbcTemplate;
+    private final JdbcTemplate dbBJdbcTemplate;
+    private final SyncProperties.ChecksumProperties properties;
+
+    ChecksumRangeDiff(JdbcTemplate dbAJdbcTemplate, JdbcTemplate dbBJdbcTemplate,
+                      SyncProperties.ChecksumProperties properties) {
+        this.dbAJdbcTemplate = dbAJdbcTemplate;
+        this.dbBJdbcTemplate = dbBJdbcTemplate;
+        this.properties = properties;
+    }
+
+    boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    // returns the number of keys inspected, or -1 when the table cannot be diffed by key ranges
+    long synchronize(SyncPlan plan, RangeReconciler leafReconciler) throws SQLException {
+        long[] boundsA = keyBounds(dbAJdbcTemplate, plan);
+        long[] boundsB = keyBounds(dbBJdbcTemplate, plan);
+        if (boundsA == null || boundsB == null) {
+            log.debug("Primary key of table {} is not integral, checksum diff not applicable", plan.getTableName());
+            return -1;
+        }
+        if (boundsA.length == 0 && boundsB.length == 0) {
+            return 0;
+        }
+        long low = boundsA.length == 0 ? boundsB[0] : boundsB.length == 0 ? boundsA[0] : Math.min(boundsA[0], boundsB[0]);
+        long high = boundsA.length == 0 ? boundsB[1] : boundsB.length == 0 ? boundsA[1] : Math.max(boundsA[1], boundsB[1]);
+        if (boundsA.length == 0 || boundsB.length == 0) {
+            return leafReconciler.reconcile(low, high);
+        }
+
+        String bucketSql = bucketChecksumSql(plan);
+        int fanout = Math.max(2, properties.getFanout());
+        long leafRows = Math.max(1, properties.getLeafRows());
+        Deque<long[]> ranges = new ArrayDeque<>();
+        ranges.push(new long[]{low, high});
+        long inspected = 0;
+        int comparedRanges = 0;
+        int leafRanges = 0;
+        while (!ranges.isEmpty()) {
+            long[] range = ranges.pop();
+            long width = bucketWidth(range[0], range[1], fanout);
+            Map<Long, Checksum> checksumsA = bucketChecksums(dbAJdbcTemplate, bucketSql, range, width);
+            Map<Long, Checksum> checksumsB = bucketChecksums(dbBJdbcTemplate, bucketSql, range, width);
+            Set<Long> buckets = new TreeSet<>(checksumsA.keySet());
+            buckets.addAll(checksumsB.keySet());
+            for (Long bucket : buckets) {
+                comparedRanges++;
+                Checksum checksumA = checksumsA.getOrDefault(bucket, Checksum.EMPTY);
+                Checksum checksumB = checksumsB.getOrDefault(bucket, Checksum.EMPTY);
+                if (checksumA.matches(checksumB)) {
+                    continue;
+                }
+                long subLow = range[0] + bucket * width;
+                long subHigh = Math.min(range[1], subLow + width - 1);
+                if (Math.max(checksumA.count, checksumB.count) <= leafRows || subLow == subHigh) {
+                    leafRanges++;
+                    inspected += leafReconciler.reconcile(subLow, subHigh);
+                } else {
+                    ranges.push(new long[]{subLow, subHigh});
+                }
+            }
+        }
+        log.debug("Checksum diff of table {} compared {} ranges and fetched {} leaf ranges",
+                plan.getTableName(), comparedRanges, leafRanges);
+        return inspected;
+    }
+
+    private long[] keyBounds(JdbcTemplate jdbcTemplate, SyncPlan plan) {
+        String sql = "SELECT MIN(" + plan.getPrimaryKey() + "), MAX(" + plan.getPrimaryKey() + ") FROM "
+                + plan.getTableName();
+        return jdbcTemplate.query(sql, (ResultSetExtractor<long[]>) rs -> {
+            if (!rs.next() || rs.getObject(1) == null) {
+                return new long[0];
+            }
+            Long min = toLong(rs.getObject(1));
+            Long max = toLong(rs.getObject(2));
+            return min == null || max == null ? null : new long[]{min, max};
+        });
+    }
+
+    private Map<Long, Checksum> bucketChecksums(JdbcTemplate jdbcTemplate, String sql, long[] range, long width) {
+        return jdbcTemplate.query(sql, rs -> {
+            Map<Long, Checksum> result = new HashMap<>();
+            while (rs.next()) {
+                BigDecimal sum = rs.getBigDecimal(3);
+                result.put(rs.getLong(1), new Checksum(rs.getLong(2), sum == null ? BigDecimal.ZERO : sum));
+            }
+            return result;
+        }, range[0], width, range[0], range[1]);
+    }
+
+    private String bucketChecksumSql(SyncPlan plan) {
+        return "SELECT bucket, COUNT(*), SUM(row_hash) FROM (SELECT FLOOR((" + plan.getPrimaryKey()
+                + " - ?) / ?) AS bucket, " + rowHashExpression(plan.getPrimaryKey(), plan.getCompareColumns())
+                + " AS row_hash FROM "
+                + plan.getTableName() + " WHERE " + plan.getPrimaryKey() + " BETWEEN ? AND ?) ranges GROUP BY bucket";
+    }
+
+    // the key is hashed with the row, so values swapped between two keys of one bucket change its sum
+    private String rowHashExpression(String primaryKey, List<String> columns) {
+        List<String> parts = new ArrayList<>();
+        parts.add("CAST(" + primaryKey + " AS VARCHAR(4000))");
+        for (String column : columns) {
+            parts.add("COALESCE(CAST(" + column + " AS VARCHAR(4000)), '~')");
+        }
+        return properties.getHashFunction() + "(" + String.join(" || '|' || ", parts) + ")";
+    }
+
+    private static long bucketWidth(long low, long high, int fanout) {
+        BigInteger span = BigInteger.valueOf(high).subtract(BigInteger.valueOf(low)).add(BigInteger.ONE);
+        BigInteger[] division = span.divideAndRemainder(BigInteger.valueOf(fanout));
+        BigInteger width = division[1].signum() == 0 ? division[0] : division[0].add(BigInteger.ONE);
+        return Math.max(1, width.min(BigInteger.valueOf(Long.MAX_VALUE / 2)).longValue());
+    }
+
+    private static Long toLong(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof BigDecimal || value instanceof BigInteger) {
+            BigDecimal decimal = value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal((BigInteger) value);
+            try {
+                return decimal.longValueExact();
+            } catch (ArithmeticException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    interface RangeReconciler {
+        long reconcile(long lowInclusive, long highInclusive) throws SQLException;
+    }
+
+    private static final class Checksum {
+        private static final Checksum EMPTY = new Checksum(0, BigDecimal.ZERO);
+
+        private final long count;
+        private final BigDecimal sum;
+
+        private Checksum(long count, BigDecimal sum) {
+            this.count = count;
+            this.sum = sum;
+        }
+
+        private boolean matches(Checksum other) {
+            return count == other.count && sum.compareTo(other.sum) == 0;
+        }
+    }
+}
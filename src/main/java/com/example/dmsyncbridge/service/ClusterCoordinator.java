@@ -0,0 +1,252 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.config.SyncProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StringUtils;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// shares the configured tables between bridge instances that use the same dbA. Instances heartbeat into
+// sync_cluster_member and every table goes to one live member by consistent hashing, so a member joining or
+// leaving only moves its own share. A table is synchronized under a lease in sync_table_lease, which keeps the
+// previous owner and the new one from working on it at the same time while the members settle
+class ClusterCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterCoordinator.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlDialect dialect;
+    private final boolean enabled;
+    private final String instanceId;
+    private final long leaseTimeout;
+    private final int virtualNodes;
+    private final AtomicBoolean tableEnsured = new AtomicBoolean();
+    // empty until the first heartbeat, so an instance owns no table before it has seen the others
+    private volatile NavigableMap<Long, String> ring = Collections.emptyNavigableMap();
+    private volatile List<String> members = Collections.emptyList();
+    // tables leased here, with the System.nanoTime() by which each lease has run out at the latest
+    private final Map<String, Long> leases = new ConcurrentHashMap<>();
+
+    ClusterCoordinator(JdbcTemplate jdbcTemplate, SqlDialect dialect, SyncProperties.ClusterProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = dialect;
+        this.enabled = properties.isEnabled();
+        this.instanceId = StringUtils.hasText(properties.getInstanceId()) ? properties.getInstanceId().trim()
+                : defaultInstanceId();
+        this.leaseTimeout = Math.max(1, properties.getLeaseTimeout());
+        this.virtualNodes = Math.max(1, properties.getVirtualNodes());
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    String getInstanceId() {
+        return instanceId;
+    }
+
+    List<String> getMembers() {
+        return members;
+    }
+
+    // marks this instance alive, rebuilds the ring from the members heard from within the lease timeout and
+    // renews the leases it still needs
+    void heartbeat(Collection<String> busyTables) {
+        if (!enabled) {
+            return;
+        }
+        ensureTablesExist();
+        try {
+            long deadline = leaseDeadline();
+            Timestamp now = serverTime();
+            Timestamp expired = new Timestamp(now.getTime() - leaseTimeout);
+            if (jdbcTemplate.update("UPDATE sync_cluster_member SET heartbeat_time = ? WHERE instance_id = ?",
+                    now, instanceId) == 0) {
+                jdbcTemplate.update("INSERT INTO sync_cluster_member (instance_id, heartbeat_time) VALUES (?, ?)",
+                        instanceId, now);
+            }
+            jdbcTemplate.update("DELETE FROM sync_cluster_member WHERE heartbeat_time < ?", expired);
+            List<String> live = jdbcTemplate.queryForList(
+                    "SELECT instance_id FROM sync_cluster_member ORDER BY instance_id", String.class);
+            if (!live.equals(members)) {
+                log.info("Cluster members changed to {}", live);
+                ring = ring(live);
+                members = Collections.unmodifiableList(live);
+            }
+            Timestamp until = new Timestamp(now.getTime() + leaseTimeout);
+            List<String> leased = jdbcTemplate.queryForList(
+                    "SELECT table_name FROM sync_table_lease WHERE owner_id = ?", String.class, instanceId);
+            // a lease that expired and was taken over is gone from sync_table_lease
+            leases.keySet().retainAll(leased);
+            for (String tableName : leased) {
+                // a table the ring moved away is handed over once its current pass has finished
+                if (owns(tableName) || busyTables.contains(tableName)) {
+                    if (jdbcTemplate.update("UPDATE sync_table_lease SET lease_until = ? WHERE table_name = ? "
+                            + "AND owner_id = ?", until, tableName, instanceId) > 0) {
+                        leases.put(tableName, deadline);
+                    } else {
+                        leases.remove(tableName);
+                    }
+                } else {
+                    release(tableName);
+                }
+            }
+        } catch (DataAccessException e) {
+            log.warn("Cluster heartbeat of {} failed: {}", instanceId, e.getMessage());
+        }
+    }
+
+    boolean owns(String tableName) {
+        return !enabled || instanceId.equals(owner(tableName));
+    }
+
+    // another live member is assigned the table; false until the first heartbeat has built the ring
+    boolean ownedByOther(String tableName) {
+        String owner = enabled ? owner(tableName) : null;
+        return owner != null && !instanceId.equals(owner);
+    }
+
+    // true while this instance holds the table's lease, so writing to the table cannot race the instance it
+    // moves to. Judged by the local clock, so no database round trip is needed per operation
+    boolean holdsLease(String tableName) {
+        if (!enabled) {
+            return true;
+        }
+        Long deadline = leases.get(tableName.toLowerCase());
+        return deadline != null && deadline - System.nanoTime() > 0;
+    }
+
+    private String owner(String tableName) {
+        NavigableMap<Long, String> current = ring;
+        if (current.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> node = current.ceilingEntry(FingerprintStore.keyHash(tableName.toLowerCase()));
+        return (node != null ? node : current.firstEntry()).getValue();
+    }
+
+    // takes or renews the table's lease when the ring assigns the table here; false while another instance
+    // still holds an unexpired lease on it
+    boolean acquire(String tableName) {
+        if (!enabled) {
+            return true;
+        }
+        if (!owns(tableName)) {
+            return false;
+        }
+        ensureTablesExist();
+        String table = tableName.toLowerCase();
+        try {
+            long deadline = leaseDeadline();
+            Timestamp now = serverTime();
+            Timestamp until = new Timestamp(now.getTime() + leaseTimeout);
+            if (jdbcTemplate.update("UPDATE sync_table_lease SET owner_id = ?, lease_until = ? WHERE table_name = ? "
+                    + "AND (owner_id = ? OR lease_until < ?)", instanceId, until, table, instanceId, now) == 0) {
+                jdbcTemplate.update("INSERT INTO sync_table_lease (table_name, owner_id, lease_until) VALUES (?, ?, ?)",
+                        table, instanceId, until);
+            }
+            leases.put(table, deadline);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        } catch (DataAccessException e) {
+            log.warn("Unable to lease table {} for {}: {}", tableName, instanceId, e.getMessage());
+            return false;
+        }
+    }
+
+    // lets the new owner start without waiting for the lease to expire
+    void release(String tableName) {
+        if (!enabled) {
+            return;
+        }
+        leases.remove(tableName.toLowerCase());
+        try {
+            jdbcTemplate.update("DELETE FROM sync_table_lease WHERE table_name = ? AND owner_id = ?",
+                    tableName.toLowerCase(), instanceId);
+        } catch (DataAccessException e) {
+            log.warn("Unable to release lease on table {}: {}", tableName, e.getMessage());
+        }
+    }
+
+    // the remaining members take over this instance's tables on their next heartbeat
+    void leave() {
+        if (!enabled || !tableEnsured.get()) {
+            return;
+        }
+        leases.clear();
+        try {
+            jdbcTemplate.update("DELETE FROM sync_table_lease WHERE owner_id = ?", instanceId);
+            jdbcTemplate.update("DELETE FROM sync_cluster_member WHERE instance_id = ?", instanceId);
+        } catch (DataAccessException e) {
+            log.warn("Unable to leave the cluster as {}: {}", instanceId, e.getMessage());
+        }
+        ring = Collections.emptyNavigableMap();
+        members = Collections.emptyList();
+    }
+
+    private NavigableMap<Long, String> ring(List<String> live) {
+        NavigableMap<Long, String> nodes = new TreeMap<>();
+        for (String member : live) {
+            for (int i = 0; i < virtualNodes; i++) {
+                nodes.put(FingerprintStore.keyHash(member + '#' + i), member);
+            }
+        }
+        return nodes;
+    }
+
+    // taken before the lease is written, so the local deadline never outlasts the one in sync_table_lease
+    private long leaseDeadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseTimeout);
+    }
+
+    // every instance reads the same clock, so leases do not depend on the hosts agreeing on the time
+    private Timestamp serverTime() {
+        Timestamp now = jdbcTemplate.queryForObject(dialect.currentTimestampSql(), Timestamp.class);
+        return now != null ? now : new Timestamp(System.currentTimeMillis());
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        return host + '-' + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    private void ensureTablesExist() {
+        if (tableEnsured.get()) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS sync_cluster_member (" +
+                    "instance_id VARCHAR(128) PRIMARY KEY, " +
+                    "heartbeat_time TIMESTAMP)");
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS sync_table_lease (" +
+                    "table_name VARCHAR(128) PRIMARY KEY, " +
+                    "owner_id VARCHAR(128), " +
+                    "lease_until TIMESTAMP)");
+            tableEnsured.set(true);
+        } catch (Exception e) {
+            log.warn("Unable to ensure sync_cluster tables exist: {}", e.getMessage());
+        }
+    }
+}
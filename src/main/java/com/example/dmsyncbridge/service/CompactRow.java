@@ -0,0 +1,28 @@
+package com.example.dmsyncbridge.service;
+
+final class CompactRow {
+
+    private final RowSchema schema;
+    final long[] primitives;
+    final long[] nulls;
+    final Object[] references;
+
+    CompactRow(RowSchema schema, long[] primitives, long[] nulls, Object[] references) {
+        this.schema = schema;
+        this.primitives = primitives;
+        this.nulls = nulls;
+        this.references = references;
+    }
+
+    RowSchema schema() {
+        return schema;
+    }
+
+    Object get(int index) {
+        return schema.value(this, index);
+    }
+
+    int size() {
+        return schema.columnCount();
+    }
+}
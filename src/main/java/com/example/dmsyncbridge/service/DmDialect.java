@@ -0,0 +1,77 @@
+package com.example.dmsyncbridge.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+class DmDialect implements SqlDialect {
+
+    private static final String CAPTURE_CLIENT_INFO = "dm_sync_bridge";
+
+    @Override
+    public String currentTimestampSql() {
+        return "SELECT LOCALTIMESTAMP FROM DUAL";
+    }
+
+    @Override
+    public String changeLogTableSql(String changeLogTable) {
+        return "CREATE TABLE IF NOT EXISTS " + changeLogTable + " ("
+                + "seq_id BIGINT IDENTITY(1, 1) PRIMARY KEY, "
+                + "table_name VARCHAR(128) NOT NULL, "
+                + "pk_value VARCHAR(256) NOT NULL, "
+                + "op CHAR(1) NOT NULL, "
+                + "change_time TIMESTAMP)";
+    }
+
+    @Override
+    public List<String> changeCaptureSql(String triggerName, String tableName, String primaryKey,
+                                         String changeLogTable) {
+        String insert = "INSERT INTO " + changeLogTable + " (table_name, pk_value, op, change_time) VALUES ('"
+                + tableName + "', ";
+        return Collections.singletonList("CREATE OR REPLACE TRIGGER " + triggerName
+                + " AFTER INSERT OR UPDATE OR DELETE ON " + tableName + " FOR EACH ROW\n"
+                + "BEGIN\n"
+                + "    IF NVL(SYS_CONTEXT('USERENV', 'CLIENT_INFO'), ' ') = '" + CAPTURE_CLIENT_INFO + "' THEN\n"
+                + "        RETURN;\n"
+                + "    END IF;\n"
+                + "    IF INSERTING THEN\n"
+                + "        " + insert + ":NEW." + primaryKey + ", 'I', LOCALTIMESTAMP);\n"
+                + "    ELSIF UPDATING THEN\n"
+                + "        " + insert + ":NEW." + primaryKey + ", 'U', LOCALTIMESTAMP);\n"
+                + "        IF :OLD." + primaryKey + " <> :NEW." + primaryKey + " THEN\n"
+                + "            " + insert + ":OLD." + primaryKey + ", 'D', LOCALTIMESTAMP);\n"
+                + "        END IF;\n"
+                + "    ELSE\n"
+                + "        " + insert + ":OLD." + primaryKey + ", 'D', LOCALTIMESTAMP);\n"
+                + "    END IF;\n"
+                + "END;");
+    }
+
+    @Override
+    public String captureSessionSql(boolean applying) {
+        return "CALL DBMS_APPLICATION_INFO.SET_CLIENT_INFO('" + (applying ? CAPTURE_CLIENT_INFO : "") + "')";
+    }
+
+    @Override
+    public String upsertSql(String tableName, String primaryKey, List<String> columns) {
+        List<String> assignments = new ArrayList<>();
+        List<String> sourceValues = new ArrayList<>();
+        for (String column : columns) {
+            if (!column.equalsIgnoreCase(primaryKey)) {
+                assignments.add("t." + column + " = s." + column);
+            }
+            sourceValues.add("s." + column);
+        }
+        String columnList = String.join(", ", columns);
+        // the empty branch over the target table gives the bind parameters their column types
+        StringBuilder sql = new StringBuilder("MERGE INTO ").append(tableName).append(" t USING (SELECT ")
+                .append(columnList).append(" FROM ").append(tableName).append(" WHERE 1 = 0 UNION ALL SELECT ")
+                .append(String.join(", ", Collections.nCopies(columns.size(), "?"))).append(" FROM DUAL) s ON (t.")
+                .append(primaryKey).append(" = s.").append(primaryKey).append(")");
+        if (!assignments.isEmpty()) {
+            sql.append(" WHEN MATCHED THEN UPDATE SET ").append(String.join(", ", assignments));
+        }
+        return sql.append(" WHEN NOT MATCHED THEN INSERT (").append(columnList).append(") VALUES (")
+                .append(String.join(", ", sourceValues)).append(")").toString();
+    }
+}
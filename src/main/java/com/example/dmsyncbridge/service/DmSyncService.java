@@ -1,39 +1,65 @@
 package com.example.dmsyncbridge.service;
 
+import com.example.dmsyncbridge.config.SyncNodes;
+import com.example.dmsyncbridge.config.SyncProperties;
 import com.example.dmsyncbridge.entity.SyncConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
 
+import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 @Service
 public class DmSyncService {
 
     private static final Logger log = LoggerFactory.getLogger(DmSyncService.class);
+    private static final int MAX_BUFFERED_OPERATIONS = 1000;
+    private static final int LOOKUP_CHUNK_SIZE = 500;
+    private static final long SKIPPED = -2;
 
     private final JdbcTemplate dbAJdbcTemplate;
     private final JdbcTemplate dbBJdbcTemplate;
@@ -41,330 +67,1099 @@ public class DmSyncService {
     private final DataSource dbBDataSource;
     private final SyncConfigService configService;
     private final SyncLogService syncLogService;
-    private final Map<String, Queue<SyncOperation>> pendingByTarget = new ConcurrentHashMap<>();
+    private final Map<String, OperationQueue> pendingByTarget = new HashMap<>();
+    private final Map<String, RetryScheduler> retryByTarget = new HashMap<>();
+    private final Map<String, OperationIndex> indexByTarget = new HashMap<>();
+    private final MergeReconciler reconciler = new MergeReconciler();
+    private final OperationApplier operationApplier;
+    private final SyncMetrics metrics;
+    private final ChecksumRangeDiff checksumRangeDiff;
+    private final ChangeCapture changeCapture;
+    private final SyncPlanCache planCache;
+    private final SqlDialect dialect;
+    private final SyncWatermarkStore watermarkStore;
+    private final ClusterCoordinator cluster;
+    private final NodeFanout nodeFanout;
+    private final FingerprintStore fingerprints;
+    private final int maxAttempts;
+    private final long watermarkLag;
+    private final long deleteCheckInterval;
+    private final int pageSize;
+    private final Map<String, SyncProgress> progressByTable = new ConcurrentHashMap<>();
+    private final long interval;
+    private final SyncProperties.SchedulerProperties schedulerProperties;
+    private final Map<String, TableSchedule> schedules = new ConcurrentHashMap<>();
+    // last time each table's primary keys were compared in full; watermark passes cannot see deleted rows
+    private final Map<String, Long> lastKeyCheck = new ConcurrentHashMap<>();
+    private final AtomicInteger scheduledRunning = new AtomicInteger();
+    private final int workers;
+    private final ExecutorService syncExecutor;
+    // page reads and apply steps of the pipelined full scan
+    private final ExecutorService stageExecutor;
+    private final SyncProperties.PipelineProperties pipeline;
+    private final Map<String, Semaphore> databasePermits = new HashMap<>();
+    private final Map<String, Lock> targetLocks = new HashMap<>();
+    private final Set<String> runningTables = ConcurrentHashMap.newKeySet();
 
     public DmSyncService(@Qualifier("dbAJdbcTemplate") JdbcTemplate dbAJdbcTemplate,
                          @Qualifier("dbBJdbcTemplate") JdbcTemplate dbBJdbcTemplate,
                          @Qualifier("dbADataSource") DataSource dbADataSource,
                          @Qualifier("dbBDataSource") DataSource dbBDataSource,
                          SyncConfigService configService,
-                         SyncLogService syncLogService) {
+                         SyncLogService syncLogService,
+                         SyncProperties syncProperties,
+                         MeterRegistry meterRegistry) {
+        this(dbAJdbcTemplate, dbBJdbcTemplate, dbADataSource, dbBDataSource, configService, syncLogService,
+                syncProperties, meterRegistry, SyncNodes.none());
+    }
+
+    @Autowired
+    public DmSyncService(@Qualifier("dbAJdbcTemplate") JdbcTemplate dbAJdbcTemplate,
+                         @Qualifier("dbBJdbcTemplate") JdbcTemplate dbBJdbcTemplate,
+                         @Qualifier("dbADataSource") DataSource dbADataSource,
+                         @Qualifier("dbBDataSource") DataSource dbBDataSource,
+                         SyncConfigService configService,
+                         SyncLogService syncLogService,
+                         SyncProperties syncProperties,
+                         MeterRegistry meterRegistry,
+                         SyncNodes nodes) {
         this.dbAJdbcTemplate = dbAJdbcTemplate;
         this.dbBJdbcTemplate = dbBJdbcTemplate;
         this.dbADataSource = dbADataSource;
         this.dbBDataSource = dbBDataSource;
         this.configService = configService;
         this.syncLogService = syncLogService;
+        this.metrics = new SyncMetrics(meterRegistry);
+        this.dialect = SqlDialect.of(syncProperties.getDialect());
+        this.operationApplier = new OperationApplier(syncLogService, syncProperties.getBatchSize(), metrics,
+                syncProperties.getRetry(), syncProperties.getCdc().isEnabled() ? dialect : null);
+        this.checksumRangeDiff = new ChecksumRangeDiff(dbAJdbcTemplate, dbBJdbcTemplate, syncProperties.getChecksum());
+        this.planCache = new SyncPlanCache(dbAJdbcTemplate, dbBJdbcTemplate, dialect);
+        this.changeCapture = new ChangeCapture(dbAJdbcTemplate, dbBJdbcTemplate, dialect, syncProperties.getCdc());
+        this.watermarkStore = new SyncWatermarkStore(dbAJdbcTemplate);
+        this.cluster = new ClusterCoordinator(dbAJdbcTemplate, dialect, syncProperties.getCluster());
+        this.fingerprints = new FingerprintStore(syncProperties.getFingerprint());
+        this.maxAttempts = syncProperties.getRetry().getMaxAttempts();
+        this.watermarkLag = syncProperties.getWatermarkLag();
+        this.deleteCheckInterval = syncProperties.getDeleteCheckInterval();
+        this.pageSize = Math.max(1, syncProperties.getPageSize());
+        this.interval = syncProperties.getInterval();
+        this.schedulerProperties = syncProperties.getScheduler();
+        this.workers = Math.max(1, syncProperties.getWorkers());
+        this.syncExecutor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "dm-sync-worker-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.pipeline = syncProperties.getPipeline();
+        this.stageExecutor = stageExecutor(pipeline.isVirtualThreads());
+        this.nodeFanout = new NodeFanout(dbAJdbcTemplate, nodes.getTemplates(), operationApplier, watermarkStore,
+                stageExecutor, pipeline.getApplySteps(), syncProperties.getQueue().getIndexCapacity());
+        for (String db : Arrays.asList("dbA", "dbB")) {
+            databasePermits.put(db, new Semaphore(Math.max(1, syncProperties.getMaxConcurrentTables(db)), true));
+            targetLocks.put(db, new ReentrantLock());
+            pendingByTarget.put(db, openQueue(db, syncProperties.getQueue()));
+            indexByTarget.put(db, new OperationIndex(syncProperties.getQueue().getIndexCapacity()));
+            retryByTarget.put(db, new RetryScheduler(db, due -> retryOperations(db, due)));
+            metrics.registerQueue(db, pendingByTarget.get(db), retryByTarget.get(db));
+        }
     }
 
-    public void synchronizeAll() {
-        replayPendingOperations("dbA", dbAJdbcTemplate);
-        replayPendingOperations("dbB", dbBJdbcTemplate);
+    // virtual threads keep blocking JDBC calls off platform threads on Java 21 and later
+    private static ExecutorService stageExecutor(boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Virtual threads need Java 21 or later; pipeline stages run on platform threads");
+            }
+        }
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "dm-sync-stage-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private OperationQueue openQueue(String targetDb, SyncProperties.QueueProperties properties) {
+        if (!StringUtils.hasText(properties.getDirectory())) {
+            return new MemoryOperationQueue();
+        }
+        Path directory = Paths.get(properties.getDirectory(), targetDb);
+        try {
+            return new OperationLog(directory, properties.getSegmentSize(), targetDb, new OperationCodec.TableLookup() {
+                @Override
+                public SyncConfig config(String tableName) {
+                    return configService.findByTableName(tableName).orElse(null);
+                }
+
+                @Override
+                public SyncPlan plan(SyncConfig config) {
+                    return planCache.get(config);
+                }
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open operation log in " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        syncExecutor.shutdownNow();
+        stageExecutor.shutdownNow();
+        // a worker still applying a page uses the queues and the fingerprints closed below
+        boolean stopped = awaitTermination(syncExecutor, "sync workers");
+        stopped &= awaitTermination(stageExecutor, "pipeline stages");
+        for (Map.Entry<String, OperationQueue> entry : pendingByTarget.entrySet()) {
+            OperationQueue queue = entry.getValue();
+            // operations waiting for their backoff only live in memory, so they go back to the queue to survive a restart
+            List<SyncOperation> waiting = retryByTarget.get(entry.getKey()).close();
+            Lock lock = targetLocks.get(entry.getKey());
+            lock.lock();
+            try {
+                for (SyncOperation operation : waiting) {
+                    queue.add(operation);
+                }
+                queue.commit();
+                queue.close();
+            } finally {
+                lock.unlock();
+            }
+        }
+        // nothing here writes to the tables any more, so the other members may take them over right away;
+        // otherwise they wait for the leases to expire
+        if (stopped) {
+            cluster.leave();
+        }
+        fingerprints.close();
+    }
+
+    private static boolean awaitTermination(ExecutorService executor, String name) {
+        try {
+            if (executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                return true;
+            }
+            log.warn("Some {} did not stop within 5 seconds", name);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    // returns the tables skipped because they were already being synchronized here or by another instance
+    public List<String> synchronizeAll() {
+        flushPending();
 
         List<SyncConfig> configs = configService.findAll();
+        planCache.retain(configs);
+        List<SyncConfig> active = new ArrayList<>();
         for (SyncConfig config : configs) {
             if (!config.isActiveFlag()) {
                 log.debug("Skipping inactive config for table {}", config.getTableName());
                 continue;
             }
-            try {
-                synchronizeTable(config);
-                configService.updateLastSyncTime(config.getTableName(), Instant.now());
-            } catch (Exception e) {
-                log.error("Failed to synchronize table {}: {}", config.getTableName(), e.getMessage(), e);
-                syncLogService.record("dbA", "dbB", config.getTableName(), "SYNC", "FAILED", e.getMessage());
+            active.add(config);
+        }
+        return synchronizeConcurrently(active);
+    }
+
+    // keeps this instance's cluster membership and table leases alive; a no-op unless dm.sync.cluster is enabled
+    public void heartbeat() {
+        cluster.heartbeat(runningTables);
+    }
+
+    public Map<String, Object> getClusterStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", cluster.isEnabled());
+        if (cluster.isEnabled()) {
+            status.put("instanceId", cluster.getInstanceId());
+            status.put("members", cluster.getMembers());
+        }
+        return status;
+    }
+
+    // starts the due tables, highest priority first, without waiting for them; tables that do not fit
+    // into the idle workers stay due and are picked up on a later tick
+    public void dispatchDueTables() {
+        List<SyncConfig> configs = configService.findAll();
+        planCache.retain(configs);
+        long now = System.currentTimeMillis();
+        Set<String> configured = new HashSet<>();
+        List<TableSchedule> due = new ArrayList<>();
+        for (SyncConfig config : configs) {
+            if (!config.isActiveFlag()) {
+                continue;
+            }
+            String tableKey = config.getTableName().toLowerCase();
+            // tables of other instances lose their schedule and start afresh if they are moved back here
+            if (!cluster.owns(tableKey)) {
+                continue;
+            }
+            configured.add(tableKey);
+            TableSchedule schedule = schedules.get(tableKey);
+            if (schedule == null || schedule.getConfig() != config) {
+                schedule = newSchedule(config, now);
+                schedules.put(tableKey, schedule);
+            }
+            if (schedule.isDue(now)) {
+                due.add(schedule);
             }
         }
+        schedules.keySet().retainAll(configured);
+        due.sort(Comparator.comparingInt(TableSchedule::getPriority).reversed()
+                .thenComparingLong(TableSchedule::getNextRunMillis));
+        for (TableSchedule schedule : due) {
+            if (scheduledRunning.get() >= workers) {
+                break;
+            }
+            schedule.start();
+            scheduledRunning.incrementAndGet();
+            syncExecutor.submit(() -> {
+                long changes = -1;
+                try {
+                    changes = synchronizeTableSafely(schedule.getConfig());
+                } finally {
+                    schedule.finish(changes, System.currentTimeMillis());
+                    scheduledRunning.decrementAndGet();
+                    log.debug("Next synchronization of table {} in {} ms", schedule.getConfig().getTableName(),
+                            schedule.getInterval());
+                }
+            });
+        }
+    }
+
+    private TableSchedule newSchedule(SyncConfig config, long now) {
+        long minInterval = config.getMinInterval() != null ? config.getMinInterval() : schedulerProperties.getMinInterval();
+        long maxInterval = config.getMaxInterval() != null ? config.getMaxInterval() : schedulerProperties.getMaxInterval();
+        long baseInterval = config.getInterval() != null ? config.getInterval() : interval;
+        return new TableSchedule(config, baseInterval, minInterval, maxInterval, now);
+    }
+
+    TableSchedule scheduleOf(String tableName) {
+        return schedules.get(tableName.toLowerCase());
     }
 
-    public void synchronizeTables(Collection<String> tableNames) {
+    public List<String> synchronizeTables(Collection<String> tableNames) {
         if (CollectionUtils.isEmpty(tableNames)) {
-            synchronizeAll();
-            return;
+            return synchronizeAll();
         }
+        List<SyncConfig> configs = new ArrayList<>();
         for (String tableName : tableNames) {
             Optional<SyncConfig> configOptional = configService.findByTableName(tableName);
-            configOptional.ifPresent(this::synchronizeTableSafely);
+            configOptional.ifPresent(configs::add);
+        }
+        return synchronizeConcurrently(configs);
+    }
+
+    private List<String> synchronizeConcurrently(List<SyncConfig> configs) {
+        List<Future<Long>> futures = new ArrayList<>(configs.size());
+        for (SyncConfig config : configs) {
+            futures.add(syncExecutor.submit(() -> synchronizeTableSafely(config)));
+        }
+        List<String> skipped = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                if (futures.get(i).get() == SKIPPED) {
+                    skipped.add(configs.get(i).getTableName());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return skipped;
+            } catch (ExecutionException e) {
+                log.error("Table synchronization task failed: {}", e.getCause().getMessage(), e.getCause());
+            }
         }
+        return skipped;
     }
 
-    private void synchronizeTableSafely(SyncConfig config) {
+    // returns the number of operations the pass queued, SKIPPED when another pass holds the table, or -1 when it failed
+    private long synchronizeTableSafely(SyncConfig config) {
+        String tableKey = config.getTableName().toLowerCase();
+        if (!runningTables.add(tableKey)) {
+            log.info("Table {} is already being synchronized, skipping", config.getTableName());
+            return SKIPPED;
+        }
+        Semaphore permitsA = databasePermits.get("dbA");
+        Semaphore permitsB = databasePermits.get("dbB");
+        boolean leased = false;
+        boolean acquiredA = false;
+        boolean acquiredB = false;
         try {
-            synchronizeTable(config);
+            if (!cluster.acquire(tableKey)) {
+                log.debug("Table {} is assigned to another instance, skipping", config.getTableName());
+                return SKIPPED;
+            }
+            leased = cluster.isEnabled();
+            permitsA.acquire();
+            acquiredA = true;
+            permitsB.acquire();
+            acquiredB = true;
+            long changes = synchronizeTable(config);
             configService.updateLastSyncTime(config.getTableName(), Instant.now());
+            return changes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             log.error("Failed to synchronize table {}: {}", config.getTableName(), e.getMessage(), e);
             syncLogService.record("dbA", "dbB", config.getTableName(), "SYNC", "FAILED", e.getMessage());
+        } finally {
+            if (acquiredB) {
+                permitsB.release();
+            }
+            if (acquiredA) {
+                permitsA.release();
+            }
+            // a table the ring moved away while it ran is handed over right away
+            if (leased && !cluster.owns(tableKey)) {
+                cluster.release(tableKey);
+            }
+            runningTables.remove(tableKey);
         }
+        return -1;
     }
 
-    private void synchronizeTable(SyncConfig config) {
+    private long synchronizeTable(SyncConfig config) throws SQLException {
         log.info("Synchronizing table {}", config.getTableName());
-        Map<String, Object> fetchContext = buildFetchContext(config);
-        List<Map<String, Object>> rowsA = fetchRows(dbAJdbcTemplate, config, fetchContext);
-        List<Map<String, Object>> rowsB = fetchRows(dbBJdbcTemplate, config, fetchContext);
-
-        Map<Object, Map<String, Object>> mapA = indexByPrimaryKey(rowsA, config.getPrimaryKey());
-        Map<Object, Map<String, Object>> mapB = indexByPrimaryKey(rowsB, config.getPrimaryKey());
-
-        Set<Object> allKeys = new HashSet<>();
-        allKeys.addAll(mapA.keySet());
-        allKeys.addAll(mapB.keySet());
-
-        for (Object key : allKeys) {
-            Map<String, Object> rowA = mapA.get(key);
-            Map<String, Object> rowB = mapB.get(key);
-
-            if (rowA == null) {
-                queueOperation("dbA", "dbB", config, OperationType.DELETE, rowB, key);
-            } else if (rowB == null) {
-                queueOperation("dbB", "dbA", config, OperationType.INSERT, rowA, key);
-            } else if (hasDifferences(rowA, rowB, config)) {
-                Instant lastUpdateA = getUpdateTimestamp(rowA, config);
-                Instant lastUpdateB = getUpdateTimestamp(rowB, config);
-                if (lastUpdateA != null && lastUpdateB != null) {
-                    if (lastUpdateA.isAfter(lastUpdateB)) {
-                        queueOperation("dbB", "dbA", config, OperationType.UPDATE, rowA, key);
-                    } else if (lastUpdateB.isAfter(lastUpdateA)) {
-                        queueOperation("dbA", "dbB", config, OperationType.UPDATE, rowB, key);
-                    } else {
-                        queueOperation("dbB", "dbA", config, OperationType.UPDATE, rowA, key);
-                        queueOperation("dbA", "dbB", config, OperationType.UPDATE, rowB, key);
-                    }
-                } else {
-                    queueOperation("dbB", "dbA", config, OperationType.UPDATE, rowA, key);
-                    queueOperation("dbA", "dbB", config, OperationType.UPDATE, rowB, key);
+        TableReconciliation reconciliation;
+        try {
+            reconciliation = synchronizeTable(config, planCache.get(config));
+        } catch (SchemaChangedException e) {
+            log.info("{}, recompiling", e.getMessage());
+            planCache.invalidate(config.getTableName());
+            reconciliation = synchronizeTable(config, planCache.get(config));
+        }
+
+        flushPending();
+        // the other nodes follow dbA once it has settled with dbB, on every pass that covered the whole key range
+        boolean nodesFailed = false;
+        if (nodeFanout.isEnabled() && reconciliation.complete && reconciliation.coversDeletes) {
+            long queued = nodeFanout.synchronize(config, reconciliation.plan, reconciliation.pageSize,
+                    reconciliation.fetchSize(true), this::enqueue);
+            if (queued < 0) {
+                nodesFailed = true;
+                reconciliation.complete = false;
+            } else {
+                reconciliation.operations += queued;
+            }
+            flushPending();
+        }
+        fingerprints.flush();
+        reconciliation.finish();
+        if (nodesFailed) {
+            syncLogService.record("dbA", "dbB", config.getTableName(), "SYNC", "FAILED",
+                    "Multi-way merge with the other nodes failed after " + reconciliation.inspected + " keys inspected");
+        } else {
+            syncLogService.record("dbA", "dbB", config.getTableName(), "SYNC", "SUCCESS",
+                    "Synchronization completed with " + reconciliation.inspected + " keys inspected");
+        }
+        return reconciliation.operations;
+    }
+
+    private TableReconciliation synchronizeTable(SyncConfig config, SyncPlan plan) throws SQLException {
+        TableReconciliation reconciliation = new TableReconciliation(config, plan);
+        if (changeCapture.isEnabled() && changeCapture.install(plan)) {
+            if (watermarkStore.isCaptureReady(config.getTableName(), plan.getSignature())) {
+                reconciliation.startProgress("CAPTURE", null, 0);
+                reconciliation.inspected = consumeChanges(plan, reconciliation, true);
+                reconciliation.inspected += consumeChanges(plan, reconciliation, false);
+                return reconciliation;
+            }
+            // the triggers are recording now; changes logged before this point are covered by the comparison below
+            try {
+                reconciliation.captureBaselineA = changeCapture.lastSequence(true, config.getTableName());
+                reconciliation.captureBaselineB = changeCapture.lastSequence(false, config.getTableName());
+            } catch (DataAccessException e) {
+                log.warn("Unable to read the change log of table {}: {}", config.getTableName(), e.getMessage());
+                reconciliation.captureBaselineA = null;
+            }
+        }
+        ScanCheckpoint checkpoint = watermarkStore.findCheckpoint(config.getTableName(), plan.getSignature());
+        if (checkpoint != null) {
+            // an interrupted full scan keeps its original cutoffs so the watermarks it settles stay valid
+            log.info("Resuming full scan of table {} after key {}", config.getTableName(), checkpoint.getLastKey());
+            reconciliation.cutoffA = checkpoint.getCutoffA();
+            reconciliation.cutoffB = checkpoint.getCutoffB();
+            reconciliation.startProgress("FULL_SCAN", checkpoint.getLastKey(), checkpoint.getKeysInspected());
+            reconciliation.inspected = reconcilePages(plan, reconciliation, checkpoint);
+            reconciliation.coversDeletes = true;
+            reconciliation.settleAtCutoffs();
+            return reconciliation;
+        }
+        reconciliation.cutoffA = serverCutoff(dbAJdbcTemplate);
+        reconciliation.cutoffB = serverCutoff(dbBJdbcTemplate);
+        if (plan.supportsWatermarks()) {
+            SyncWatermark watermarkA = watermarkStore.find(config.getTableName(), "dbA", plan.getSignature());
+            SyncWatermark watermarkB = watermarkStore.find(config.getTableName(), "dbB", plan.getSignature());
+            if (watermarkA != null && watermarkB != null) {
+                reconciliation.startProgress("CHANGES", null, 0);
+                reconciliation.settledA = watermarkA;
+                reconciliation.settledB = watermarkB;
+                reconciliation.inspected = reconcileChanges(plan, reconciliation, true, watermarkA);
+                flushPending();
+                reconciliation.inspected += reconcileChanges(plan, reconciliation, false, watermarkB);
+                if (isKeyCheckDue(config)) {
+                    flushPending();
+                    reconciliation.inspected += reconcileKeys(plan, reconciliation);
+                    reconciliation.coversDeletes = true;
                 }
+                return reconciliation;
             }
         }
 
-        flushPending();
-        syncLogService.record("dbA", "dbB", config.getTableName(), "SYNC", "SUCCESS",
-                "Synchronization completed with " + allKeys.size() + " keys inspected");
+        long inspected = -1;
+        if (checksumRangeDiff.isEnabled()) {
+            reconciliation.startProgress("CHECKSUM", null, 0);
+            try {
+                inspected = checksumRangeDiff.synchronize(plan,
+                        (low, high) -> reconcileRange(plan, reconciliation, low, high));
+            } catch (DataAccessException e) {
+                log.warn("Checksum diff failed for table {}, falling back to a full comparison: {}",
+                        config.getTableName(), e.getMessage());
+            }
+        }
+        if (inspected < 0) {
+            reconciliation.startProgress("FULL_SCAN", null, 0);
+            inspected = reconcilePages(plan, reconciliation, null);
+        }
+        reconciliation.inspected = inspected;
+        reconciliation.coversDeletes = true;
+        reconciliation.settleAtCutoffs();
+        return reconciliation;
     }
 
-    private Map<String, Object> buildFetchContext(SyncConfig config) {
-        Map<String, Object> context = new HashMap<>();
-        context.put("lastSyncTime", config.getLastSyncTime());
-        return context;
+    private long reconcileRange(SyncPlan plan, TableReconciliation reconciliation, long low, long high)
+            throws SQLException {
+        String sql = plan.orderedSelectSql(plan.getPrimaryKey() + " BETWEEN ? AND ?");
+        List<Object> params = Arrays.asList(low, high);
+        long inspected;
+        long start = System.nanoTime();
+        try (RowCursor cursorA = openRowCursor(dbAJdbcTemplate, plan, plan.getSchemaA(), sql, params,
+                reconciliation.fetchSize(true), true);
+             RowCursor cursorB = openRowCursor(dbBJdbcTemplate, plan, plan.getSchemaB(), sql, params,
+                     reconciliation.fetchSize(false), false)) {
+            if (cursorB == null) {
+                reconciliation.complete = false;
+            }
+            inspected = reconciler.reconcile(plan.getTableName(), cursorA,
+                    cursorB == null ? RowCursor.empty() : cursorB, reconciliation);
+        }
+        // leaf ranges stream both sides through the merge, so their reads are timed as part of the diff
+        metrics.recordDiff(plan.getTableName(), start, inspected);
+        reconciliation.progress.pageCompleted(inspected, high);
+        return inspected;
     }
 
-    private List<Map<String, Object>> fetchRows(JdbcTemplate jdbcTemplate, SyncConfig config, Map<String, Object> context) {
-        String selectColumns = buildSelectColumns(config);
-        StringBuilder sql = new StringBuilder("SELECT ").append(selectColumns)
-                .append(" FROM ").append(config.getTableName());
-        List<Object> params = new ArrayList<>();
-        if (config.getLastUpdateColumn() != null && context.get("lastSyncTime") instanceof Instant) {
-            sql.append(" WHERE ").append(config.getLastUpdateColumn()).append(" >= ?");
-            Instant lastSyncTime = ((Instant) context.get("lastSyncTime")).minus(5, ChronoUnit.SECONDS);
-            params.add(Timestamp.from(lastSyncTime));
+    // merges both sides one primary-key page at a time, checkpointing after every page so a restart resumes there.
+    // With the pipeline enabled both sides are read ahead concurrently and pages are applied while the merge goes on
+    private long reconcilePages(SyncPlan plan, TableReconciliation reconciliation, ScanCheckpoint checkpoint)
+            throws SQLException {
+        if (!pipeline.isEnabled()) {
+            return reconcilePages(plan, reconciliation, checkpoint,
+                    sideA -> afterKey -> readPage(plan, reconciliation, afterKey, sideA));
         }
+        Object startKey = checkpoint == null ? null : checkpoint.getLastKey();
+        reconciliation.applyStage = new ApplyStage(stageExecutor, pipeline.getApplySteps());
+        boolean merged = false;
+        try (PagePrefetcher prefetchA = prefetch(plan, reconciliation, startKey, true);
+             PagePrefetcher prefetchB = prefetch(plan, reconciliation, startKey, false)) {
+            long inspected = reconcilePages(plan, reconciliation, checkpoint,
+                    sideA -> afterKey -> (sideA ? prefetchA : prefetchB).next());
+            merged = true;
+            return inspected;
+        } finally {
+            ApplyStage stage = reconciliation.applyStage;
+            reconciliation.applyStage = null;
+            // pending checkpoints must be written before the table finishes and clears them
+            try {
+                stage.await();
+            } catch (RuntimeException e) {
+                if (merged) {
+                    throw e;
+                }
+                log.warn("Applying pages of table {} failed: {}", plan.getTableName(), e.getMessage());
+            }
+        }
+    }
+
+    private PagePrefetcher prefetch(SyncPlan plan, TableReconciliation reconciliation, Object startKey,
+                                    boolean sideA) {
+        return new PagePrefetcher(stageExecutor, pipeline.getPrefetchPages(), startKey,
+                afterKey -> readPage(plan, reconciliation, afterKey, sideA));
+    }
+
+    private long reconcilePages(SyncPlan plan, TableReconciliation reconciliation, ScanCheckpoint checkpoint,
+                                Function<Boolean, PagePrefetcher.PageReader> pages) throws SQLException {
+        Object startKey = checkpoint == null ? null : checkpoint.getLastKey();
+        long inspected = checkpoint == null ? 0 : checkpoint.getKeysInspected();
+        PagePrefetcher.PageReader pagesA = pages.apply(true);
+        PagePrefetcher.PageReader pagesB = pages.apply(false);
+        PageBuffer pageA = new PageBuffer(reconciliation.pageSize, startKey);
+        PageBuffer pageB = new PageBuffer(reconciliation.pageSize, startKey);
+        while (true) {
+            if (pageA.isDrained() && !pageA.isExhausted()) {
+                pageA = pagesA.read(pageA.getLastKey());
+            }
+            if (pageB.isDrained() && !pageB.isExhausted()) {
+                pageB = pagesB.read(pageB.getLastKey());
+            }
+            if (pageA.isDrained() && pageB.isDrained()) {
+                break;
+            }
+            // keys past the shorter page may still exist on the other side's next page
+            Object bound = null;
+            if (!pageA.isExhausted()) {
+                bound = pageA.getLastKey();
+            }
+            if (!pageB.isExhausted() && (bound == null
+                    || MergeReconciler.compareKeys(pageB.getLastKey(), bound) < 0)) {
+                bound = pageB.getLastKey();
+            }
+            pageA.setBound(bound);
+            pageB.setBound(bound);
+            long start = System.nanoTime();
+            long keys = reconciler.reconcile(plan.getTableName(), pageA, pageB, reconciliation);
+            metrics.recordDiff(plan.getTableName(), start, keys);
+            inspected += keys;
+            reconciliation.progress.pageCompleted(keys, bound);
+            log.debug("Table {}: {} keys inspected, last key {}", plan.getTableName(), inspected, bound);
+            if (bound != null && reconciliation.complete) {
+                ScanCheckpoint reached = new ScanCheckpoint(bound, reconciliation.cutoffA,
+                        reconciliation.cutoffB, inspected);
+                reconciliation.applyPending(() -> saveCheckpoint(plan, reached));
+            }
+        }
+        return inspected;
+    }
+
+    private PageBuffer readPage(SyncPlan plan, TableReconciliation reconciliation, Object afterKey, boolean sideA)
+            throws SQLException {
+        PageBuffer page = new PageBuffer(reconciliation.pageSize, afterKey);
+        fillPage(plan, reconciliation, page, sideA);
+        return page;
+    }
+
+    private void fillPage(SyncPlan plan, TableReconciliation reconciliation, PageBuffer page, boolean sideA)
+            throws SQLException {
+        JdbcTemplate jdbcTemplate = sideA ? dbAJdbcTemplate : dbBJdbcTemplate;
+        RowSchema schema = sideA ? plan.getSchemaA() : plan.getSchemaB();
+        Object afterKey = page.getLastKey();
+        List<Object> params = afterKey == null ? Collections.emptyList() : Collections.singletonList(afterKey);
+        long start = System.nanoTime();
+        try (RowCursor cursor = openRowCursor(jdbcTemplate, plan, schema,
+                plan.pageSql(afterKey, reconciliation.pageSize), params, reconciliation.fetchSize(sideA), sideA)) {
+            if (cursor == null) {
+                reconciliation.complete = false;
+                page.markExhausted();
+                return;
+            }
+            int rows = page.fill(cursor, reconciliation.pageSize);
+            metrics.recordFetch(plan.getTableName(), sideA, start, rows);
+        }
+    }
+
+    private void saveCheckpoint(SyncPlan plan, ScanCheckpoint checkpoint) {
         try {
-            return jdbcTemplate.query(sql.toString(), params.toArray(), (rs, rowNum) -> {
-                Map<String, Object> map = new LinkedHashMap<>();
-                int columnCount = rs.getMetaData().getColumnCount();
-                for (int i = 1; i <= columnCount; i++) {
-                    String columnName = rs.getMetaData().getColumnLabel(i);
-                    Object value = rs.getObject(i);
-                    map.put(columnName.toLowerCase(), value);
+            watermarkStore.saveCheckpoint(plan.getTableName(), plan.getSignature(), checkpoint);
+        } catch (DataAccessException e) {
+            log.warn("Unable to save scan checkpoint of table {}: {}", plan.getTableName(), e.getMessage());
+        }
+    }
+
+    // consumes the keys one side's trigger logged, pairing each with both sides' current rows
+    private long consumeChanges(SyncPlan plan, TableReconciliation reconciliation, boolean sideA) throws SQLException {
+        long inspected = 0;
+        while (true) {
+            List<ChangeCapture.Change> changes;
+            try {
+                changes = changeCapture.read(sideA, plan.getTableName(), reconciliation.pageSize);
+            } catch (DataAccessException e) {
+                if (sideA) {
+                    throw e;
                 }
-                return map;
-            });
-        } catch (Exception e) {
-            log.warn("Failed to fetch rows for table {}: {}", config.getTableName(), e.getMessage());
-            return Collections.emptyList();
+                log.warn("Unable to read the change log of table {} on dbB: {}", plan.getTableName(), e.getMessage());
+                reconciliation.complete = false;
+                return inspected;
+            }
+            if (changes.isEmpty()) {
+                return inspected;
+            }
+            Set<String> keys = new LinkedHashSet<>();
+            for (ChangeCapture.Change change : changes) {
+                keys.add(change.getKey());
+            }
+            List<Object> keyList = new ArrayList<>(keys);
+            Map<String, CompactRow> rowsA = byKeyText(lookupRows(plan, reconciliation, true, keyList));
+            Map<String, CompactRow> rowsB = byKeyText(lookupRows(plan, reconciliation, false, keyList));
+            if (!reconciliation.complete) {
+                return inspected;
+            }
+            reconciliation.changedDb = sideA ? "dbA" : "dbB";
+            long start = System.nanoTime();
+            for (String key : keys) {
+                CompactRow rowA = rowsA.get(key);
+                CompactRow rowB = rowsB.get(key);
+                if (rowA != null || rowB != null) {
+                    reconciliation.handle(plan.keyOf(rowA != null ? rowA : rowB), rowA, rowB);
+                }
+            }
+            reconciliation.changedDb = null;
+            metrics.recordDiff(plan.getTableName(), start, keys.size());
+            inspected += keys.size();
+            reconciliation.progress.pageCompleted(keys.size(), keyList.get(keyList.size() - 1));
+            // the deltas are only dropped once the operations they produced were applied or queued
+            flushPending();
+            reconciliation.queuedSinceFlush = 0;
+            changeCapture.trim(sideA, plan.getTableName(), changes.get(changes.size() - 1).getSequence());
+            if (changes.size() < reconciliation.pageSize) {
+                return inspected;
+            }
+        }
+    }
+
+    private static Map<String, CompactRow> byKeyText(Map<Object, CompactRow> rows) {
+        Map<String, CompactRow> byText = new HashMap<>(rows.size() * 2);
+        for (Map.Entry<Object, CompactRow> entry : rows.entrySet()) {
+            byText.put(String.valueOf(entry.getKey()), entry.getValue());
         }
+        return byText;
     }
 
-    private String buildSelectColumns(SyncConfig config) {
-        Set<String> columns = new HashSet<>(config.getIncludeColumns());
-        columns.add(config.getPrimaryKey());
-        if (config.getLastUpdateColumn() != null) {
-            columns.add(config.getLastUpdateColumn());
+    // walks the rows one side changed past its watermark and pairs each with the other side's current row
+    private long reconcileChanges(SyncPlan plan, TableReconciliation reconciliation, boolean sideA,
+                                  SyncWatermark watermark) throws SQLException {
+        JdbcTemplate jdbcTemplate = sideA ? dbAJdbcTemplate : dbBJdbcTemplate;
+        RowSchema schema = sideA ? plan.getSchemaA() : plan.getSchemaB();
+        Timestamp cutoff = sideA ? reconciliation.cutoffA : reconciliation.cutoffB;
+        int pageSize = reconciliation.pageSize;
+        SyncWatermark position = watermark;
+        SyncWatermark settled = watermark;
+        long inspected = 0;
+        while (true) {
+            List<CompactRow> rows = new ArrayList<>(pageSize);
+            List<Object> keys = new ArrayList<>(pageSize);
+            long start = System.nanoTime();
+            try (RowCursor cursor = openRowCursor(jdbcTemplate, plan, schema, plan.changesSql(position, pageSize),
+                    plan.changesParams(position), reconciliation.fetchSize(sideA), sideA)) {
+                if (cursor == null) {
+                    reconciliation.complete = false;
+                    return inspected;
+                }
+                while (cursor.next()) {
+                    rows.add(cursor.row());
+                    keys.add(cursor.key());
+                }
+            }
+            metrics.recordFetch(plan.getTableName(), sideA, start, rows.size());
+            if (rows.isEmpty()) {
+                break;
+            }
+            Map<Object, CompactRow> counterparts = lookupRows(plan, reconciliation, !sideA, keys);
+            start = System.nanoTime();
+            for (int i = 0; i < rows.size(); i++) {
+                CompactRow row = rows.get(i);
+                CompactRow other = counterparts.get(keys.get(i));
+                reconciliation.handle(keys.get(i), sideA ? row : other, sideA ? other : row);
+                Instant updated = plan.updateTimestamp(row);
+                if (updated == null) {
+                    continue;
+                }
+                Timestamp lastUpdate = Timestamp.from(updated);
+                // rows at or past the cutoff may still have uncommitted peers and are read again next cycle
+                if (cutoff != null && lastUpdate.before(cutoff)) {
+                    settled = SyncWatermark.after(lastUpdate, keys.get(i));
+                }
+                position = SyncWatermark.after(lastUpdate, keys.get(i));
+            }
+            metrics.recordDiff(plan.getTableName(), start, rows.size());
+            inspected += rows.size();
+            reconciliation.progress.pageCompleted(rows.size(), keys.get(keys.size() - 1));
+            if (rows.size() < pageSize) {
+                break;
+            }
         }
-        columns.remove("*");
-        if (columns.isEmpty()) {
-            return "*";
+        if (sideA) {
+            reconciliation.settledA = settled;
+        } else {
+            reconciliation.settledB = settled;
         }
-        List<String> sorted = new ArrayList<>(columns);
-        sorted.sort(Comparator.naturalOrder());
-        return String.join(", ", sorted);
+        return inspected;
     }
 
-    private Map<Object, Map<String, Object>> indexByPrimaryKey(List<Map<String, Object>> rows, String primaryKey) {
-        Map<Object, Map<String, Object>> result = new HashMap<>();
-        for (Map<String, Object> row : rows) {
-            Object key = row.get(primaryKey.toLowerCase());
-            result.put(key, row);
+    private boolean isKeyCheckDue(SyncConfig config) {
+        long interval = config.getDeleteCheckInterval() != null ? config.getDeleteCheckInterval() : deleteCheckInterval;
+        if (interval <= 0) {
+            return false;
         }
-        return result;
+        Long last = lastKeyCheck.get(config.getTableName().toLowerCase());
+        return last == null || System.currentTimeMillis() - last >= interval;
     }
 
-    private boolean hasDifferences(Map<String, Object> rowA, Map<String, Object> rowB, SyncConfig config) {
-        Set<String> columnsToCompare = new HashSet<>(config.getIncludeColumns());
-        if (columnsToCompare.isEmpty() || columnsToCompare.contains("*")) {
-            columnsToCompare.addAll(rowA.keySet());
-            columnsToCompare.addAll(rowB.keySet());
+    // streams only the primary keys of both sides in order; keys found on one side are looked up in full and
+    // reconciled like any other pair, which turns rows deleted on dbA into deletes on dbB
+    private long reconcileKeys(SyncPlan plan, TableReconciliation reconciliation) throws SQLException {
+        List<Object> unmatched = new ArrayList<>();
+        long inspected = 0;
+        long start = System.nanoTime();
+        try (RowCursor keysA = openRowCursor(dbAJdbcTemplate, plan, null, plan.keysSql(), Collections.emptyList(),
+                reconciliation.fetchSize(true), true);
+             RowCursor keysB = openRowCursor(dbBJdbcTemplate, plan, null, plan.keysSql(), Collections.emptyList(),
+                     reconciliation.fetchSize(false), false)) {
+            if (keysB == null) {
+                reconciliation.complete = false;
+                return 0;
+            }
+            boolean hasA = keysA.next();
+            boolean hasB = keysB.next();
+            while (hasA || hasB) {
+                int comparison = !hasB ? -1 : !hasA ? 1 : MergeReconciler.compareKeys(keysA.key(), keysB.key());
+                if (comparison == 0) {
+                    hasA = keysA.next();
+                    hasB = keysB.next();
+                } else if (comparison < 0) {
+                    unmatched.add(keysA.key());
+                    hasA = keysA.next();
+                } else {
+                    unmatched.add(keysB.key());
+                    hasB = keysB.next();
+                }
+                inspected++;
+                if (unmatched.size() >= LOOKUP_CHUNK_SIZE) {
+                    reconcileUnmatched(plan, reconciliation, unmatched);
+                    unmatched.clear();
+                }
+            }
         }
-        columnsToCompare.remove(config.getPrimaryKey().toLowerCase());
-        columnsToCompare.remove(config.getLastUpdateColumn() != null ? config.getLastUpdateColumn().toLowerCase() : null);
-        for (String column : columnsToCompare) {
-            if (column == null) {
-                continue;
+        reconcileUnmatched(plan, reconciliation, unmatched);
+        metrics.recordDiff(plan.getTableName(), start, inspected);
+        log.debug("Table {}: compared {} primary keys", plan.getTableName(), inspected);
+        return inspected;
+    }
+
+    // both sides are read again because either may have changed since its keys were listed
+    private void reconcileUnmatched(SyncPlan plan, TableReconciliation reconciliation, List<Object> keys)
+            throws SQLException {
+        if (keys.isEmpty() || !reconciliation.complete) {
+            return;
+        }
+        Map<Object, CompactRow> rowsA = lookupRows(plan, reconciliation, true, keys);
+        Map<Object, CompactRow> rowsB = lookupRows(plan, reconciliation, false, keys);
+        if (!reconciliation.complete) {
+            return;
+        }
+        for (Object key : keys) {
+            CompactRow rowA = rowsA.get(key);
+            CompactRow rowB = rowsB.get(key);
+            if (rowA != null || rowB != null) {
+                reconciliation.handle(key, rowA, rowB);
             }
-            Object valueA = rowA.get(column.toLowerCase());
-            Object valueB = rowB.get(column.toLowerCase());
-            if (!Objects.equals(valueA, valueB)) {
-                return true;
+        }
+    }
+
+    private Map<Object, CompactRow> lookupRows(SyncPlan plan, TableReconciliation reconciliation, boolean sideA,
+                                               List<Object> keys) throws SQLException {
+        JdbcTemplate jdbcTemplate = sideA ? dbAJdbcTemplate : dbBJdbcTemplate;
+        RowSchema schema = sideA ? plan.getSchemaA() : plan.getSchemaB();
+        Map<Object, CompactRow> rows = new TreeMap<>(MergeReconciler::compareKeys);
+        long start = System.nanoTime();
+        for (int from = 0; from < keys.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<Object> chunk = keys.subList(from, Math.min(keys.size(), from + LOOKUP_CHUNK_SIZE));
+            try (RowCursor cursor = openRowCursor(jdbcTemplate, plan, schema, plan.lookupSql(chunk.size()), chunk,
+                    reconciliation.fetchSize(sideA), sideA)) {
+                if (cursor == null) {
+                    reconciliation.complete = false;
+                    return rows;
+                }
+                while (cursor.next()) {
+                    rows.put(cursor.key(), cursor.row());
+                }
             }
         }
-        return false;
+        metrics.recordFetch(plan.getTableName(), sideA, start, rows.size());
+        return rows;
+    }
+
+    // changedDb names the side whose trigger logged the key, if known; it wins when timestamps cannot decide
+    private int reconcileRow(SyncConfig config, SyncPlan plan, Object key, CompactRow rowA, CompactRow rowB,
+                             String changedDb) {
+        if (rowA == null) {
+            return queueOperation("dbA", "dbB", config, plan, OperationType.DELETE, rowB, key);
+        }
+        if (rowB == null) {
+            return queueOperation("dbA", "dbB", config, plan, OperationType.INSERT, rowA, key);
+        }
+        if (!plan.hasDifferences(rowA, rowB)) {
+            if (fingerprints.isEnabled()) {
+                fingerprints.record(plan.getTableName(), key, plan.fingerprint(rowA));
+            }
+            return 0;
+        }
+        Instant lastUpdateA = plan.updateTimestamp(rowA);
+        Instant lastUpdateB = plan.updateTimestamp(rowB);
+        if (lastUpdateA != null && lastUpdateB != null) {
+            if (lastUpdateA.isAfter(lastUpdateB)) {
+                return queueUpdate(config, plan, rowA, rowB, true, key);
+            }
+            if (lastUpdateB.isAfter(lastUpdateA)) {
+                return queueUpdate(config, plan, rowA, rowB, false, key);
+            }
+        }
+        // the side still matching the row both last held has not changed it
+        long baseline = fingerprints.find(plan.getTableName(), key);
+        if (baseline != 0) {
+            if (baseline == plan.fingerprint(rowB)) {
+                return queueUpdate(config, plan, rowA, rowB, true, key);
+            }
+            if (baseline == plan.fingerprint(rowA)) {
+                return queueUpdate(config, plan, rowA, rowB, false, key);
+            }
+        }
+        if ("dbA".equals(changedDb)) {
+            return queueUpdate(config, plan, rowA, rowB, true, key);
+        }
+        if ("dbB".equals(changedDb)) {
+            return queueUpdate(config, plan, rowA, rowB, false, key);
+        }
+        return queueUpdate(config, plan, rowA, rowB, true, key)
+                + queueUpdate(config, plan, rowA, rowB, false, key);
     }
 
-    private Instant getUpdateTimestamp(Map<String, Object> row, SyncConfig config) {
-        if (config.getLastUpdateColumn() == null) {
+    private Timestamp serverCutoff(JdbcTemplate jdbcTemplate) {
+        try {
+            Timestamp now = jdbcTemplate.queryForObject(dialect.currentTimestampSql(), Timestamp.class);
+            return now == null ? null : new Timestamp(now.getTime() - watermarkLag);
+        } catch (DataAccessException e) {
+            log.debug("Unable to read server time: {}", e.getMessage());
             return null;
         }
-        Object value = row.get(config.getLastUpdateColumn().toLowerCase());
-        if (value instanceof Timestamp) {
-            return ((Timestamp) value).toInstant();
+    }
+
+    // dbA decides which rows exist, so a failed read there aborts the table; dbB may be offline
+    private RowCursor openRowCursor(JdbcTemplate jdbcTemplate, SyncPlan plan, RowSchema schema, String sql,
+                                    List<Object> params, int fetchSize, boolean required) {
+        RowCursor cursor;
+        try {
+            cursor = RowCursor.open(jdbcTemplate.getDataSource(), sql, params, fetchSize, schema, plan.getPrimaryKey());
+        } catch (Exception e) {
+            if (required) {
+                throw new IllegalStateException("Failed to fetch rows for table " + plan.getTableName()
+                        + " from dbA: " + e.getMessage(), e);
+            }
+            log.warn("Failed to fetch rows for table {}: {}", plan.getTableName(), e.getMessage());
+            return null;
         }
-        if (value instanceof java.util.Date) {
-            return ((java.util.Date) value).toInstant();
+        if (schema != null && cursor.schema() != schema) {
+            cursor.close();
+            throw new SchemaChangedException(plan.getTableName());
         }
-        return null;
+        return cursor;
     }
 
-    private void queueOperation(String sourceDb, String targetDb, SyncConfig config, OperationType operationType,
-                                Map<String, Object> rowData, Object key) {
-        if (rowData == null) {
-            return;
+    private int queueOperation(String sourceDb, String targetDb, SyncConfig config, SyncPlan plan,
+                               OperationType operationType, CompactRow row, Object key) {
+        if (row == null) {
+            return 0;
         }
-        SyncOperation operation = new SyncOperation(sourceDb, targetDb, config, operationType, rowData, key);
-        pendingByTarget.computeIfAbsent(targetDb, k -> new ConcurrentLinkedQueue<>()).add(operation);
+        return enqueue(new SyncOperation(sourceDb, targetDb, config, plan, operationType, row, key)) ? 1 : 0;
     }
 
-    private void flushPending() {
+    // the update only writes the columns that differ, plus lastUpdateColumn
+    private int queueUpdate(SyncConfig config, SyncPlan plan, CompactRow rowA, CompactRow rowB, boolean fromA,
+                            Object key) {
+        SyncOperation operation = fromA
+                ? new SyncOperation("dbA", "dbB", config, plan, OperationType.UPDATE, rowA, key)
+                : new SyncOperation("dbB", "dbA", config, plan, OperationType.UPDATE, rowB, key);
+        operation.setChangedColumns(plan.changedColumns(rowA, rowB, fromA));
+        return enqueue(operation) ? 1 : 0;
+    }
+
+    // false when the row's pending operation already carries the same change, as on every pass while the target is
+    // unreachable
+    boolean enqueue(SyncOperation operation) {
+        String targetDb = operation.getTargetDb();
+        SyncOperation current = indexByTarget.get(targetDb).register(operation);
+        if (current == null) {
+            return false;
+        }
+        pendingByTarget.get(targetDb).add(current);
+        return true;
+    }
+
+    public void flushPending() {
         replayPendingOperations("dbA", dbAJdbcTemplate);
         replayPendingOperations("dbB", dbBJdbcTemplate);
     }
 
+    // both targets are written at once; each keeps its own lock and operation order
+    private void flushPendingConcurrently() {
+        Future<?> replayB = stageExecutor.submit(() -> replayPendingOperations("dbB", dbBJdbcTemplate));
+        replayPendingOperations("dbA", dbAJdbcTemplate);
+        try {
+            replayB.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while applying operations to dbB", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                    : new IllegalStateException(e.getCause());
+        }
+    }
+
     private void replayPendingOperations(String targetDb, JdbcTemplate jdbcTemplate) {
-        Queue<SyncOperation> queue = pendingByTarget.getOrDefault(targetDb, new ConcurrentLinkedQueue<>());
-        int size = queue.size();
-        Instant now = Instant.now();
-        for (int i = 0; i < size; i++) {
-            SyncOperation operation = queue.poll();
-            if (operation == null) {
-                continue;
+        OperationQueue queue = pendingByTarget.get(targetDb);
+        if (queue.size() == 0) {
+            return;
+        }
+        Lock lock = targetLocks.get(targetDb);
+        lock.lock();
+        try {
+            // an unreachable target leaves its operations where they are instead of cycling them through memory
+            if (!isDatabaseAvailable("dbA".equals(targetDb) ? dbADataSource : dbBDataSource)) {
+                commit(targetDb);
+                return;
             }
-            if (operation.getNextRetryTime() != null && now.isBefore(operation.getNextRetryTime())) {
-                queue.offer(operation);
-                continue;
+            replayPendingOperations(targetDb, queue, jdbcTemplate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void replayPendingOperations(String targetDb, OperationQueue queue, JdbcTemplate jdbcTemplate) {
+        // operations re-added below land behind the ones counted here, so each is tried at most once per replay
+        int remaining = queue.size();
+        while (remaining > 0) {
+            List<SyncOperation> polled = queue.poll(Math.min(remaining, MAX_BUFFERED_OPERATIONS));
+            if (polled.isEmpty()) {
+                break;
             }
-            boolean success = applyOperation(jdbcTemplate, operation);
-            if (!success) {
-                queue.offer(operation);
+            remaining -= polled.size();
+            List<SyncOperation> due = new ArrayList<>(polled.size());
+            Instant now = Instant.now();
+            for (SyncOperation operation : current(targetDb, polled)) {
+                if (isWaitingForRetry(operation, now)) {
+                    retryByTarget.get(targetDb).schedule(operation);
+                } else {
+                    due.add(operation);
+                }
             }
+            apply(targetDb, jdbcTemplate, due);
+            commit(targetDb);
         }
     }
 
-    private boolean applyOperation(JdbcTemplate jdbcTemplate, SyncOperation operation) {
-        int attempt = operation.incrementAttempts();
+    // runs on the target's retry thread as soon as the earliest backoff expires
+    private void retryOperations(String targetDb, List<SyncOperation> due) {
+        OperationQueue queue = pendingByTarget.get(targetDb);
+        Lock lock = targetLocks.get(targetDb);
+        lock.lock();
         try {
-            switch (operation.operationType) {
-                case INSERT:
-                    executeInsert(jdbcTemplate, operation);
-                    break;
-                case UPDATE:
-                    executeUpdate(jdbcTemplate, operation);
-                    break;
-                case DELETE:
-                    executeDelete(jdbcTemplate, operation);
-                    break;
-                default:
-                    throw new IllegalArgumentException("Unsupported operation " + operation.operationType);
-            }
-            syncLogService.record(operation.sourceDb, operation.targetDb, operation.config.getTableName(),
-                    operation.operationType.name(), "SUCCESS",
-                    "Row synchronized for key " + operation.primaryKeyValue);
-            return true;
-        } catch (Exception ex) {
-            if (attempt < 3) {
-                long backoffMillis = (long) Math.pow(2, attempt) * 500L;
-                operation.setNextRetryTime(Instant.now().plusMillis(backoffMillis));
-                log.warn("Retrying operation {} on table {} after {} ms due to: {}", operation.operationType,
-                        operation.config.getTableName(), backoffMillis, ex.getMessage());
+            if (!isDatabaseAvailable("dbA".equals(targetDb) ? dbADataSource : dbBDataSource)) {
+                for (SyncOperation operation : due) {
+                    queue.add(operation);
+                }
             } else {
-                syncLogService.record(operation.sourceDb, operation.targetDb, operation.config.getTableName(),
-                        operation.operationType.name(), "FAILED", ex.getMessage());
-                log.error("Operation {} failed permanently on table {}: {}", operation.operationType,
-                        operation.config.getTableName(), ex.getMessage(), ex);
-                return true; // discard after max attempts
+                apply(targetDb, "dbA".equals(targetDb) ? dbAJdbcTemplate : dbBJdbcTemplate, current(targetDb, due));
             }
-            return false;
+            commit(targetDb);
+        } finally {
+            lock.unlock();
         }
     }
 
-    private void executeInsert(JdbcTemplate jdbcTemplate, SyncOperation operation) {
-        Map<String, Object> rowData = operation.rowData;
-        List<String> columns = new ArrayList<>(rowData.keySet());
-        String columnList = String.join(", ", columns);
-        String placeholders = String.join(", ", Collections.nCopies(columns.size(), "?"));
-        String insertSql = "INSERT INTO " + operation.config.getTableName() + " (" + columnList + ") VALUES (" + placeholders + ")";
-        List<Object> values = new ArrayList<>();
-        for (String column : columns) {
-            values.add(rowData.get(column));
+    // drops operations a newer one for the same row has replaced. In a cluster only tables leased here are
+    // written: operations of a table still assigned here go back to the queue until its lease is taken, and
+    // those of a table another member owns are dropped, leaving that member to compare the table in full
+    private List<SyncOperation> current(String targetDb, List<SyncOperation> operations) {
+        OperationIndex index = indexByTarget.get(targetDb);
+        List<SyncOperation> current = new ArrayList<>(operations.size());
+        Map<String, Integer> handedOver = new HashMap<>();
+        for (SyncOperation operation : operations) {
+            String tableName = operation.getConfig().getTableName();
+            if (!index.isCurrent(operation)) {
+                metrics.recordOutcome(operation, SyncMetrics.OUTCOME_SUPERSEDED);
+            } else if (cluster.holdsLease(tableName)) {
+                current.add(operation);
+            } else if (!cluster.ownedByOther(tableName)) {
+                pendingByTarget.get(targetDb).add(operation);
+            } else {
+                index.completed(operation);
+                metrics.recordOutcome(operation, SyncMetrics.OUTCOME_HANDED_OVER);
+                handedOver.merge(tableName, 1, Integer::sum);
+            }
         }
-        try {
-            jdbcTemplate.update(insertSql, values.toArray());
-        } catch (org.springframework.dao.DataAccessException ex) {
-            log.debug("Insert failed for table {} key {}. Attempting update instead: {}", operation.config.getTableName(),
-                    operation.primaryKeyValue, ex.getMessage());
-            executeUpdate(jdbcTemplate, operation, false);
+        for (Map.Entry<String, Integer> table : handedOver.entrySet()) {
+            log.info("Dropped {} operations on table {} for {}, which another instance synchronizes now",
+                    table.getValue(), table.getKey(), targetDb);
+            try {
+                watermarkStore.reset(table.getKey());
+            } catch (DataAccessException e) {
+                log.warn("Unable to reset the watermarks of table {}: {}", table.getKey(), e.getMessage());
+            }
         }
+        return current;
     }
 
-    private void executeUpdate(JdbcTemplate jdbcTemplate, SyncOperation operation) {
-        executeUpdate(jdbcTemplate, operation, true);
-    }
-
-    private void executeUpdate(JdbcTemplate jdbcTemplate, SyncOperation operation, boolean allowInsertFallback) {
-        Map<String, Object> rowData = operation.rowData;
-        List<String> columns = new ArrayList<>(rowData.keySet());
-        columns.remove(operation.config.getPrimaryKey().toLowerCase());
-        String assignments = buildUpdateAssignments(columns, null);
-        String sql = "UPDATE " + operation.config.getTableName() + " SET " + assignments +
-                " WHERE " + operation.config.getPrimaryKey() + " = ?";
-        List<Object> values = new ArrayList<>();
-        for (String column : columns) {
-            values.add(rowData.get(column));
+    private void apply(String targetDb, JdbcTemplate jdbcTemplate, List<SyncOperation> due) {
+        if (due.isEmpty()) {
+            return;
         }
-        values.add(operation.primaryKeyValue);
-        int updated = jdbcTemplate.update(sql, values.toArray());
-        if (allowInsertFallback && updated == 0) {
-            executeInsert(jdbcTemplate, operation);
+        List<SyncOperation> failed = operationApplier.applyAll(jdbcTemplate, due);
+        Set<SyncOperation> pending = Collections.newSetFromMap(new IdentityHashMap<>());
+        pending.addAll(failed);
+        OperationIndex index = indexByTarget.get(targetDb);
+        for (SyncOperation operation : due) {
+            if (!pending.contains(operation)) {
+                index.completed(operation);
+                rememberApplied(operation);
+            }
         }
+        requeue(targetDb, failed);
     }
 
-    private void executeDelete(JdbcTemplate jdbcTemplate, SyncOperation operation) {
-        String sql = "DELETE FROM " + operation.config.getTableName() +
-                " WHERE " + operation.config.getPrimaryKey() + " = ?";
-        jdbcTemplate.update(sql, operation.primaryKeyValue);
+    // both sides now hold the source row, unless the operation was dropped after its last attempt
+    private void rememberApplied(SyncOperation operation) {
+        if (!fingerprints.isEnabled()) {
+            return;
+        }
+        String tableName = operation.getConfig().getTableName();
+        if (operation.getOperationType() == OperationType.DELETE || operation.getAttempts() >= maxAttempts) {
+            fingerprints.forget(tableName, operation.getPrimaryKeyValue());
+        } else {
+            fingerprints.record(tableName, operation.getPrimaryKeyValue(),
+                    operation.getPlan().fingerprint(operation.getRow()));
+        }
     }
 
-    private String buildUpdateAssignments(List<String> columns, String skipColumn) {
-        List<String> assignments = new ArrayList<>();
-        for (String column : columns) {
-            if (column == null) {
-                continue;
-            }
-            if (skipColumn != null && skipColumn.equalsIgnoreCase(column)) {
-                continue;
+    // failed operations wait on the retry timer; ones that never reached the target wait in the queue for the next replay
+    private void requeue(String targetDb, List<SyncOperation> failed) {
+        Instant now = Instant.now();
+        for (SyncOperation operation : failed) {
+            if (isWaitingForRetry(operation, now)) {
+                indexByTarget.get(targetDb).retrying(operation);
+                retryByTarget.get(targetDb).schedule(operation);
+            } else {
+                pendingByTarget.get(targetDb).add(operation);
             }
-            assignments.add(column + " = ?");
         }
-        return String.join(", ", assignments);
+    }
+
+    // operations on the retry timer were polled from the queue and only live in memory, so the queue's checkpoint
+    // stays at the oldest of them and a crash replays them from the log
+    private void commit(String targetDb) {
+        pendingByTarget.get(targetDb).commit(retryByTarget.get(targetDb).oldestQueueOffset());
+    }
+
+    private static boolean isWaitingForRetry(SyncOperation operation, Instant now) {
+        return operation.getNextRetryTime() != null && now.isBefore(operation.getNextRetryTime());
     }
 
     public boolean isDatabaseAvailable(DataSource dataSource) {
@@ -383,46 +1178,151 @@ public class DmSyncService {
         return isDatabaseAvailable(dbBDataSource);
     }
 
+    public Map<String, Object> getPoolStatus(String db) {
+        return describePool("dbA".equals(db) ? dbADataSource : dbBDataSource);
+    }
+
+    private Map<String, Object> describePool(DataSource dataSource) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (!(dataSource instanceof HikariDataSource)) {
+            return status;
+        }
+        HikariDataSource hikari = (HikariDataSource) dataSource;
+        status.put("maximum", hikari.getMaximumPoolSize());
+        HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+        if (pool != null) {
+            status.put("active", pool.getActiveConnections());
+            status.put("idle", pool.getIdleConnections());
+            status.put("total", pool.getTotalConnections());
+            status.put("awaiting", pool.getThreadsAwaitingConnection());
+            status.put("utilization", (double) pool.getActiveConnections() / hikari.getMaximumPoolSize());
+        }
+        return status;
+    }
+
     public int getPendingOperationCount(String targetDb) {
-        Queue<SyncOperation> queue = pendingByTarget.get(targetDb);
-        return queue == null ? 0 : queue.size();
+        OperationQueue queue = pendingByTarget.get(targetDb);
+        return queue == null ? 0 : queue.size() + retryByTarget.get(targetDb).size();
     }
 
-    private enum OperationType {
-        INSERT, UPDATE, DELETE
+    // operations waiting for each node under dm.databases.nodes
+    public Map<String, Integer> getNodePendingOperationCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String node : nodeFanout.nodeNames()) {
+            counts.put(node, nodeFanout.getPendingOperationCount(node));
+        }
+        return counts;
     }
 
-    private static class SyncOperation {
-        private final String sourceDb;
-        private final String targetDb;
+    public List<SyncProgress> getProgress() {
+        return new ArrayList<>(progressByTable.values());
+    }
+
+    private class TableReconciliation implements MergeReconciler.RowPairHandler {
         private final SyncConfig config;
-        private final OperationType operationType;
-        private final Map<String, Object> rowData;
-        private final Object primaryKeyValue;
-        private int attempts;
-        private Instant nextRetryTime;
-
-        private SyncOperation(String sourceDb, String targetDb, SyncConfig config, OperationType operationType,
-                              Map<String, Object> rowData, Object primaryKeyValue) {
-            this.sourceDb = sourceDb;
-            this.targetDb = targetDb;
+        private final SyncPlan plan;
+        private final int pageSize;
+        private SyncProgress progress;
+        private int queuedSinceFlush;
+        private long operations;
+        private long inspected;
+        private boolean complete = true;
+        private Timestamp cutoffA;
+        private Timestamp cutoffB;
+        private SyncWatermark settledA;
+        private SyncWatermark settledB;
+        private Long captureBaselineA;
+        private Long captureBaselineB;
+        private String changedDb;
+        private boolean coversDeletes;
+        // set while a pipelined full scan applies its pages
+        private ApplyStage applyStage;
+
+        private TableReconciliation(SyncConfig config, SyncPlan plan) {
             this.config = config;
-            this.operationType = operationType;
-            this.rowData = new HashMap<>();
-            rowData.forEach((k, v) -> this.rowData.put(k.toLowerCase(), v));
-            this.primaryKeyValue = primaryKeyValue;
+            this.plan = plan;
+            this.pageSize = config.getPageSize() != null ? config.getPageSize() : DmSyncService.this.pageSize;
+        }
+
+        private int fetchSize(boolean sideA) {
+            if (config.getFetchSize() != null) {
+                return config.getFetchSize();
+            }
+            return (sideA ? dbAJdbcTemplate : dbBJdbcTemplate).getFetchSize();
         }
 
-        private int incrementAttempts() {
-            return ++attempts;
+        private void startProgress(String mode, Object resumedFromKey, long keysInspected) {
+            progress = new SyncProgress(plan.getTableName(), mode,
+                    resumedFromKey == null ? null : resumedFromKey.toString(), keysInspected);
+            progressByTable.put(plan.getTableName().toLowerCase(), progress);
         }
 
-        public void setNextRetryTime(Instant nextRetryTime) {
-            this.nextRetryTime = nextRetryTime;
+        // a complete pass settles every row changed before the cutoff
+        private void settleAtCutoffs() {
+            settledA = cutoffA == null ? null : new SyncWatermark(cutoffA, null);
+            settledB = cutoffB == null ? null : new SyncWatermark(cutoffB, null);
         }
 
-        public Instant getNextRetryTime() {
-            return nextRetryTime;
+        @Override
+        public void handle(Object key, CompactRow rowA, CompactRow rowB) {
+            int queued = reconcileRow(config, plan, key, rowA, rowB, changedDb);
+            operations += queued;
+            queuedSinceFlush += queued;
+            if (queuedSinceFlush >= MAX_BUFFERED_OPERATIONS) {
+                applyPending(null);
+            }
+        }
+
+        // flushes the queued operations, then runs the step; in a pipeline both happen on the apply stage
+        private void applyPending(Runnable afterFlush) {
+            queuedSinceFlush = 0;
+            if (applyStage == null) {
+                flushPending();
+                if (afterFlush != null) {
+                    afterFlush.run();
+                }
+                return;
+            }
+            applyStage.submit(() -> {
+                flushPendingConcurrently();
+                if (afterFlush != null) {
+                    afterFlush.run();
+                }
+            });
+        }
+
+        // watermarks only move once both sides were read; operations for an offline side wait in the queue
+        private void finish() {
+            progress.complete();
+            if (!complete) {
+                return;
+            }
+            if (coversDeletes) {
+                lastKeyCheck.put(config.getTableName().toLowerCase(), System.currentTimeMillis());
+            }
+            try {
+                watermarkStore.clearCheckpoint(config.getTableName());
+            } catch (DataAccessException e) {
+                log.warn("Unable to clear scan checkpoint of table {}: {}", config.getTableName(), e.getMessage());
+            }
+            if (captureBaselineA != null && captureBaselineB != null) {
+                try {
+                    changeCapture.trim(true, config.getTableName(), captureBaselineA);
+                    changeCapture.trim(false, config.getTableName(), captureBaselineB);
+                    watermarkStore.markCaptureReady(config.getTableName(), plan.getSignature());
+                } catch (DataAccessException e) {
+                    log.warn("Unable to switch table {} to change capture: {}", config.getTableName(), e.getMessage());
+                }
+            }
+            if (!plan.supportsWatermarks() || settledA == null || settledB == null) {
+                return;
+            }
+            try {
+                watermarkStore.save(config.getTableName(), "dbA", plan.getSignature(), settledA);
+                watermarkStore.save(config.getTableName(), "dbB", plan.getSignature(), settledB);
+            } catch (DataAccessException e) {
+                log.warn("Unable to save watermarks of table {}: {}", config.getTableName(), e.getMessage());
+            }
         }
     }
-}
\ No newline at end of file
+}
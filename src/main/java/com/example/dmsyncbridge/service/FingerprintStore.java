@@ -0,0 +1,332 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.config.SyncProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// fingerprint of each row's compared columns as of the last time both sides held the same values, so a comparison
+// can tell which side moved away from it. Each table is an open-addressed array of (key hash, fingerprint) slots,
+// memory-mapped under the directory so it survives restarts, or off-heap without one
+class FingerprintStore {
+
+    private static final Logger log = LoggerFactory.getLogger(FingerprintStore.class);
+    private static final String FILE_SUFFIX = ".fp";
+    private static final int MAGIC = 0x444d4650;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 16;
+    // keeps a table within a single mapping
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int initialCapacity;
+    private final Map<String, Table> tables = new ConcurrentHashMap<>();
+
+    FingerprintStore(SyncProperties.FingerprintProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.directory = StringUtils.hasText(properties.getDirectory()) ? Paths.get(properties.getDirectory()) : null;
+        int requested = Math.min(MAX_CAPACITY, Math.max(16, properties.getInitialCapacity()));
+        this.initialCapacity = Integer.highestOneBit(requested - 1) << 1;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    // 0 when no fingerprint was recorded for the row
+    long find(String tableName, Object key) {
+        return enabled ? table(tableName).find(keyHash(key)) : 0;
+    }
+
+    // a fingerprint of 0 means the row could not be fingerprinted, which drops what was recorded before
+    void record(String tableName, Object key, long fingerprint) {
+        if (!enabled) {
+            return;
+        }
+        if (fingerprint == 0) {
+            table(tableName).remove(keyHash(key));
+        } else {
+            table(tableName).put(keyHash(key), fingerprint);
+        }
+    }
+
+    void forget(String tableName, Object key) {
+        if (enabled) {
+            table(tableName).remove(keyHash(key));
+        }
+    }
+
+    int size(String tableName) {
+        return enabled ? table(tableName).size() : 0;
+    }
+
+    void flush() {
+        for (Table table : tables.values()) {
+            table.flush();
+        }
+    }
+
+    void close() {
+        flush();
+        tables.clear();
+    }
+
+    private Table table(String tableName) {
+        return tables.computeIfAbsent(tableName.toLowerCase(), this::open);
+    }
+
+    private Table open(String tableName) {
+        if (directory == null) {
+            return new Table(null, initialCapacity);
+        }
+        Path file = directory.resolve(tableName + FILE_SUFFIX);
+        try {
+            Files.createDirectories(directory);
+            return Table.open(file, initialCapacity);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to map fingerprints of table {} to {}, keeping them off-heap: {}", tableName, file,
+                    e.getMessage());
+            return new Table(null, initialCapacity);
+        }
+    }
+
+    // numbers that compare equal hash alike, as in SyncPlan's comparison, so keys read as INT and BIGINT match
+    static long keyHash(Object key) {
+        String text;
+        if (key instanceof BigDecimal) {
+            BigDecimal decimal = ((BigDecimal) key).stripTrailingZeros();
+            text = decimal.scale() <= 0 ? decimal.toBigInteger().toString() : decimal.toPlainString();
+        } else {
+            text = String.valueOf(key);
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        hash = mix(hash);
+        return hash == 0 ? 1 : hash;
+    }
+
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    // a BigInteger or BigDecimal within the long range hashes like the equal long
+    static int numberHash(Number value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return Long.hashCode(value.longValue());
+        }
+        BigDecimal decimal;
+        if (value instanceof BigDecimal) {
+            decimal = (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            decimal = new BigDecimal((BigInteger) value);
+        } else {
+            double d = value.doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return Double.hashCode(d);
+            }
+            decimal = BigDecimal.valueOf(d);
+        }
+        decimal = decimal.stripTrailingZeros();
+        if (decimal.scale() <= 0 && decimal.precision() - decimal.scale() < 19) {
+            return Long.hashCode(decimal.longValue());
+        }
+        return decimal.hashCode();
+    }
+
+    // linear probing with backward-shift deletion, so removed rows leave no tombstones behind
+    private static final class Table {
+        private final Path file;
+        private ByteBuffer buffer;
+        private int capacity;
+        private int size;
+
+        private Table(Path file, int capacity) {
+            this.file = file;
+            this.capacity = capacity;
+            this.buffer = file == null ? allocate(capacity) : null;
+        }
+
+        static Table open(Path file, int initialCapacity) throws IOException {
+            Table table = new Table(file, initialCapacity);
+            long length = Files.exists(file) ? Files.size(file) : 0;
+            if (length >= HEADER_SIZE) {
+                MappedByteBuffer mapped = map(file, length);
+                int capacity = mapped.getInt(4);
+                if (mapped.getInt(0) == MAGIC && Integer.bitCount(capacity) == 1
+                        && length == HEADER_SIZE + (long) capacity * SLOT_SIZE) {
+                    table.buffer = mapped;
+                    table.capacity = capacity;
+                    for (int slot = 0; slot < capacity; slot++) {
+                        if (table.keyAt(slot) != 0) {
+                            table.size++;
+                        }
+                    }
+                    return table;
+                }
+                log.warn("Discarding unreadable fingerprint file {}", file);
+            }
+            table.buffer = create(file, initialCapacity);
+            return table;
+        }
+
+        synchronized long find(long keyHash) {
+            int slot = locate(keyHash);
+            return keyAt(slot) == keyHash ? valueAt(slot) : 0;
+        }
+
+        synchronized void put(long keyHash, long fingerprint) {
+            int slot = locate(keyHash);
+            if (keyAt(slot) == keyHash) {
+                // unchanged rows leave their page clean
+                if (valueAt(slot) != fingerprint) {
+                    buffer.putLong(offset(slot) + 8, fingerprint);
+                }
+                return;
+            }
+            if ((size + 1) * 4L > capacity * 3L) {
+                if (!grow()) {
+                    return;
+                }
+                slot = locate(keyHash);
+            }
+            // the key goes last so a torn write leaves an empty slot
+            buffer.putLong(offset(slot) + 8, fingerprint);
+            buffer.putLong(offset(slot), keyHash);
+            size++;
+        }
+
+        synchronized void remove(long keyHash) {
+            int hole = locate(keyHash);
+            if (keyAt(hole) != keyHash) {
+                return;
+            }
+            int mask = capacity - 1;
+            for (int next = (hole + 1) & mask; keyAt(next) != 0; next = (next + 1) & mask) {
+                int home = (int) keyAt(next) & mask;
+                // an entry may fill the hole unless its home slot lies between the hole and its position
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    buffer.putLong(offset(hole) + 8, valueAt(next));
+                    buffer.putLong(offset(hole), keyAt(next));
+                    hole = next;
+                }
+            }
+            buffer.putLong(offset(hole), 0);
+            size--;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void flush() {
+            if (buffer instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) buffer).force();
+            }
+        }
+
+        // the slot holding the key, or the empty slot where it would go
+        private int locate(long keyHash) {
+            int mask = capacity - 1;
+            int slot = (int) keyHash & mask;
+            while (true) {
+                long stored = keyAt(slot);
+                if (stored == 0 || stored == keyHash) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private boolean grow() {
+            if (capacity >= MAX_CAPACITY) {
+                log.warn("Fingerprint table {} is full at {} rows; new rows are not recorded", file, size);
+                return false;
+            }
+            int grown = capacity * 2;
+            ByteBuffer target;
+            Path temp = file == null ? null : file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                target = temp == null ? allocate(grown) : create(temp, grown);
+            } catch (IOException e) {
+                log.warn("Unable to grow fingerprint file {}: {}", file, e.getMessage());
+                return false;
+            }
+            ByteBuffer previous = buffer;
+            int previousCapacity = capacity;
+            buffer = target;
+            capacity = grown;
+            for (int slot = 0; slot < previousCapacity; slot++) {
+                long keyHash = previous.getLong(offset(slot));
+                if (keyHash != 0) {
+                    int free = locate(keyHash);
+                    buffer.putLong(offset(free) + 8, previous.getLong(offset(slot) + 8));
+                    buffer.putLong(offset(free), keyHash);
+                }
+            }
+            if (temp != null) {
+                try {
+                    ((MappedByteBuffer) buffer).force();
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    log.warn("Unable to replace fingerprint file {}: {}", file, e.getMessage());
+                }
+            }
+            return true;
+        }
+
+        private long keyAt(int slot) {
+            return buffer.getLong(offset(slot));
+        }
+
+        private long valueAt(int slot) {
+            return buffer.getLong(offset(slot) + 8);
+        }
+
+        private static int offset(int slot) {
+            return HEADER_SIZE + slot * SLOT_SIZE;
+        }
+
+        private static ByteBuffer allocate(int capacity) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_SIZE + capacity * SLOT_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, capacity);
+            return buffer;
+        }
+
+        private static MappedByteBuffer create(Path file, int capacity) throws IOException {
+            Files.deleteIfExists(file);
+            MappedByteBuffer buffer = map(file, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, capacity);
+            return buffer;
+        }
+
+        private static MappedByteBuffer map(Path file, long length) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.dmsyncbridge.service;
+
+import java.util.List;
+
+class GenericDialect implements SqlDialect {
+
+    @Override
+    public String upsertSql(String tableName, String primaryKey, List<String> columns) {
+        return null;
+    }
+
+    @Override
+    public String currentTimestampSql() {
+        return "SELECT LOCALTIMESTAMP";
+    }
+
+    @Override
+    public String changeLogTableSql(String changeLogTable) {
+        return null;
+    }
+
+    @Override
+    public String captureSessionSql(boolean applying) {
+        return null;
+    }
+
+    @Override
+    public List<String> changeCaptureSql(String triggerName, String tableName, String primaryKey,
+                                         String changeLogTable) {
+        return null;
+    }
+}
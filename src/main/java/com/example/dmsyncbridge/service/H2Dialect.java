@@ -0,0 +1,70 @@
+package com.example.dmsyncbridge.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+// H2 accepts the MERGE and DUAL forms of DmDialect but only runs triggers written in Java
+class H2Dialect extends DmDialect {
+
+    @Override
+    public String changeLogTableSql(String changeLogTable) {
+        return "CREATE TABLE IF NOT EXISTS " + changeLogTable + " ("
+                + "seq_id IDENTITY PRIMARY KEY, "
+                + "table_name VARCHAR(128) NOT NULL, "
+                + "pk_value VARCHAR(256) NOT NULL, "
+                + "op CHAR(1) NOT NULL, "
+                + "change_time TIMESTAMP)";
+    }
+
+    // a session variable stands in for DM's client info
+    @Override
+    public String captureSessionSql(boolean applying) {
+        return "SET @dm_sync_bridge = " + applying;
+    }
+
+    @Override
+    public List<String> changeCaptureSql(String triggerName, String tableName, String primaryKey,
+                                         String changeLogTable) {
+        String source = "org.h2.api.Trigger create() {\n"
+                + "    return new org.h2.api.Trigger() {\n"
+                + "        private int keyIndex = -1;\n"
+                + "        public void init(java.sql.Connection conn, String schemaName, String triggerName,\n"
+                + "                String tableName, boolean before, int type) throws java.sql.SQLException {\n"
+                + "            try (java.sql.ResultSet rs = conn.getMetaData().getColumns(null, schemaName, tableName, null)) {\n"
+                + "                while (rs.next()) {\n"
+                + "                    if (rs.getString(\"COLUMN_NAME\").equalsIgnoreCase(\"" + primaryKey + "\")) {\n"
+                + "                        keyIndex = rs.getInt(\"ORDINAL_POSITION\") - 1;\n"
+                + "                    }\n"
+                + "                }\n"
+                + "            }\n"
+                + "        }\n"
+                + "        public void fire(java.sql.Connection conn, Object[] oldRow, Object[] newRow)\n"
+                + "                throws java.sql.SQLException {\n"
+                + "            try (java.sql.Statement st = conn.createStatement();\n"
+                + "                 java.sql.ResultSet rs = st.executeQuery(\"SELECT @dm_sync_bridge\")) {\n"
+                + "                if (rs.next() && rs.getBoolean(1)) {\n"
+                + "                    return;\n"
+                + "                }\n"
+                + "            }\n"
+                + "            if (newRow != null) {\n"
+                + "                record(conn, newRow[keyIndex], oldRow == null ? \"I\" : \"U\");\n"
+                + "            }\n"
+                + "            if (oldRow != null && (newRow == null || !oldRow[keyIndex].equals(newRow[keyIndex]))) {\n"
+                + "                record(conn, oldRow[keyIndex], \"D\");\n"
+                + "            }\n"
+                + "        }\n"
+                + "        private void record(java.sql.Connection conn, Object key, String op) throws java.sql.SQLException {\n"
+                + "            try (java.sql.PreparedStatement ps = conn.prepareStatement(\"INSERT INTO " + changeLogTable
+                + " (table_name, pk_value, op, change_time) VALUES ('" + tableName + "', ?, ?, LOCALTIMESTAMP)\")) {\n"
+                + "                ps.setString(1, String.valueOf(key));\n"
+                + "                ps.setString(2, op);\n"
+                + "                ps.executeUpdate();\n"
+                + "            }\n"
+                + "        }\n"
+                + "    };\n"
+                + "}";
+        return Arrays.asList("DROP TRIGGER IF EXISTS " + triggerName,
+                "CREATE TRIGGER " + triggerName + " AFTER INSERT, UPDATE, DELETE ON " + tableName
+                        + " FOR EACH ROW AS $$" + source + "$$");
+    }
+}
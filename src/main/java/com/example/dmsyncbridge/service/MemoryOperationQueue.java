@@ -0,0 +1,39 @@
+package com.example.dmsyncbridge.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+class MemoryOperationQueue implements OperationQueue {
+
+    private final Queue<SyncOperation> operations = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void add(SyncOperation operation) {
+        operations.add(operation);
+    }
+
+    @Override
+    public List<SyncOperation> poll(int maxOperations) {
+        List<SyncOperation> polled = new ArrayList<>(Math.min(maxOperations, 64));
+        SyncOperation operation;
+        while (polled.size() < maxOperations && (operation = operations.poll()) != null) {
+            polled.add(operation);
+        }
+        return polled;
+    }
+
+    @Override
+    public void commit(long retainedOffset) {
+    }
+
+    @Override
+    public int size() {
+        return operations.size();
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.dmsyncbridge.service;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.SQLException;
+
+class MergeReconciler {
+
+    long reconcile(String tableName, RowSource cursorA, RowSource cursorB, RowPairHandler handler) throws SQLException {
+        boolean hasA = cursorA.next();
+        boolean hasB = cursorB.next();
+        Object previousKey = null;
+        long inspected = 0;
+        while (hasA || hasB) {
+            int cmp;
+            if (!hasA) {
+                cmp = 1;
+            } else if (!hasB) {
+                cmp = -1;
+            } else {
+                cmp = compareKeys(cursorA.key(), cursorB.key());
+            }
+            Object key = cmp <= 0 ? cursorA.key() : cursorB.key();
+            if (previousKey != null && compareKeys(previousKey, key) >= 0) {
+                throw new IllegalStateException("Rows of table " + tableName + " are not in primary key order at key "
+                        + key + "; check that both databases use a binary-compatible collation for the key column");
+            }
+            if (cmp < 0) {
+                handler.handle(key, cursorA.row(), null);
+                hasA = cursorA.next();
+            } else if (cmp > 0) {
+                handler.handle(key, null, cursorB.row());
+                hasB = cursorB.next();
+            } else {
+                handler.handle(key, cursorA.row(), cursorB.row());
+                hasA = cursorA.next();
+                hasB = cursorB.next();
+            }
+            previousKey = key;
+            inspected++;
+        }
+        return inspected;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compareKeys(Object left, Object right) {
+        if (left == right) {
+            return 0;
+        }
+        if (left == null) {
+            return -1;
+        }
+        if (right == null) {
+            return 1;
+        }
+        if (left instanceof Number && right instanceof Number) {
+            if (isIntegral(left) && isIntegral(right)) {
+                return Long.compare(((Number) left).longValue(), ((Number) right).longValue());
+            }
+            return toBigDecimal((Number) left).compareTo(toBigDecimal((Number) right));
+        }
+        if (left instanceof Comparable && left.getClass().isInstance(right)) {
+            return ((Comparable) left).compareTo(right);
+        }
+        return left.toString().compareTo(right.toString());
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    private static BigDecimal toBigDecimal(Number value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        if (isIntegral(value)) {
+            return BigDecimal.valueOf(value.longValue());
+        }
+        return BigDecimal.valueOf(value.doubleValue());
+    }
+
+    interface RowPairHandler {
+        void handle(Object key, CompactRow rowA, CompactRow rowB);
+    }
+}
@@ -0,0 +1,382 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.entity.SyncConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+// keeps the databases under dm.databases.nodes consistent with dbA and dbB. One multi-way merge reads a table once
+// from dbA and once from every node in primary-key pages: dbA decides which rows exist and the newest row by
+// lastUpdateColumn wins, dbA on ties. Each node keeps a queue per table, and the queues are applied in parallel
+// while the merge goes on
+class NodeFanout {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeFanout.class);
+    private static final int MAX_BUFFERED_OPERATIONS = 1000;
+
+    private final JdbcTemplate dbAJdbcTemplate;
+    private final Map<String, JdbcTemplate> nodes;
+    // node, then lower-case table name; a table's pass only replays its own operations
+    private final Map<String, Map<String, OperationQueue>> pendingByNode = new LinkedHashMap<>();
+    private final Map<String, OperationIndex> indexByNode = new LinkedHashMap<>();
+    private final OperationApplier applier;
+    private final SyncWatermarkStore checkpoints;
+    private final Executor executor;
+    private final int applySteps;
+
+    NodeFanout(JdbcTemplate dbAJdbcTemplate, Map<String, JdbcTemplate> nodes, OperationApplier applier,
+               SyncWatermarkStore checkpoints, Executor executor, int applySteps, int indexCapacity) {
+        this.dbAJdbcTemplate = dbAJdbcTemplate;
+        this.nodes = nodes;
+        this.applier = applier;
+        this.checkpoints = checkpoints;
+        this.executor = executor;
+        this.applySteps = applySteps;
+        for (String node : nodes.keySet()) {
+            pendingByNode.put(node, new ConcurrentHashMap<>());
+            indexByNode.put(node, new OperationIndex(indexCapacity));
+        }
+    }
+
+    boolean isEnabled() {
+        return !nodes.isEmpty();
+    }
+
+    Set<String> nodeNames() {
+        return nodes.keySet();
+    }
+
+    int getPendingOperationCount(String node) {
+        Map<String, OperationQueue> queues = pendingByNode.get(node);
+        if (queues == null) {
+            return 0;
+        }
+        int count = 0;
+        for (OperationQueue queue : queues.values()) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    // returns the number of operations queued, or -1 when the merge failed; rows a node changed last are sent to
+    // dbA and dbB through `hub`. dbA is read one page at a time and each node only for the key range of that page;
+    // the last key whose operations were applied is checkpointed so an interrupted merge resumes after it
+    long synchronize(SyncConfig config, SyncPlan plan, int pageSize, int fetchSize, Consumer<SyncOperation> hub) {
+        Object afterKey = findCheckpoint(plan);
+        if (afterKey != null) {
+            log.info("Resuming multi-way merge of table {} after key {}", plan.getTableName(), afterKey);
+        }
+        Map<String, ApplyStage> stages = new LinkedHashMap<>();
+        long operations = 0;
+        boolean failed = false;
+        try {
+            for (String node : nodes.keySet()) {
+                ApplyStage stage = new ApplyStage(executor, applySteps);
+                OperationQueue queue = queue(node, config);
+                // operations left over from an earlier pass go first, keeping each row's order
+                stage.submit(() -> replay(node, queue));
+                stages.put(node, stage);
+            }
+            while (!stages.isEmpty()) {
+                List<CompactRow> rowsA = readPage(plan, afterKey, pageSize, fetchSize);
+                // the last page leaves the range open so rows past dbA's last key are deleted from the nodes
+                Object upToKey = rowsA.size() < pageSize ? null : plan.keyOf(rowsA.get(rowsA.size() - 1));
+                operations += mergePage(config, plan, rowsA, afterKey, upToKey, fetchSize, stages, hub);
+                for (ApplyStage stage : stages.values()) {
+                    stage.await();
+                }
+                saveCheckpoint(plan, upToKey);
+                if (upToKey == null) {
+                    break;
+                }
+                afterKey = upToKey;
+            }
+        } catch (Exception e) {
+            log.warn("Multi-way merge of table {} failed: {}", config.getTableName(), e.getMessage());
+            failed = true;
+        } finally {
+            for (Map.Entry<String, ApplyStage> stage : stages.entrySet()) {
+                try {
+                    stage.getValue().await();
+                } catch (RuntimeException e) {
+                    log.warn("Applying table {} to node {} failed: {}", config.getTableName(), stage.getKey(),
+                            e.getMessage());
+                    failed = true;
+                }
+            }
+        }
+        return failed ? -1 : operations;
+    }
+
+    private Object findCheckpoint(SyncPlan plan) {
+        try {
+            return checkpoints.findNodeCheckpoint(plan.getTableName(), plan.getSignature());
+        } catch (DataAccessException e) {
+            log.warn("Unable to read the node checkpoint of table {}: {}", plan.getTableName(), e.getMessage());
+            return null;
+        }
+    }
+
+    // a null key clears the checkpoint once the merge reached the end of the table
+    private void saveCheckpoint(SyncPlan plan, Object upToKey) {
+        try {
+            if (upToKey == null) {
+                checkpoints.clearNodeCheckpoint(plan.getTableName());
+            } else {
+                checkpoints.saveNodeCheckpoint(plan.getTableName(), plan.getSignature(), upToKey);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Unable to save the node checkpoint of table {}: {}", plan.getTableName(), e.getMessage());
+        }
+    }
+
+    private List<CompactRow> readPage(SyncPlan plan, Object afterKey, int pageSize, int fetchSize)
+            throws SQLException {
+        List<Object> params = afterKey == null ? Collections.emptyList() : Collections.singletonList(afterKey);
+        List<CompactRow> rows = new ArrayList<>(pageSize);
+        try (RowCursor cursor = RowCursor.open(dbAJdbcTemplate.getDataSource(), plan.pageSql(afterKey, pageSize),
+                params, fetchSize, plan.getSchemaA(), plan.getPrimaryKey())) {
+            if (cursor.schema() != plan.getSchemaA()) {
+                throw new IllegalStateException("Columns of table " + plan.getTableName() + " on dbA changed");
+            }
+            while (cursor.next()) {
+                rows.add(cursor.row());
+            }
+        }
+        return rows;
+    }
+
+    // merges one dbA page with the rows every node holds in (afterKey, upToKey]; a node that cannot be read or
+    // differs from dbA is left out for the rest of the pass
+    private long mergePage(SyncConfig config, SyncPlan plan, List<CompactRow> rowsA, Object afterKey, Object upToKey,
+                           int fetchSize, Map<String, ApplyStage> stages, Consumer<SyncOperation> hub)
+            throws SQLException {
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        if (afterKey != null) {
+            conditions.add(plan.getPrimaryKey() + " > ?");
+            params.add(afterKey);
+        }
+        if (upToKey != null) {
+            conditions.add(plan.getPrimaryKey() + " <= ?");
+            params.add(upToKey);
+        }
+        String sql = plan.orderedSelectSql(conditions.isEmpty() ? null : String.join(" AND ", conditions));
+        List<String> names = new ArrayList<>();
+        List<RowCursor> cursors = new ArrayList<>();
+        try {
+            for (String node : new ArrayList<>(stages.keySet())) {
+                RowCursor cursor = open(plan, node, nodes.get(node), sql, params, fetchSize);
+                if (cursor == null) {
+                    stages.remove(node).await();
+                } else {
+                    names.add(node);
+                    cursors.add(cursor);
+                }
+            }
+            return merge(config, plan, rowsA, names, cursors, stages, hub);
+        } finally {
+            for (RowCursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+    private long merge(SyncConfig config, SyncPlan plan, List<CompactRow> rowsA, List<String> names,
+                       List<RowCursor> cursors, Map<String, ApplyStage> stages, Consumer<SyncOperation> hub)
+            throws SQLException {
+        boolean[] current = new boolean[cursors.size()];
+        for (int i = 0; i < cursors.size(); i++) {
+            current[i] = cursors.get(i).next();
+        }
+        Map<String, List<SyncOperation>> buffered = new LinkedHashMap<>();
+        for (String name : names) {
+            buffered.put(name, new ArrayList<>());
+        }
+        CompactRow[] rows = new CompactRow[cursors.size() + 1];
+        int nextA = 0;
+        long operations = 0;
+        while (true) {
+            Object key = nextA < rowsA.size() ? plan.keyOf(rowsA.get(nextA)) : null;
+            for (int i = 0; i < cursors.size(); i++) {
+                if (current[i] && (key == null || MergeReconciler.compareKeys(cursors.get(i).key(), key) < 0)) {
+                    key = cursors.get(i).key();
+                }
+            }
+            if (key == null) {
+                break;
+            }
+            rows[0] = nextA < rowsA.size() && MergeReconciler.compareKeys(plan.keyOf(rowsA.get(nextA)), key) == 0
+                    ? rowsA.get(nextA++) : null;
+            for (int i = 0; i < cursors.size(); i++) {
+                rows[i + 1] = current[i] && MergeReconciler.compareKeys(cursors.get(i).key(), key) == 0
+                        ? cursors.get(i).row() : null;
+            }
+            operations += reconcileKey(config, plan, key, names, rows, buffered, hub);
+            for (int i = 0; i < cursors.size(); i++) {
+                if (rows[i + 1] != null) {
+                    current[i] = cursors.get(i).next();
+                }
+            }
+            for (Map.Entry<String, List<SyncOperation>> entry : buffered.entrySet()) {
+                if (entry.getValue().size() >= MAX_BUFFERED_OPERATIONS) {
+                    submit(config, entry.getKey(), entry.getValue(), stages.get(entry.getKey()));
+                    entry.setValue(new ArrayList<>());
+                }
+            }
+        }
+        for (Map.Entry<String, List<SyncOperation>> entry : buffered.entrySet()) {
+            submit(config, entry.getKey(), entry.getValue(), stages.get(entry.getKey()));
+        }
+        return operations;
+    }
+
+    // rows[0] is dbA's row and rows[i + 1] the row of names[i]; null where the key is missing
+    private int reconcileKey(SyncConfig config, SyncPlan plan, Object key, List<String> names, CompactRow[] rows,
+                             Map<String, List<SyncOperation>> buffered, Consumer<SyncOperation> hub) {
+        CompactRow rowA = rows[0];
+        int operations = 0;
+        if (rowA == null) {
+            for (int i = 0; i < names.size(); i++) {
+                if (rows[i + 1] != null) {
+                    buffered.get(names.get(i)).add(new SyncOperation("dbA", names.get(i), config, plan,
+                            OperationType.DELETE, rows[i + 1], key));
+                    operations++;
+                }
+            }
+            return operations;
+        }
+        CompactRow winner = rowA;
+        String winnerDb = "dbA";
+        Instant newest = plan.updateTimestamp(rowA);
+        for (int i = 0; i < names.size(); i++) {
+            Instant updated = rows[i + 1] == null ? null : plan.updateTimestamp(rows[i + 1]);
+            if (newest != null && updated != null && updated.isAfter(newest)
+                    && !plan.differingColumns(rows[i + 1], rowA).isEmpty()) {
+                winner = rows[i + 1];
+                winnerDb = names.get(i);
+                newest = updated;
+            }
+        }
+        if (winner != rowA) {
+            SyncOperation toA = new SyncOperation(winnerDb, "dbA", config, plan, OperationType.UPDATE, winner, key);
+            toA.setChangedColumns(plan.differingColumns(winner, rowA));
+            hub.accept(toA);
+            hub.accept(new SyncOperation(winnerDb, "dbB", config, plan, OperationType.UPDATE, winner, key));
+            operations += 2;
+        }
+        for (int i = 0; i < names.size(); i++) {
+            CompactRow row = rows[i + 1];
+            if (row == winner) {
+                continue;
+            }
+            SyncOperation operation;
+            if (row == null) {
+                operation = new SyncOperation(winnerDb, names.get(i), config, plan, OperationType.INSERT, winner, key);
+            } else {
+                BitSet changed = plan.differingColumns(winner, row);
+                if (changed.isEmpty()) {
+                    continue;
+                }
+                operation = new SyncOperation(winnerDb, names.get(i), config, plan, OperationType.UPDATE, winner, key);
+                operation.setChangedColumns(changed);
+            }
+            buffered.get(names.get(i)).add(operation);
+            operations++;
+        }
+        return operations;
+    }
+
+    private RowCursor open(SyncPlan plan, String db, JdbcTemplate jdbcTemplate, String sql, List<Object> params,
+                           int fetchSize) {
+        RowCursor cursor;
+        try {
+            cursor = RowCursor.open(jdbcTemplate.getDataSource(), sql, params, fetchSize, plan.getSchemaA(),
+                    plan.getPrimaryKey());
+        } catch (Exception e) {
+            log.warn("Failed to fetch rows for table {} from {}: {}", plan.getTableName(), db, e.getMessage());
+            return null;
+        }
+        // rows are compared and written with dbA's layout, so a node must have the same columns
+        if (cursor.schema() != plan.getSchemaA()) {
+            cursor.close();
+            log.warn("Columns of table {} on {} differ from dbA, skipping it", plan.getTableName(), db);
+            return null;
+        }
+        return cursor;
+    }
+
+    private OperationQueue queue(String node, SyncConfig config) {
+        return pendingByNode.get(node).computeIfAbsent(config.getTableName().toLowerCase(),
+                table -> new MemoryOperationQueue());
+    }
+
+    private void submit(SyncConfig config, String node, List<SyncOperation> operations, ApplyStage stage) {
+        if (operations.isEmpty()) {
+            return;
+        }
+        OperationQueue queue = queue(node, config);
+        OperationIndex index = indexByNode.get(node);
+        stage.submit(() -> {
+            for (SyncOperation operation : operations) {
+                SyncOperation current = index.register(operation);
+                if (current != null) {
+                    queue.add(current);
+                }
+            }
+            replay(node, queue);
+        });
+    }
+
+    // operations the node rejected or could not receive wait in the queue for a later replay; one that a newer
+    // operation for its row replaced is dropped, and one still backing off waits for its retry time
+    private void replay(String node, OperationQueue queue) {
+        List<SyncOperation> polled = queue.poll(queue.size());
+        if (polled.isEmpty()) {
+            return;
+        }
+        OperationIndex index = indexByNode.get(node);
+        Instant now = Instant.now();
+        List<SyncOperation> due = new ArrayList<>(polled.size());
+        for (SyncOperation operation : polled) {
+            if (!index.isCurrent(operation)) {
+                continue;
+            }
+            if (operation.getNextRetryTime() != null && now.isBefore(operation.getNextRetryTime())) {
+                queue.add(operation);
+            } else {
+                due.add(operation);
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+        Set<SyncOperation> remaining = Collections.newSetFromMap(new IdentityHashMap<>());
+        remaining.addAll(applier.applyAll(nodes.get(node), due));
+        for (SyncOperation operation : due) {
+            if (remaining.contains(operation)) {
+                if (operation.getNextRetryTime() != null) {
+                    index.retrying(operation);
+                }
+                queue.add(operation);
+            } else {
+                index.completed(operation);
+            }
+        }
+    }
+}
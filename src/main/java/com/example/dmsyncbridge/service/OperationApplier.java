@@ -0,0 +1,365 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.config.SyncProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+class OperationApplier {
+
+    private static final Logger log = LoggerFactory.getLogger(OperationApplier.class);
+
+    private final SyncLogService syncLogService;
+    private final int batchSize;
+    private final SyncMetrics metrics;
+    private final SyncProperties.RetryProperties retry;
+    private final String captureMarkSql;
+    private final String captureClearSql;
+
+    // captureDialect is set while change capture runs, so the triggers can tell the bridge's writes apart
+    OperationApplier(SyncLogService syncLogService, int batchSize, SyncMetrics metrics,
+                     SyncProperties.RetryProperties retry, SqlDialect captureDialect) {
+        this.syncLogService = syncLogService;
+        this.batchSize = Math.max(1, batchSize);
+        this.metrics = metrics;
+        this.retry = retry;
+        this.captureMarkSql = captureDialect == null ? null : captureDialect.captureSessionSql(true);
+        this.captureClearSql = captureDialect == null ? null : captureDialect.captureSessionSql(false);
+    }
+
+    List<SyncOperation> applyAll(JdbcTemplate jdbcTemplate, List<SyncOperation> operations) {
+        List<SyncOperation> remaining = new ArrayList<>();
+        Map<BatchShape, List<SyncOperation>> groups = new LinkedHashMap<>();
+        Map<String, BatchShape> shapeByRow = new HashMap<>();
+        for (SyncOperation operation : operations) {
+            BatchShape shape = BatchShape.of(operation);
+            String rowKey = operation.getConfig().getTableName().toLowerCase() + '\u0000' + operation.getPrimaryKeyValue();
+            BatchShape previous = shapeByRow.get(rowKey);
+            if (previous != null && !previous.equals(shape)) {
+                // an earlier operation on the same row sits in another group; flush to keep per-row order
+                for (List<SyncOperation> group : groups.values()) {
+                    remaining.addAll(applyBatch(jdbcTemplate, group));
+                }
+                groups.clear();
+                shapeByRow.clear();
+            }
+            List<SyncOperation> group = groups.computeIfAbsent(shape, k -> new ArrayList<>());
+            group.add(operation);
+            shapeByRow.put(rowKey, shape);
+            if (group.size() >= batchSize) {
+                remaining.addAll(applyBatch(jdbcTemplate, group));
+                groups.remove(shape);
+                shapeByRow.values().removeIf(shape::equals);
+            }
+        }
+        for (List<SyncOperation> group : groups.values()) {
+            remaining.addAll(applyBatch(jdbcTemplate, group));
+        }
+        return remaining;
+    }
+
+    private List<SyncOperation> applyBatch(JdbcTemplate jdbcTemplate, List<SyncOperation> batch) {
+        if (batch.size() == 1) {
+            return applyOperation(jdbcTemplate, batch.get(0)) ? Collections.emptyList() : batch;
+        }
+        BatchShape shape = BatchShape.of(batch.get(0));
+        String sql = shape.sql();
+        List<Object[]> arguments = new ArrayList<>(batch.size());
+        for (SyncOperation operation : batch) {
+            arguments.add(shape.arguments(operation));
+        }
+        int[] counts;
+        long start = System.nanoTime();
+        try {
+            counts = executeBatch(jdbcTemplate, sql, arguments);
+            metrics.recordApply(batch.get(0), start, batch.size());
+        } catch (CannotGetJdbcConnectionException ex) {
+            log.debug("Target {} unavailable, keeping {} queued operations: {}", batch.get(0).getTargetDb(),
+                    batch.size(), ex.getMessage());
+            return new ArrayList<>(batch);
+        } catch (DataAccessException ex) {
+            // the batch was rolled back as a whole; split it until the failing rows are isolated
+            log.debug("Batch of {} {} on table {} failed, isolating failing rows: {}", batch.size(),
+                    shape.operationType, batch.get(0).getConfig().getTableName(), ex.getMessage());
+            int middle = batch.size() / 2;
+            List<SyncOperation> remaining = new ArrayList<>(applyBatch(jdbcTemplate, batch.subList(0, middle)));
+            remaining.addAll(applyBatch(jdbcTemplate, batch.subList(middle, batch.size())));
+            return remaining;
+        }
+        List<SyncOperation> remaining = new ArrayList<>();
+        List<SyncOperation> unknown = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            SyncOperation operation = batch.get(i);
+            if (shape.upserts() || shape.operationType != OperationType.UPDATE || (i < counts.length && counts[i] > 0)) {
+                recordSuccess(operation);
+            } else if (i >= counts.length || counts[i] == Statement.SUCCESS_NO_INFO) {
+                unknown.add(operation);
+            } else if (!applyOperation(jdbcTemplate, operation)) {
+                // row is missing on the target; the single-row path updates it again and falls back to an insert
+                remaining.add(operation);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            remaining.addAll(recheckUnknown(jdbcTemplate, shape, unknown));
+        }
+        return remaining;
+    }
+
+    // the driver ran the updates but did not say which matched a row (SUCCESS_NO_INFO); look the keys up in one
+    // query and send only the missing rows down the single-row path
+    private List<SyncOperation> recheckUnknown(JdbcTemplate jdbcTemplate, BatchShape shape, List<SyncOperation> unknown) {
+        Set<Object> existing = new TreeSet<>(MergeReconciler::compareKeys);
+        try {
+            Object[] keys = unknown.stream().map(SyncOperation::getPrimaryKeyValue).toArray();
+            existing.addAll(jdbcTemplate.queryForList(shape.templates.existingKeysSql(keys.length), Object.class, keys));
+        } catch (DataAccessException ex) {
+            log.debug("Could not look up {} keys on table {}, rechecking rows one by one: {}", unknown.size(),
+                    unknown.get(0).getConfig().getTableName(), ex.getMessage());
+        }
+        List<SyncOperation> remaining = new ArrayList<>();
+        for (SyncOperation operation : unknown) {
+            if (existing.contains(operation.getPrimaryKeyValue())) {
+                recordSuccess(operation);
+            } else if (!applyOperation(jdbcTemplate, operation)) {
+                remaining.add(operation);
+            }
+        }
+        return remaining;
+    }
+
+    private int[] executeBatch(JdbcTemplate jdbcTemplate, String sql, List<Object[]> arguments) {
+        return jdbcTemplate.execute((ConnectionCallback<int[]>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            PreparedStatement statement = null;
+            try {
+                connection.setAutoCommit(false);
+                markSession(connection, captureMarkSql);
+                statement = connection.prepareStatement(sql);
+                for (Object[] args : arguments) {
+                    for (int i = 0; i < args.length; i++) {
+                        StatementCreatorUtils.setParameterValue(statement, i + 1, SqlTypeValue.TYPE_UNKNOWN, args[i]);
+                    }
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                connection.commit();
+                return counts;
+            } catch (SQLException | RuntimeException ex) {
+                rollbackQuietly(connection);
+                throw ex;
+            } finally {
+                JdbcUtils.closeStatement(statement);
+                markSession(connection, captureClearSql);
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    // single-row writes; with change capture they run on one connection between marking and clearing the session
+    private int update(JdbcTemplate jdbcTemplate, String sql, Object[] args) {
+        if (captureMarkSql == null) {
+            return jdbcTemplate.update(sql, args);
+        }
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            markSession(connection, captureMarkSql);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < args.length; i++) {
+                    StatementCreatorUtils.setParameterValue(statement, i + 1, SqlTypeValue.TYPE_UNKNOWN, args[i]);
+                }
+                return statement.executeUpdate();
+            } finally {
+                markSession(connection, captureClearSql);
+            }
+        });
+    }
+
+    private static void markSession(Connection connection, String sql) throws SQLException {
+        if (sql == null) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException ex) {
+            log.debug("Rollback failed: {}", ex.getMessage());
+        }
+    }
+
+    private boolean applyOperation(JdbcTemplate jdbcTemplate, SyncOperation operation) {
+        long start = System.nanoTime();
+        try {
+            BatchShape shape = BatchShape.of(operation);
+            if (shape.upserts() && operation.getOperationType() != OperationType.DELETE) {
+                update(jdbcTemplate, shape.sql(), shape.arguments(operation));
+            } else {
+                switch (operation.getOperationType()) {
+                    case INSERT:
+                        executeInsert(jdbcTemplate, operation);
+                        break;
+                    case UPDATE:
+                        executeUpdate(jdbcTemplate, operation, true);
+                        break;
+                    case DELETE:
+                        executeDelete(jdbcTemplate, operation);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unsupported operation " + operation.getOperationType());
+                }
+            }
+            metrics.recordApply(operation, start, 1);
+            recordSuccess(operation);
+            return true;
+        } catch (CannotGetJdbcConnectionException ex) {
+            log.debug("Target {} unavailable, keeping {} on table {} queued: {}", operation.getTargetDb(),
+                    operation.getOperationType(), operation.getConfig().getTableName(), ex.getMessage());
+            return false;
+        } catch (Exception ex) {
+            int attempt = operation.incrementAttempts();
+            if (attempt < retry.getMaxAttempts()) {
+                long backoffMillis = backoffMillis(attempt);
+                operation.setNextRetryTime(Instant.now().plusMillis(backoffMillis));
+                metrics.recordOutcome(operation, SyncMetrics.OUTCOME_RETRY);
+                log.warn("Retrying operation {} on table {} after {} ms due to: {}", operation.getOperationType(),
+                        operation.getConfig().getTableName(), backoffMillis, ex.getMessage());
+            } else {
+                metrics.recordOutcome(operation, SyncMetrics.OUTCOME_FAILED);
+                syncLogService.record(operation.getSourceDb(), operation.getTargetDb(), operation.getConfig().getTableName(),
+                        operation.getOperationType().name(), "FAILED", ex.getMessage());
+                log.error("Operation {} failed permanently on table {}: {}", operation.getOperationType(),
+                        operation.getConfig().getTableName(), ex.getMessage(), ex);
+                return true; // discard after max attempts
+            }
+            return false;
+        }
+    }
+
+    // exponential backoff spread by +/- jitter so operations that failed together do not retry in lockstep
+    private long backoffMillis(int attempt) {
+        double backoff = Math.min(retry.getMaxBackoff(),
+                retry.getInitialBackoff() * Math.pow(retry.getMultiplier(), attempt - 1));
+        double jitter = Math.max(0, Math.min(1, retry.getJitter()));
+        if (jitter > 0) {
+            backoff *= 1 + jitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1);
+        }
+        return Math.max(0, (long) backoff);
+    }
+
+    private void recordSuccess(SyncOperation operation) {
+        metrics.recordOutcome(operation, SyncMetrics.OUTCOME_SUCCESS);
+        syncLogService.record(operation.getSourceDb(), operation.getTargetDb(), operation.getConfig().getTableName(),
+                operation.getOperationType().name(), "SUCCESS",
+                "Row synchronized for key " + operation.getPrimaryKeyValue());
+    }
+
+    private void executeInsert(JdbcTemplate jdbcTemplate, SyncOperation operation) {
+        BatchShape shape = BatchShape.of(operation).as(OperationType.INSERT);
+        try {
+            update(jdbcTemplate, shape.sql(), shape.arguments(operation));
+        } catch (DataAccessException ex) {
+            if (ex instanceof CannotGetJdbcConnectionException) {
+                throw ex;
+            }
+            log.debug("Insert failed for table {} key {}. Attempting update instead: {}", operation.getConfig().getTableName(),
+                    operation.getPrimaryKeyValue(), ex.getMessage());
+            if (executeUpdate(jdbcTemplate, operation, false) == 0) {
+                throw ex;
+            }
+        }
+    }
+
+    private int executeUpdate(JdbcTemplate jdbcTemplate, SyncOperation operation, boolean allowInsertFallback) {
+        BatchShape shape = BatchShape.of(operation).as(OperationType.UPDATE);
+        int updated = update(jdbcTemplate, shape.sql(), shape.arguments(operation));
+        if (allowInsertFallback && updated == 0) {
+            executeInsert(jdbcTemplate, operation);
+            return 1;
+        }
+        return updated;
+    }
+
+    private void executeDelete(JdbcTemplate jdbcTemplate, SyncOperation operation) {
+        BatchShape shape = BatchShape.of(operation);
+        update(jdbcTemplate, shape.sql(), shape.arguments(operation));
+    }
+
+    private static final class BatchShape {
+        private final SyncPlan.StatementTemplates templates;
+        private final OperationType operationType;
+        private final BitSet changedColumns;
+        private final String sql;
+
+        private BatchShape(SyncPlan.StatementTemplates templates, OperationType operationType, BitSet changedColumns) {
+            this.templates = templates;
+            this.operationType = operationType;
+            String deltaSql = operationType == OperationType.UPDATE && changedColumns != null
+                    ? templates.updateSql(changedColumns) : null;
+            this.changedColumns = deltaSql == null ? null : changedColumns;
+            this.sql = deltaSql != null ? deltaSql : templates.sql(operationType);
+        }
+
+        static BatchShape of(SyncOperation operation) {
+            return new BatchShape(operation.getPlan().templatesFor(operation.getRow().schema()),
+                    operation.getOperationType(), operation.getChangedColumns());
+        }
+
+        BatchShape as(OperationType type) {
+            return new BatchShape(templates, type, changedColumns);
+        }
+
+        // an update of some columns is a plain UPDATE even where the dialect upserts; missing rows fall back per row
+        boolean upserts() {
+            return templates.upserts() && operationType != OperationType.DELETE && changedColumns == null;
+        }
+
+        String sql() {
+            return sql;
+        }
+
+        Object[] arguments(SyncOperation operation) {
+            if (changedColumns != null) {
+                return templates.updateArguments(changedColumns, operation.getRow(), operation.getPrimaryKeyValue());
+            }
+            return templates.arguments(operationType, operation.getRow(), operation.getPrimaryKeyValue());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            // identical statement text implies an identical parameter layout, so upserted inserts and updates share a batch
+            return sql.equals(((BatchShape) o).sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return sql.hashCode();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.entity.SyncConfig;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.Map;
+
+// binary layout of queued operations; rows keep their primitive slots as raw longs
+final class OperationCodec {
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte DECIMAL = 2;
+    private static final byte TIMESTAMP = 3;
+    private static final byte DATE = 4;
+    private static final byte TIME = 5;
+    private static final byte BYTES = 6;
+    private static final byte LONG = 7;
+    private static final byte INTEGER = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte BOOLEAN = 10;
+    private static final byte BIG_INTEGER = 11;
+    private static final byte SHORT = 12;
+    private static final byte BYTE = 13;
+    private static final byte FLOAT = 14;
+    private static final byte LOCAL_DATE_TIME = 15;
+    private static final byte LOCAL_DATE = 16;
+    private static final byte OFFSET_DATE_TIME = 17;
+
+    private static final OperationType[] OPERATION_TYPES = OperationType.values();
+
+    private OperationCodec() {
+    }
+
+    static void writeSchema(DataOutput out, RowSchema schema) throws IOException {
+        out.writeShort(schema.columnCount());
+        for (int i = 0; i < schema.columnCount(); i++) {
+            out.writeUTF(schema.columnNames().get(i));
+            out.writeInt(schema.jdbcType(i));
+        }
+    }
+
+    static RowSchema readSchema(DataInput in) throws IOException {
+        int columnCount = in.readUnsignedShort();
+        String[] names = new String[columnCount];
+        int[] types = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            names[i] = in.readUTF();
+            types[i] = in.readInt();
+        }
+        return RowSchema.of(names, types);
+    }
+
+    static void writeOperation(DataOutput out, SyncOperation operation, int schemaId) throws IOException {
+        CompactRow row = operation.getRow();
+        RowSchema schema = row.schema();
+        out.writeUTF(operation.getConfig().getTableName());
+        out.writeUTF(operation.getSourceDb());
+        out.writeByte(operation.getOperationType().ordinal());
+        out.writeByte(operation.getAttempts());
+        Instant nextRetryTime = operation.getNextRetryTime();
+        out.writeLong(nextRetryTime == null ? Long.MIN_VALUE : nextRetryTime.toEpochMilli());
+        out.writeInt(schemaId);
+        writeValue(out, operation.getPrimaryKeyValue());
+        for (int i = 0; i < schema.primitiveCount(); i++) {
+            out.writeLong(row.primitives[i]);
+        }
+        if (row.nulls != null) {
+            for (long word : row.nulls) {
+                out.writeLong(word);
+            }
+        }
+        for (int i = 0; i < schema.referenceCount(); i++) {
+            writeValue(out, row.references[i]);
+        }
+    }
+
+    // returns null when the table is no longer configured; the operation is then dropped
+    static SyncOperation readOperation(DataInput in, Map<Integer, RowSchema> schemas, String targetDb,
+                                       TableLookup tables) throws IOException {
+        String tableName = in.readUTF();
+        String sourceDb = in.readUTF();
+        OperationType operationType = OPERATION_TYPES[in.readUnsignedByte()];
+        int attempts = in.readUnsignedByte();
+        long nextRetryMillis = in.readLong();
+        RowSchema schema = schemas.get(in.readInt());
+        if (schema == null) {
+            throw new IOException("Operation on table " + tableName + " references an unknown row schema");
+        }
+        Object key = readValue(in);
+        long[] primitives = schema.primitiveCount() == 0 ? null : new long[schema.primitiveCount()];
+        long[] nulls = schema.primitiveCount() == 0 ? null : new long[(schema.primitiveCount() + 63) >>> 6];
+        Object[] references = schema.referenceCount() == 0 ? null : new Object[schema.referenceCount()];
+        for (int i = 0; i < schema.primitiveCount(); i++) {
+            primitives[i] = in.readLong();
+        }
+        if (nulls != null) {
+            for (int i = 0; i < nulls.length; i++) {
+                nulls[i] = in.readLong();
+            }
+        }
+        for (int i = 0; i < schema.referenceCount(); i++) {
+            references[i] = readValue(in);
+        }
+
+        SyncConfig config = tables.config(tableName);
+        if (config == null) {
+            return null;
+        }
+        SyncPlan plan = tables.plan(config);
+        CompactRow row = new CompactRow(plan.canonicalSchema(schema), primitives, nulls, references);
+        SyncOperation operation = new SyncOperation(sourceDb, targetDb, config, plan, operationType, row, key);
+        operation.setAttempts(attempts);
+        operation.setNextRetryTime(nextRetryMillis == Long.MIN_VALUE ? null : Instant.ofEpochMilli(nextRetryMillis));
+        return operation;
+    }
+
+    private static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            writeString(out, STRING, (String) value);
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            out.writeByte(DECIMAL);
+            out.writeInt(decimal.scale());
+            writeBytes(out, decimal.unscaledValue().toByteArray());
+        } else if (value instanceof Timestamp) {
+            Timestamp timestamp = (Timestamp) value;
+            out.writeByte(TIMESTAMP);
+            out.writeLong(timestamp.getTime());
+            out.writeInt(timestamp.getNanos());
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(DATE);
+            out.writeLong(((java.sql.Date) value).getTime());
+        } else if (value instanceof Time) {
+            out.writeByte(TIME);
+            out.writeLong(((Time) value).getTime());
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes(out, (byte[]) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            writeBytes(out, ((BigInteger) value).toByteArray());
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof LocalDateTime) {
+            writeString(out, LOCAL_DATE_TIME, value.toString());
+        } else if (value instanceof LocalDate) {
+            writeString(out, LOCAL_DATE, value.toString());
+        } else if (value instanceof OffsetDateTime) {
+            writeString(out, OFFSET_DATE_TIME, value.toString());
+        } else if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            try {
+                writeString(out, STRING, clob.getSubString(1, (int) clob.length()));
+            } catch (SQLException e) {
+                throw new IOException("Unable to read CLOB value: " + e.getMessage(), e);
+            }
+        } else if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            out.writeByte(BYTES);
+            try {
+                writeBytes(out, blob.getBytes(1, (int) blob.length()));
+            } catch (SQLException e) {
+                throw new IOException("Unable to read BLOB value: " + e.getMessage(), e);
+            }
+        } else {
+            // vendor types without a portable binary form are bound back as their text
+            writeString(out, STRING, value.toString());
+        }
+    }
+
+    private static Object readValue(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case DECIMAL:
+                int scale = in.readInt();
+                return new BigDecimal(new BigInteger(readBytes(in)), scale);
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case DATE:
+                return new java.sql.Date(in.readLong());
+            case TIME:
+                return new Time(in.readLong());
+            case BYTES:
+                return readBytes(in);
+            case LONG:
+                return in.readLong();
+            case INTEGER:
+                return in.readInt();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case BIG_INTEGER:
+                return new BigInteger(readBytes(in));
+            case SHORT:
+                return in.readShort();
+            case BYTE:
+                return in.readByte();
+            case FLOAT:
+                return in.readFloat();
+            case LOCAL_DATE_TIME:
+                return LocalDateTime.parse(readString(in));
+            case LOCAL_DATE:
+                return LocalDate.parse(readString(in));
+            case OFFSET_DATE_TIME:
+                return OffsetDateTime.parse(readString(in));
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    // writeUTF is limited to 64 KB, so text values carry an explicit length
+    private static void writeString(DataOutput out, byte tag, String value) throws IOException {
+        out.writeByte(tag);
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    interface TableLookup {
+        SyncConfig config(String tableName);
+
+        SyncPlan plan(SyncConfig config);
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.dmsyncbridge.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// latest pending operation per (table, primary key) of one target; an older operation for the same row is skipped
+// instead of applied. Each row takes one off-heap slot of (row key hash, version, content hash, type and changed
+// columns), so queued rows stay in the queue rather than the heap, and the table stops growing at its capacity
+class OperationIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(OperationIndex.class);
+    private static final int SLOT_SIZE = 32;
+    private static final int INITIAL_CAPACITY = 1024;
+    // keeps a table within a single buffer
+    private static final int MAX_CAPACITY = 1 << 25;
+    private static final OperationType[] TYPES = OperationType.values();
+    // the low bits of a slot's state hold the operation type; changed columns below this count fit after the flags
+    private static final long TYPE_MASK = 0x3;
+    private static final long COLUMNS_KNOWN = 0x4;
+    private static final long COLUMNS_WIDE = 0x8;
+    // the target rejected the operation, so the next pass queues the row again instead of waiting out the backoff
+    private static final long RETRYING = 0x10;
+    private static final int COLUMN_SHIFT = 5;
+    private static final int MAX_INDEXED_COLUMN = Long.SIZE - COLUMN_SHIFT;
+
+    private final int maxCapacity;
+    private ByteBuffer buffer;
+    private int capacity;
+    private int size;
+    private long versions;
+    private boolean full;
+
+    OperationIndex(int maxRows) {
+        // rows fill at most three quarters of the slots
+        long requested = Math.max(INITIAL_CAPACITY, maxRows * 4L / 3);
+        this.maxCapacity = requested >= MAX_CAPACITY ? MAX_CAPACITY : Integer.highestOneBit((int) requested - 1) << 1;
+        this.capacity = Math.min(INITIAL_CAPACITY, maxCapacity);
+        this.buffer = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+    }
+
+    // returns the operation to queue in place of the given one, merged with what an older one still owed the
+    // target, or null when the row's pending operation already carries the same values and columns
+    synchronized SyncOperation register(SyncOperation operation) {
+        long keyHash = FingerprintStore.keyHash(rowKey(operation));
+        long contentHash = contentHash(operation.getRow());
+        int slot = locate(keyHash);
+        OperationType type = operation.getOperationType();
+        BitSet columns = operation.getChangedColumns();
+        if (keyAt(slot) == keyHash) {
+            long previous = stateAt(slot);
+            type = merge(TYPES[(int) (previous & TYPE_MASK)], type);
+            columns = mergeColumns(previous, columns);
+            long state = state(type, columns);
+            if (contentHash != 0 && contentHash == contentAt(slot) && state == previous
+                    && (previous & (COLUMNS_WIDE | RETRYING)) == 0) {
+                return null;
+            }
+            put(slot, keyHash, ++versions, contentHash, state);
+        } else if ((size + 1) * 4L > capacity * 3L && !grow()) {
+            // past the capacity the row goes unindexed: it is current until a newer operation takes a slot
+            operation.setVersion(0);
+            return operation;
+        } else {
+            put(locate(keyHash), keyHash, ++versions, contentHash, state(type, columns));
+            size++;
+        }
+        SyncOperation current = operation;
+        if (type != operation.getOperationType()) {
+            current = new SyncOperation(operation.getSourceDb(), operation.getTargetDb(), operation.getConfig(),
+                    operation.getPlan(), type, operation.getRow(), operation.getPrimaryKeyValue());
+        }
+        current.setVersion(versions);
+        current.setChangedColumns(columns);
+        return current;
+    }
+
+    // operations read back after a restart carry no version and are current until a newer one is registered
+    synchronized boolean isCurrent(SyncOperation operation) {
+        long keyHash = FingerprintStore.keyHash(rowKey(operation));
+        int slot = locate(keyHash);
+        if (operation.getVersion() == 0) {
+            return keyAt(slot) != keyHash;
+        }
+        return keyAt(slot) == keyHash && versionAt(slot) == operation.getVersion();
+    }
+
+    // called when the target rejected the operation and it waits for a retry
+    synchronized void retrying(SyncOperation operation) {
+        long keyHash = FingerprintStore.keyHash(rowKey(operation));
+        int slot = locate(keyHash);
+        if (operation.getVersion() != 0 && keyAt(slot) == keyHash && versionAt(slot) == operation.getVersion()) {
+            buffer.putLong(slot * SLOT_SIZE + 24, stateAt(slot) | RETRYING);
+        }
+    }
+
+    // called once the operation was applied or dropped for good
+    synchronized void completed(SyncOperation operation) {
+        if (operation.getVersion() == 0) {
+            return;
+        }
+        long keyHash = FingerprintStore.keyHash(rowKey(operation));
+        int hole = locate(keyHash);
+        if (keyAt(hole) != keyHash || versionAt(hole) != operation.getVersion()) {
+            return;
+        }
+        // backward-shift deletion, as in FingerprintStore, so completed rows leave no tombstones behind
+        int mask = capacity - 1;
+        for (int next = (hole + 1) & mask; keyAt(next) != 0; next = (next + 1) & mask) {
+            int home = (int) keyAt(next) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                put(hole, keyAt(next), versionAt(next), contentAt(next), stateAt(next));
+                hole = next;
+            }
+        }
+        buffer.putLong(hole * SLOT_SIZE, 0);
+        size--;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // a row the target has not received yet still needs its insert, now carrying the latest values;
+    // otherwise the newer operation describes the row's final state on its own
+    static OperationType merge(OperationType previous, OperationType next) {
+        if (previous == OperationType.INSERT && next == OperationType.UPDATE) {
+            return OperationType.INSERT;
+        }
+        return next;
+    }
+
+    // a skipped update still owes the target its columns, so consecutive updates write the union of both sets;
+    // columns too wide for the slot are written in full
+    private static BitSet mergeColumns(long previous, BitSet next) {
+        if (TYPES[(int) (previous & TYPE_MASK)] != OperationType.UPDATE || (previous & COLUMNS_KNOWN) == 0
+                || next == null) {
+            return null;
+        }
+        BitSet union = BitSet.valueOf(new long[] {previous >>> COLUMN_SHIFT});
+        union.or(next);
+        return union;
+    }
+
+    private static long state(OperationType type, BitSet columns) {
+        long state = type.ordinal();
+        if (columns == null) {
+            return state;
+        }
+        if (columns.length() > MAX_INDEXED_COLUMN) {
+            return state | COLUMNS_WIDE;
+        }
+        long[] words = columns.toLongArray();
+        return state | COLUMNS_KNOWN | (words.length == 0 ? 0 : words[0] << COLUMN_SHIFT);
+    }
+
+    // a pending operation only absorbs a newer one that would write the same values
+    private static long contentHash(CompactRow row) {
+        if (row == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < row.size(); i++) {
+            Object value = row.get(i);
+            int valueHash;
+            if (value == null) {
+                valueHash = 0x9e3779b9;
+            } else if (value instanceof Number) {
+                valueHash = FingerprintStore.numberHash((Number) value);
+            } else if (value instanceof byte[]) {
+                valueHash = Arrays.hashCode((byte[]) value);
+            } else {
+                valueHash = value.hashCode();
+            }
+            hash = (hash ^ valueHash) * 0x100000001b3L;
+        }
+        hash = FingerprintStore.mix(hash);
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static String rowKey(SyncOperation operation) {
+        return operation.getConfig().getTableName().toLowerCase() + '\u0000' + operation.getPrimaryKeyValue();
+    }
+
+    // the slot holding the key, or the empty slot where it would go
+    private int locate(long keyHash) {
+        int mask = capacity - 1;
+        int slot = (int) keyHash & mask;
+        while (true) {
+            long stored = keyAt(slot);
+            if (stored == 0 || stored == keyHash) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean grow() {
+        if (capacity >= maxCapacity) {
+            if (!full) {
+                full = true;
+                log.warn("Operation index is full at {} pending rows; older operations for further rows are no "
+                        + "longer skipped", size);
+            }
+            return false;
+        }
+        ByteBuffer previous = buffer;
+        int previousCapacity = capacity;
+        capacity *= 2;
+        buffer = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+        for (int slot = 0; slot < previousCapacity; slot++) {
+            long keyHash = previous.getLong(slot * SLOT_SIZE);
+            if (keyHash != 0) {
+                put(locate(keyHash), keyHash, previous.getLong(slot * SLOT_SIZE + 8),
+                        previous.getLong(slot * SLOT_SIZE + 16), previous.getLong(slot * SLOT_SIZE + 24));
+            }
+        }
+        return true;
+    }
+
+    private void put(int slot, long keyHash, long version, long contentHash, long state) {
+        int offset = slot * SLOT_SIZE;
+        buffer.putLong(offset, keyHash);
+        buffer.putLong(offset + 8, version);
+        buffer.putLong(offset + 16, contentHash);
+        buffer.putLong(offset + 24, state);
+    }
+
+    private long keyAt(int slot) {
+        return buffer.getLong(slot * SLOT_SIZE);
+    }
+
+    private long versionAt(int slot) {
+        return buffer.getLong(slot * SLOT_SIZE + 8);
+    }
+
+    private long contentAt(int slot) {
+        return buffer.getLong(slot * SLOT_SIZE + 16);
+    }
+
+    private long stateAt(int slot) {
+        return buffer.getLong(slot * SLOT_SIZE + 24);
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.dmsyncbridge.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+// append-only log of one target's pending operations in memory-mapped segments; the consumer offset is
+// checkpointed to a file so queued changes survive restarts without being held on the heap
+class OperationLog implements OperationQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(OperationLog.class);
+    private static final byte SCHEMA_RECORD = 1;
+    private static final byte OPERATION_RECORD = 2;
+    // record layout: payload length, CRC32 of the payload, payload (record type followed by its body)
+    private static final int HEADER_SIZE = 8;
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String OFFSET_FILE = "consumer.offset";
+
+    private final Path directory;
+    private final String targetDb;
+    private final int segmentSize;
+    private final OperationCodec.TableLookup tables;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordOut = new DataOutputStream(recordBytes);
+    // row schemas are written once per segment and referenced by id from the operations that follow
+    private final Map<RowSchema, Integer> writerSchemas = new IdentityHashMap<>();
+    private final Map<Integer, RowSchema> readerSchemas = new HashMap<>();
+    private Segment writeSegment;
+    private Segment readSegment;
+    private int readPosition;
+    private int pending;
+    // records before this offset were written by an earlier run, whose operation versions mean nothing now
+    private final long recoveredEnd;
+
+    OperationLog(Path directory, int segmentSize, String targetDb, OperationCodec.TableLookup tables) throws IOException {
+        this.directory = directory;
+        this.targetDb = targetDb;
+        this.segmentSize = Math.max(4096, segmentSize);
+        this.tables = tables;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long base = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                long size = Files.size(file);
+                if (size < HEADER_SIZE) {
+                    Files.delete(file);
+                    continue;
+                }
+                segments.put(base, Segment.map(base, file, (int) size));
+            }
+        }
+        long offset = readOffset();
+        Long next;
+        while (!segments.isEmpty() && (next = segments.higherKey(segments.firstKey())) != null && next <= offset) {
+            deleteSegment(segments.pollFirstEntry().getValue());
+        }
+        if (segments.isEmpty()) {
+            createSegment(offset, this.segmentSize);
+        }
+        writeSegment = segments.lastEntry().getValue();
+        writeSegment.end = scanEnd(writeSegment);
+        recoveredEnd = writeSegment.base + writeSegment.end;
+        readSegment = segments.firstEntry().getValue();
+        readPosition = (int) Math.max(0, offset - readSegment.base);
+        for (int position = 0; position < readPosition; ) {
+            byte[] record = readRecord(readSegment, position);
+            if (record == null) {
+                break;
+            }
+            if (record[0] == SCHEMA_RECORD) {
+                registerSchema(record);
+            }
+            position += HEADER_SIZE + record.length;
+        }
+        pending = countOperations();
+        if (pending > 0) {
+            log.info("Recovered {} queued operations for {} from {}", pending, targetDb, directory);
+        }
+    }
+
+    @Override
+    public synchronized void add(SyncOperation operation) {
+        RowSchema schema = operation.getRow().schema();
+        try {
+            Integer schemaId = writerSchemas.get(schema);
+            byte[] schemaRecord = schemaId == null ? encodeSchema(writerSchemas.size(), schema) : null;
+            byte[] operationRecord = encodeOperation(operation, schemaId == null ? writerSchemas.size() : schemaId);
+            int required = HEADER_SIZE + operationRecord.length
+                    + (schemaRecord == null ? 0 : HEADER_SIZE + schemaRecord.length);
+            if (writeSegment.end + required + HEADER_SIZE > writeSegment.capacity) {
+                schemaRecord = encodeSchema(0, schema);
+                operationRecord = encodeOperation(operation, 0);
+                roll(2 * HEADER_SIZE + schemaRecord.length + operationRecord.length + HEADER_SIZE);
+            }
+            if (schemaRecord != null) {
+                writerSchemas.put(schema, writerSchemas.size());
+                append(schemaRecord);
+            }
+            append(operationRecord);
+            pending++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to append operation to " + directory, e);
+        }
+    }
+
+    @Override
+    public synchronized List<SyncOperation> poll(int maxOperations) {
+        List<SyncOperation> operations = new ArrayList<>(Math.min(maxOperations, 64));
+        while (operations.size() < maxOperations) {
+            byte[] record = readRecord(readSegment, readPosition);
+            if (record == null) {
+                Map.Entry<Long, Segment> next = segments.higherEntry(readSegment.base);
+                if (next == null) {
+                    break;
+                }
+                readSegment = next.getValue();
+                readPosition = 0;
+                readerSchemas.clear();
+                continue;
+            }
+            long offset = readSegment.base + readPosition;
+            readPosition += HEADER_SIZE + record.length;
+            if (record[0] == SCHEMA_RECORD) {
+                registerSchema(record);
+                continue;
+            }
+            pending--;
+            try {
+                DataInputStream in = input(record);
+                SyncOperation operation = OperationCodec.readOperation(in, readerSchemas, targetDb, tables);
+                if (operation == null) {
+                    log.warn("Dropping queued operation for {} on a table that is no longer configured", targetDb);
+                    continue;
+                }
+                operation.setQueueOffset(offset);
+                if (offset >= recoveredEnd) {
+                    operation.setVersion(in.readLong());
+                    int words = in.readUnsignedShort();
+                    if (words > 0) {
+                        long[] changedColumns = new long[words - 1];
+                        for (int i = 0; i < changedColumns.length; i++) {
+                            changedColumns[i] = in.readLong();
+                        }
+                        operation.setChangedColumns(BitSet.valueOf(changedColumns));
+                    }
+                }
+                operations.add(operation);
+            } catch (IOException | RuntimeException e) {
+                log.error("Dropping unreadable queued operation for {}: {}", targetDb, e.getMessage());
+            }
+        }
+        return operations;
+    }
+
+    @Override
+    public synchronized void commit(long retainedOffset) {
+        writeSegment.buffer.force();
+        long offset = readSegment.base + readPosition;
+        if (retainedOffset >= 0 && retainedOffset < offset) {
+            offset = retainedOffset;
+        }
+        try {
+            Path temp = directory.resolve(OFFSET_FILE + ".tmp");
+            Files.write(temp, Long.toString(offset).getBytes(StandardCharsets.US_ASCII));
+            Files.move(temp, directory.resolve(OFFSET_FILE), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to checkpoint operation log offset in " + directory, e);
+        }
+        Long kept = segments.floorKey(offset);
+        while (kept != null && segments.firstKey() < kept) {
+            deleteSegment(segments.pollFirstEntry().getValue());
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return pending;
+    }
+
+    @Override
+    public synchronized void close() {
+        writeSegment.buffer.force();
+        segments.clear();
+    }
+
+    private void roll(int required) throws IOException {
+        Segment previous = writeSegment;
+        previous.buffer.force();
+        // an empty segment too small for the record is replaced in place
+        createSegment(previous.base + previous.end, Math.max(segmentSize, required));
+        writeSegment = segments.lastEntry().getValue();
+        if (readSegment == previous && previous.end == 0) {
+            readSegment = writeSegment;
+        }
+        writerSchemas.clear();
+    }
+
+    private void createSegment(long base, int capacity) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+        Files.deleteIfExists(file);
+        segments.put(base, Segment.map(base, file, capacity));
+    }
+
+    private void deleteSegment(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            log.warn("Unable to delete consumed operation log segment {}: {}", segment.file, e.getMessage());
+        }
+    }
+
+    private void append(byte[] record) {
+        MappedByteBuffer buffer = writeSegment.buffer;
+        int position = writeSegment.end;
+        for (int i = 0; i < record.length; i++) {
+            buffer.put(position + HEADER_SIZE + i, record[i]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        // the length goes last so a torn write leaves a record that readers treat as the end of the log
+        buffer.putInt(position, record.length);
+        writeSegment.end = position + HEADER_SIZE + record.length;
+        if (writeSegment.end + HEADER_SIZE <= writeSegment.capacity) {
+            buffer.putInt(writeSegment.end, 0);
+        }
+    }
+
+    private byte[] readRecord(Segment segment, int position) {
+        if (position + HEADER_SIZE > segment.capacity) {
+            return null;
+        }
+        ByteBuffer buffer = segment.buffer;
+        int length = buffer.getInt(position);
+        if (length <= 0 || length > segment.capacity - position - HEADER_SIZE) {
+            return null;
+        }
+        byte[] record = new byte[length];
+        for (int i = 0; i < length; i++) {
+            record[i] = buffer.get(position + HEADER_SIZE + i);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, length);
+        return (int) crc.getValue() == buffer.getInt(position + 4) ? record : null;
+    }
+
+    private int scanEnd(Segment segment) {
+        int position = 0;
+        byte[] record;
+        while ((record = readRecord(segment, position)) != null) {
+            position += HEADER_SIZE + record.length;
+        }
+        return position;
+    }
+
+    private int countOperations() {
+        int count = 0;
+        int position = readPosition;
+        for (Segment segment : segments.tailMap(readSegment.base).values()) {
+            byte[] record;
+            while ((record = readRecord(segment, position)) != null) {
+                if (record[0] == OPERATION_RECORD) {
+                    count++;
+                }
+                position += HEADER_SIZE + record.length;
+            }
+            position = 0;
+        }
+        return count;
+    }
+
+    private long readOffset() throws IOException {
+        Path file = directory.resolve(OFFSET_FILE);
+        if (!Files.exists(file)) {
+            return segments.isEmpty() ? 0 : segments.firstKey();
+        }
+        return Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim());
+    }
+
+    private void registerSchema(byte[] record) {
+        try {
+            DataInputStream in = input(record);
+            int id = in.readInt();
+            readerSchemas.put(id, OperationCodec.readSchema(in));
+        } catch (IOException e) {
+            log.error("Unreadable row schema in operation log for {}: {}", targetDb, e.getMessage());
+        }
+    }
+
+    private byte[] encodeSchema(int schemaId, RowSchema schema) throws IOException {
+        recordBytes.reset();
+        recordOut.writeByte(SCHEMA_RECORD);
+        recordOut.writeInt(schemaId);
+        OperationCodec.writeSchema(recordOut, schema);
+        return recordBytes.toByteArray();
+    }
+
+    private byte[] encodeOperation(SyncOperation operation, int schemaId) throws IOException {
+        recordBytes.reset();
+        recordOut.writeByte(OPERATION_RECORD);
+        OperationCodec.writeOperation(recordOut, operation, schemaId);
+        // the index state trails the operation so logs written before it was kept still decode
+        recordOut.writeLong(operation.getVersion());
+        // 0 for the whole row, otherwise one more than the number of words in the column set
+        BitSet changedColumns = operation.getChangedColumns();
+        long[] words = changedColumns == null ? null : changedColumns.toLongArray();
+        recordOut.writeShort(words == null ? 0 : words.length + 1);
+        if (words != null) {
+            for (long word : words) {
+                recordOut.writeLong(word);
+            }
+        }
+        return recordBytes.toByteArray();
+    }
+
+    private static DataInputStream input(byte[] record) {
+        return new DataInputStream(new ByteArrayInputStream(record, 1, record.length - 1));
+    }
+
+    private static final class Segment {
+        private final long base;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private int end;
+
+        private Segment(long base, Path file, MappedByteBuffer buffer) {
+            this.base = base;
+            this.file = file;
+            this.buffer = buffer;
+            this.capacity = buffer.capacity();
+        }
+
+        static Segment map(long base, Path file, int capacity) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                return new Segment(base, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+            }
+        }
+    }
+}
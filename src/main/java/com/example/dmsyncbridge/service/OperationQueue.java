@@ -0,0 +1,25 @@
+package com.example.dmsyncbridge.service;
+
+import java.util.List;
+
+// pending operations for one target database, consumed from the head and re-added at the tail on failure
+interface OperationQueue extends AutoCloseable {
+
+    void add(SyncOperation operation);
+
+    List<SyncOperation> poll(int maxOperations);
+
+    // makes the operations polled and added so far durable; a crash before commit replays them again
+    default void commit() {
+        commit(-1);
+    }
+
+    // like commit(), but a crash still replays everything from retainedOffset on: the queue offset of the oldest
+    // polled operation that is waiting outside the queue, or -1 for none
+    void commit(long retainedOffset);
+
+    int size();
+
+    @Override
+    void close();
+}
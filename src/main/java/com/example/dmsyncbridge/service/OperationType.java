@@ -0,0 +1,5 @@
+package com.example.dmsyncbridge.service;
+
+enum OperationType {
+    INSERT, UPDATE, DELETE
+}
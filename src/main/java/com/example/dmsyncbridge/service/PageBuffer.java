@@ -0,0 +1,85 @@
+package com.example.dmsyncbridge.service;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// one side's current keyset page; rows past the bound stay buffered for the next merge round
+class PageBuffer implements RowSource {
+
+    private final List<Object> keys;
+    private final List<CompactRow> rows;
+    private int index;
+    private Object bound;
+    private Object lastKey;
+    private boolean exhausted;
+    private Object currentKey;
+    private CompactRow current;
+
+    PageBuffer(int pageSize, Object startKey) {
+        this.keys = new ArrayList<>(pageSize);
+        this.rows = new ArrayList<>(pageSize);
+        this.lastKey = startKey;
+    }
+
+    int fill(RowCursor cursor, int pageSize) throws SQLException {
+        keys.clear();
+        rows.clear();
+        index = 0;
+        while (cursor.next()) {
+            keys.add(cursor.key());
+            rows.add(cursor.row());
+        }
+        if (!keys.isEmpty()) {
+            lastKey = keys.get(keys.size() - 1);
+        }
+        exhausted = keys.size() < pageSize;
+        return keys.size();
+    }
+
+    void markExhausted() {
+        keys.clear();
+        rows.clear();
+        index = 0;
+        exhausted = true;
+    }
+
+    boolean isDrained() {
+        return index >= keys.size();
+    }
+
+    boolean isExhausted() {
+        return exhausted;
+    }
+
+    Object getLastKey() {
+        return lastKey;
+    }
+
+    void setBound(Object bound) {
+        this.bound = bound;
+    }
+
+    @Override
+    public boolean next() {
+        if (index >= keys.size() || bound != null && MergeReconciler.compareKeys(keys.get(index), bound) > 0) {
+            currentKey = null;
+            current = null;
+            return false;
+        }
+        currentKey = keys.get(index);
+        current = rows.get(index);
+        index++;
+        return true;
+    }
+
+    @Override
+    public Object key() {
+        return currentKey;
+    }
+
+    @Override
+    public CompactRow row() {
+        return current;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.dmsyncbridge.service;
+
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// reads one side's keyset pages on a stage thread while the merge works on earlier ones; the hand-off holds at
+// most `depth` pages, so a slow merge stalls the reads instead of buffering the table
+class PagePrefetcher implements AutoCloseable {
+
+    interface PageReader {
+        PageBuffer read(Object afterKey) throws SQLException;
+    }
+
+    private final BlockingQueue<Object> pages;
+    private final Future<?> task;
+    private volatile boolean closed;
+
+    PagePrefetcher(ExecutorService executor, int depth, Object startKey, PageReader reader) {
+        this.pages = new ArrayBlockingQueue<>(Math.max(1, depth));
+        this.task = executor.submit(() -> run(startKey, reader));
+    }
+
+    private void run(Object startKey, PageReader reader) {
+        Object afterKey = startKey;
+        try {
+            while (!closed) {
+                PageBuffer page;
+                try {
+                    page = reader.read(afterKey);
+                } catch (SQLException | RuntimeException e) {
+                    pages.put(e);
+                    return;
+                }
+                pages.put(page);
+                if (page.isExhausted()) {
+                    return;
+                }
+                afterKey = page.getLastKey();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // the next page in key order; a failed read is rethrown here, on the merging thread
+    PageBuffer next() throws SQLException {
+        Object page;
+        try {
+            page = pages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the next page", e);
+        }
+        if (page instanceof SQLException) {
+            throw (SQLException) page;
+        }
+        if (page instanceof RuntimeException) {
+            throw (RuntimeException) page;
+        }
+        return (PageBuffer) page;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        task.cancel(true);
+        pages.clear();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.dmsyncbridge.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// hands each failed operation back to the applier the moment its backoff expires; the delay queue keeps
+// scheduling at O(log n) and the thread sleeps until the earliest retry instead of rescanning the backlog
+class RetryScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(RetryScheduler.class);
+
+    private final DelayQueue<DelayedOperation> delayed = new DelayQueue<>();
+    private final Consumer<List<SyncOperation>> handler;
+    // queue offsets of the operations scheduled here, counted until their retry has been handled
+    private final TreeMap<Long, Integer> heldOffsets = new TreeMap<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    RetryScheduler(String targetDb, Consumer<List<SyncOperation>> handler) {
+        this.handler = handler;
+        this.thread = new Thread(this::run, "dm-sync-retry-" + targetDb);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    void schedule(SyncOperation operation) {
+        hold(operation.getQueueOffset(), 1);
+        delayed.add(new DelayedOperation(operation));
+    }
+
+    // the queue must not checkpoint past this offset, or a crash would lose the operations waiting here;
+    // -1 when none of them was read from an operation log
+    long oldestQueueOffset() {
+        synchronized (heldOffsets) {
+            return heldOffsets.isEmpty() ? -1 : heldOffsets.firstKey();
+        }
+    }
+
+    int size() {
+        return delayed.size();
+    }
+
+    // stops the thread and returns the operations still waiting so they can be persisted
+    List<SyncOperation> close() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<SyncOperation> waiting = new ArrayList<>(delayed.size());
+        for (DelayedOperation operation : delayed.toArray(new DelayedOperation[0])) {
+            waiting.add(operation.operation);
+        }
+        delayed.clear();
+        synchronized (heldOffsets) {
+            heldOffsets.clear();
+        }
+        return waiting;
+    }
+
+    private void run() {
+        while (running) {
+            List<SyncOperation> due = new ArrayList<>();
+            try {
+                due.add(delayed.take().operation);
+            } catch (InterruptedException e) {
+                return;
+            }
+            DelayedOperation next;
+            while ((next = delayed.poll()) != null) {
+                due.add(next.operation);
+            }
+            try {
+                handler.accept(due);
+            } catch (RuntimeException e) {
+                log.error("Retrying {} operations failed: {}", due.size(), e.getMessage(), e);
+            } finally {
+                // operations that failed again were scheduled anew by the handler and still hold their offsets
+                for (SyncOperation operation : due) {
+                    hold(operation.getQueueOffset(), -1);
+                }
+            }
+        }
+    }
+
+    private void hold(long offset, int delta) {
+        if (offset < 0) {
+            return;
+        }
+        synchronized (heldOffsets) {
+            heldOffsets.merge(offset, delta, (count, change) -> count + change == 0 ? null : count + change);
+        }
+    }
+
+    private static final class DelayedOperation implements Delayed {
+        private final SyncOperation operation;
+        private final long dueMillis;
+
+        private DelayedOperation(SyncOperation operation) {
+            Instant nextRetryTime = operation.getNextRetryTime();
+            this.operation = operation;
+            this.dueMillis = nextRetryTime == null ? 0 : nextRetryTime.toEpochMilli();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueMillis, ((DelayedOperation) other).dueMillis);
+        }
+    }
+}
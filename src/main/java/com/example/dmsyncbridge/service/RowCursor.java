@@ -0,0 +1,101 @@
+package com.example.dmsyncbridge.service;
+
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+class RowCursor implements RowSource, AutoCloseable {
+
+    private final DataSource dataSource;
+    private final Connection connection;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private final RowSchema schema;
+    private final int keyIndex;
+    private CompactRow current;
+    private Object currentKey;
+
+    private RowCursor(DataSource dataSource, Connection connection, PreparedStatement statement,
+                      ResultSet resultSet, RowSchema schema, int keyIndex) {
+        this.dataSource = dataSource;
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.schema = schema;
+        this.keyIndex = keyIndex;
+    }
+
+    // reuses the expected schema when the result set still has the same shape
+    static RowCursor open(DataSource dataSource, String sql, List<Object> params, int fetchSize,
+                          RowSchema expected, String keyColumn) throws SQLException {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (fetchSize > 0) {
+                statement.setFetchSize(fetchSize);
+            }
+            for (int i = 0; i < params.size(); i++) {
+                statement.setObject(i + 1, params.get(i));
+            }
+            resultSet = statement.executeQuery();
+            RowSchema schema = expected != null && expected.matches(resultSet.getMetaData())
+                    ? expected : RowSchema.of(resultSet.getMetaData());
+            return new RowCursor(dataSource, connection, statement, resultSet, schema,
+                    schema.indexOf(keyColumn.toLowerCase()));
+        } catch (SQLException | RuntimeException e) {
+            JdbcUtils.closeResultSet(resultSet);
+            JdbcUtils.closeStatement(statement);
+            DataSourceUtils.releaseConnection(connection, dataSource);
+            throw e;
+        }
+    }
+
+    static RowCursor empty() {
+        return new RowCursor(null, null, null, null, null, -1);
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        if (resultSet == null || !resultSet.next()) {
+            current = null;
+            currentKey = null;
+            return false;
+        }
+        CompactRow row = schema.read(resultSet);
+        current = row;
+        currentKey = keyIndex < 0 ? null : row.get(keyIndex);
+        return true;
+    }
+
+    RowSchema schema() {
+        return schema;
+    }
+
+    @Override
+    public CompactRow row() {
+        return current;
+    }
+
+    @Override
+    public Object key() {
+        return currentKey;
+    }
+
+    @Override
+    public void close() {
+        if (connection == null) {
+            return;
+        }
+        JdbcUtils.closeResultSet(resultSet);
+        JdbcUtils.closeStatement(statement);
+        DataSourceUtils.releaseConnection(connection, dataSource);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.dmsyncbridge.service;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class RowSchema {
+
+    static final int REFERENCE = 0;
+    static final int INT = 1;
+    static final int LONG = 2;
+    static final int DOUBLE = 3;
+    static final int FLOAT = 4;
+    static final int BOOLEAN = 5;
+
+    private final List<String> columnNames;
+    private final int[] jdbcTypes;
+    private final int[] kinds;
+    private final int[] slots;
+    private final int primitiveCount;
+    private final int referenceCount;
+    private final Map<String, Integer> indexByName;
+
+    private RowSchema(String[] columnNames, int[] jdbcTypes) {
+        this.columnNames = Collections.unmodifiableList(Arrays.asList(columnNames));
+        this.jdbcTypes = jdbcTypes;
+        this.kinds = new int[columnNames.length];
+        this.slots = new int[columnNames.length];
+        this.indexByName = new HashMap<>(columnNames.length * 2);
+        int primitives = 0;
+        int references = 0;
+        for (int i = 0; i < columnNames.length; i++) {
+            kinds[i] = kindOf(jdbcTypes[i]);
+            slots[i] = kinds[i] == REFERENCE ? references++ : primitives++;
+            indexByName.put(columnNames[i], i);
+        }
+        this.primitiveCount = primitives;
+        this.referenceCount = references;
+    }
+
+    static RowSchema of(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] names = new String[columnCount];
+        int[] types = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            names[i] = metaData.getColumnLabel(i + 1).toLowerCase();
+            types[i] = metaData.getColumnType(i + 1);
+        }
+        return new RowSchema(names, types);
+    }
+
+    static RowSchema of(String[] columnNames, int[] jdbcTypes) {
+        return new RowSchema(columnNames.clone(), jdbcTypes.clone());
+    }
+
+    boolean sameLayout(RowSchema other) {
+        return other != null && Arrays.equals(jdbcTypes, other.jdbcTypes) && columnNames.equals(other.columnNames);
+    }
+
+    boolean matches(ResultSetMetaData metaData) throws SQLException {
+        if (metaData.getColumnCount() != kinds.length) {
+            return false;
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            if (metaData.getColumnType(i + 1) != jdbcTypes[i]
+                    || !metaData.getColumnLabel(i + 1).equalsIgnoreCase(columnNames.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int kindOf(int jdbcType) {
+        switch (jdbcType) {
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return INT;
+            case Types.BIGINT:
+                return LONG;
+            case Types.DOUBLE:
+            case Types.FLOAT:
+                return DOUBLE;
+            case Types.REAL:
+                return FLOAT;
+            case Types.BOOLEAN:
+                return BOOLEAN;
+            default:
+                return REFERENCE;
+        }
+    }
+
+    CompactRow read(ResultSet rs) throws SQLException {
+        long[] primitives = primitiveCount == 0 ? null : new long[primitiveCount];
+        long[] nulls = primitiveCount == 0 ? null : new long[(primitiveCount + 63) >>> 6];
+        Object[] references = referenceCount == 0 ? null : new Object[referenceCount];
+        for (int i = 0; i < kinds.length; i++) {
+            int column = i + 1;
+            int slot = slots[i];
+            long bits;
+            switch (kinds[i]) {
+                case INT:
+                    bits = rs.getInt(column);
+                    break;
+                case LONG:
+                    bits = rs.getLong(column);
+                    break;
+                case DOUBLE:
+                    bits = Double.doubleToRawLongBits(rs.getDouble(column));
+                    break;
+                case FLOAT:
+                    bits = Float.floatToRawIntBits(rs.getFloat(column));
+                    break;
+                case BOOLEAN:
+                    bits = rs.getBoolean(column) ? 1L : 0L;
+                    break;
+                default:
+                    references[slot] = rs.getObject(column);
+                    continue;
+            }
+            if (rs.wasNull()) {
+                nulls[slot >>> 6] |= 1L << slot;
+            } else {
+                primitives[slot] = bits;
+            }
+        }
+        return new CompactRow(this, primitives, nulls, references);
+    }
+
+    Object value(CompactRow row, int index) {
+        int slot = slots[index];
+        if (kinds[index] == REFERENCE) {
+            return row.references[slot];
+        }
+        if ((row.nulls[slot >>> 6] & (1L << slot)) != 0) {
+            return null;
+        }
+        long bits = row.primitives[slot];
+        switch (kinds[index]) {
+            case INT:
+                return (int) bits;
+            case LONG:
+                return bits;
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            case FLOAT:
+                return Float.intBitsToFloat((int) bits);
+            default:
+                return bits != 0;
+        }
+    }
+
+    int indexOf(String columnName) {
+        Integer index = indexByName.get(columnName);
+        return index == null ? -1 : index;
+    }
+
+    List<String> columnNames() {
+        return columnNames;
+    }
+
+    int columnCount() {
+        return kinds.length;
+    }
+
+    int jdbcType(int index) {
+        return jdbcTypes[index];
+    }
+
+    int primitiveCount() {
+        return primitiveCount;
+    }
+
+    int referenceCount() {
+        return referenceCount;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.dmsyncbridge.service;
+
+import java.sql.SQLException;
+
+interface RowSource {
+
+    boolean next() throws SQLException;
+
+    Object key();
+
+    CompactRow row();
+}
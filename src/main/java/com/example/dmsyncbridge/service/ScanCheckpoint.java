@@ -0,0 +1,35 @@
+package com.example.dmsyncbridge.service;
+
+import java.sql.Timestamp;
+
+// the last fully reconciled key of an interrupted full scan, with the cutoffs taken when that scan started
+final class ScanCheckpoint {
+
+    private final Object lastKey;
+    private final Timestamp cutoffA;
+    private final Timestamp cutoffB;
+    private final long keysInspected;
+
+    ScanCheckpoint(Object lastKey, Timestamp cutoffA, Timestamp cutoffB, long keysInspected) {
+        this.lastKey = lastKey;
+        this.cutoffA = cutoffA;
+        this.cutoffB = cutoffB;
+        this.keysInspected = keysInspected;
+    }
+
+    Object getLastKey() {
+        return lastKey;
+    }
+
+    Timestamp getCutoffA() {
+        return cutoffA;
+    }
+
+    Timestamp getCutoffB() {
+        return cutoffB;
+    }
+
+    long getKeysInspected() {
+        return keysInspected;
+    }
+}
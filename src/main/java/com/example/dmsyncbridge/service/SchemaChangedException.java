@@ -0,0 +1,8 @@
+package com.example.dmsyncbridge.service;
+
+class SchemaChangedException extends RuntimeException {
+
+    SchemaChangedException(String tableName) {
+        super("Columns of table " + tableName + " changed since its sync plan was compiled");
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.config.SyncProperties;
+
+import java.util.List;
+
+interface SqlDialect {
+
+    // returns null when the database has no single-statement upsert; inserts and updates then fall back to each other
+    String upsertSql(String tableName, String primaryKey, List<String> columns);
+
+    String currentTimestampSql();
+
+    // creates the change log the capture triggers append to; null when triggers are unsupported
+    String changeLogTableSql(String changeLogTable);
+
+    // statements installing a row trigger that appends changed keys to the change log; null when unsupported.
+    // The trigger skips sessions flagged by captureSessionSql, so the bridge's own writes are not logged again
+    List<String> changeCaptureSql(String triggerName, String tableName, String primaryKey, String changeLogTable);
+
+    // flags or clears the current session as the bridge applying changes
+    String captureSessionSql(boolean applying);
+
+    static SqlDialect of(SyncProperties.Dialect dialect) {
+        switch (dialect) {
+            case DM:
+                return new DmDialect();
+            case H2:
+                return new H2Dialect();
+            default:
+                return new GenericDialect();
+        }
+    }
+}
@@ -73,5 +73,23 @@ public class SyncConfigService {
         if (!StringUtils.hasText(config.getPrimaryKey())) {
             throw new IllegalArgumentException("Primary key is required");
         }
+        if (config.getPageSize() != null && config.getPageSize() <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        if (config.getFetchSize() != null && config.getFetchSize() <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive");
+        }
+        for (Long interval : new Long[]{config.getInterval(), config.getMinInterval(), config.getMaxInterval()}) {
+            if (interval != null && interval <= 0) {
+                throw new IllegalArgumentException("Sync intervals must be positive");
+            }
+        }
+        if (config.getMinInterval() != null && config.getMaxInterval() != null
+                && config.getMinInterval() > config.getMaxInterval()) {
+            throw new IllegalArgumentException("Minimum interval cannot exceed the maximum interval");
+        }
+        if (config.getDeleteCheckInterval() != null && config.getDeleteCheckInterval() < 0) {
+            throw new IllegalArgumentException("Delete check interval cannot be negative");
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package com.example.dmsyncbridge.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class SyncJob {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, INCOMPLETE, FAILED, REJECTED
+    }
+
+    private final long id;
+    private final List<String> tableNames;
+    private final Instant submitTime;
+    private volatile Status status;
+    private volatile int mergedTriggers;
+    private volatile Instant startTime;
+    private volatile Instant endTime;
+    private volatile String message;
+
+    // an empty table list stands for every active table
+    SyncJob(long id, List<String> tableNames, Status status) {
+        this.id = id;
+        this.tableNames = Collections.unmodifiableList(new ArrayList<>(tableNames));
+        this.status = status;
+        this.submitTime = Instant.now();
+    }
+
+    boolean covers(String tableName) {
+        if (tableNames.isEmpty()) {
+            return true;
+        }
+        for (String name : tableNames) {
+            if (name.equalsIgnoreCase(tableName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isActive() {
+        return status == Status.QUEUED || status == Status.RUNNING;
+    }
+
+    void merged() {
+        mergedTriggers++;
+    }
+
+    void started() {
+        startTime = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void finished(Status status, String message) {
+        this.endTime = Instant.now();
+        this.message = message;
+        this.status = status;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public List<String> getTableNames() {
+        return tableNames;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getMergedTriggers() {
+        return mergedTriggers;
+    }
+
+    public Instant getSubmitTime() {
+        return submitTime;
+    }
+
+    public Instant getStartTime() {
+        return startTime;
+    }
+
+    public Instant getEndTime() {
+        return endTime;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.config.SyncProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// runs manual triggers off the request thread; a trigger for tables an active job already covers joins that job
+@Service
+public class SyncJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(SyncJobService.class);
+
+    private final DmSyncService dmSyncService;
+    private final int queueCapacity;
+    private final int retained;
+    private final ExecutorService jobExecutor;
+    private final Map<Long, SyncJob> jobs = new LinkedHashMap<>();
+    private long nextId = 1;
+    private int queuedCount;
+
+    public SyncJobService(DmSyncService dmSyncService, SyncProperties syncProperties) {
+        this.dmSyncService = dmSyncService;
+        SyncProperties.JobProperties properties = syncProperties.getJobs();
+        this.queueCapacity = Math.max(1, properties.getQueueCapacity());
+        this.retained = Math.max(1, properties.getRetained());
+        this.jobExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getConcurrency()), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "dm-sync-job-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    // an empty table list triggers every active table; a REJECTED job is returned when the queue is full
+    public synchronized SyncJob submit(Collection<String> tableNames) {
+        Set<String> requested = new LinkedHashSet<>();
+        if (tableNames != null) {
+            for (String tableName : tableNames) {
+                if (StringUtils.hasText(tableName)) {
+                    requested.add(tableName.trim().toLowerCase());
+                }
+            }
+        }
+        SyncJob covering = null;
+        if (requested.isEmpty()) {
+            for (SyncJob job : jobs.values()) {
+                if (job.isActive() && job.getTableNames().isEmpty()) {
+                    job.merged();
+                    covering = job;
+                    break;
+                }
+            }
+        } else {
+            for (Iterator<String> it = requested.iterator(); it.hasNext(); ) {
+                SyncJob job = activeJobCovering(it.next());
+                if (job != null) {
+                    job.merged();
+                    covering = covering == null ? job : covering;
+                    it.remove();
+                }
+            }
+        }
+        if (covering != null && requested.isEmpty()) {
+            log.debug("Trigger merged into sync job {}", covering.getId());
+            return covering;
+        }
+
+        SyncJob job = new SyncJob(nextId++, new ArrayList<>(requested), SyncJob.Status.QUEUED);
+        if (queuedCount >= queueCapacity) {
+            job.finished(SyncJob.Status.REJECTED, "Job queue is full (" + queuedCount + " jobs waiting)");
+            log.warn("Rejected sync trigger for {}: job queue is full", describe(job));
+            return job;
+        }
+        queuedCount++;
+        jobs.put(job.getId(), job);
+        evictFinishedJobs();
+        jobExecutor.execute(() -> run(job));
+        log.info("Queued sync job {} for {}", job.getId(), describe(job));
+        return job;
+    }
+
+    public synchronized Optional<SyncJob> find(long id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public synchronized List<SyncJob> findAll() {
+        List<SyncJob> result = new ArrayList<>(jobs.values());
+        Collections.reverse(result);
+        return result;
+    }
+
+    private SyncJob activeJobCovering(String tableName) {
+        for (SyncJob job : jobs.values()) {
+            if (job.isActive() && job.covers(tableName)) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private void run(SyncJob job) {
+        synchronized (this) {
+            queuedCount--;
+            job.started();
+        }
+        try {
+            List<String> skipped = job.getTableNames().isEmpty()
+                    ? dmSyncService.synchronizeAll()
+                    : dmSyncService.synchronizeTables(job.getTableNames());
+            if (skipped.isEmpty()) {
+                finish(job, SyncJob.Status.COMPLETED, null);
+                log.info("Sync job {} completed", job.getId());
+            } else {
+                // another pass held these tables; the trigger did not run them and may be repeated once it ends
+                finish(job, SyncJob.Status.INCOMPLETE, "Skipped tables already being synchronized here or "
+                        + "by another instance: " + skipped);
+                log.info("Sync job {} skipped tables {}", job.getId(), skipped);
+            }
+        } catch (RuntimeException e) {
+            finish(job, SyncJob.Status.FAILED, e.getMessage());
+            log.error("Sync job {} failed: {}", job.getId(), e.getMessage(), e);
+        }
+    }
+
+    // under the lock so a trigger never joins a job that has just ended
+    private synchronized void finish(SyncJob job, SyncJob.Status status, String message) {
+        job.finished(status, message);
+    }
+
+    private void evictFinishedJobs() {
+        Iterator<SyncJob> it = jobs.values().iterator();
+        while (jobs.size() > retained && it.hasNext()) {
+            if (!it.next().isActive()) {
+                it.remove();
+            }
+        }
+    }
+
+    private static String describe(SyncJob job) {
+        return job.getTableNames().isEmpty() ? "all tables" : "tables " + job.getTableNames();
+    }
+}
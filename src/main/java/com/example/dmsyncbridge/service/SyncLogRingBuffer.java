@@ -0,0 +1,89 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.entity.SyncLog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+class SyncLogRingBuffer {
+
+    private final AtomicReferenceArray<Slot> slots;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong producerSequence = new AtomicLong();
+    private final AtomicLong consumerSequence = new AtomicLong();
+
+    SyncLogRingBuffer(int requestedCapacity) {
+        int size = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    boolean tryPublish(SyncLog entry) {
+        while (true) {
+            long sequence = producerSequence.get();
+            if (sequence - consumerSequence.get() >= capacity) {
+                return false;
+            }
+            if (producerSequence.compareAndSet(sequence, sequence + 1)) {
+                slots.set(index(sequence), new Slot(sequence, entry));
+                return true;
+            }
+        }
+    }
+
+    // single consumer only: the background writer
+    int drainTo(List<SyncLog> target, int maxEntries) {
+        long next = consumerSequence.get();
+        int drained = 0;
+        while (drained < maxEntries) {
+            Slot slot = slots.get(index(next));
+            if (slot == null || slot.sequence != next) {
+                break;
+            }
+            target.add(slot.entry);
+            next++;
+            drained++;
+        }
+        consumerSequence.set(next);
+        return drained;
+    }
+
+    List<SyncLog> latest(int limit) {
+        long end = producerSequence.get();
+        long start = Math.max(0, end - capacity);
+        List<SyncLog> result = new ArrayList<>(Math.min(limit, capacity));
+        for (long sequence = end - 1; sequence >= start && result.size() < limit; sequence--) {
+            Slot slot = slots.get(index(sequence));
+            if (slot != null && slot.sequence == sequence) {
+                result.add(slot.entry);
+            }
+        }
+        return result;
+    }
+
+    int pending() {
+        return (int) (producerSequence.get() - consumerSequence.get());
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+
+    private static final class Slot {
+        private final long sequence;
+        private final SyncLog entry;
+
+        private Slot(long sequence, SyncLog entry) {
+            this.sequence = sequence;
+            this.entry = entry;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.dmsyncbridge.service;
 
+import com.example.dmsyncbridge.config.SyncProperties;
 import com.example.dmsyncbridge.entity.SyncLog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,24 +10,39 @@ import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 @Service
 public class SyncLogService {
 
     private static final Logger log = LoggerFactory.getLogger(SyncLogService.class);
 
+    private static final String INSERT_SQL = "INSERT INTO sync_log " +
+            "(source_db, target_db, table_name, operation_type, status, create_time, message) VALUES (?,?,?,?,?,?,?)";
+
     private final JdbcTemplate dbAJdbcTemplate;
-    private final List<SyncLog> inMemoryLogs = Collections.synchronizedList(new LinkedList<>());
+    private final SyncProperties.LogProperties properties;
+    private final SyncLogRingBuffer ringBuffer;
+    private final AtomicLong overflowCounter = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicBoolean writerStarted = new AtomicBoolean();
+    private volatile boolean running = true;
+    private volatile Thread writerThread;
 
-    public SyncLogService(@Qualifier("dbAJdbcTemplate") JdbcTemplate dbAJdbcTemplate) {
+    public SyncLogService(@Qualifier("dbAJdbcTemplate") JdbcTemplate dbAJdbcTemplate, SyncProperties syncProperties) {
         this.dbAJdbcTemplate = dbAJdbcTemplate;
+        this.properties = syncProperties.getLog();
+        this.ringBuffer = new SyncLogRingBuffer(properties.getCapacity());
     }
 
     @PostConstruct
@@ -50,18 +66,101 @@ public class SyncLogService {
                        String status, String message) {
         SyncLog entry = new SyncLog(null, sourceDb, targetDb, tableName, operationType, status,
                 LocalDateTime.now(), message);
-        inMemoryLogs.add(0, entry);
-        while (inMemoryLogs.size() > 500) {
-            inMemoryLogs.remove(inMemoryLogs.size() - 1);
+        ensureWriterStarted();
+        if (!ringBuffer.tryPublish(entry) && !handleOverflow(entry)) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        if (ringBuffer.pending() >= properties.getBatchSize()) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    private boolean handleOverflow(SyncLog entry) {
+        switch (properties.getOverflowPolicy()) {
+            case BLOCK:
+                while (running) {
+                    LockSupport.unpark(writerThread);
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    if (ringBuffer.tryPublish(entry)) {
+                        return true;
+                    }
+                }
+                return false;
+            case SAMPLE:
+                // keep every n-th entry and all failures while the writer catches up
+                if ("FAILED".equals(entry.getStatus())
+                        || overflowCounter.incrementAndGet() % Math.max(1, properties.getSampleRate()) == 0) {
+                    LockSupport.unpark(writerThread);
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    return ringBuffer.tryPublish(entry);
+                }
+                return false;
+            case DROP:
+            default:
+                return false;
+        }
+    }
+
+    private void ensureWriterStarted() {
+        if (writerStarted.get() || !writerStarted.compareAndSet(false, true)) {
+            return;
         }
+        Thread thread = new Thread(this::runWriter, "dm-sync-log-writer");
+        thread.setDaemon(true);
+        writerThread = thread;
+        thread.start();
+    }
+
+    private void runWriter() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, properties.getFlushInterval()));
+        List<SyncLog> batch = new ArrayList<>(batchSize);
+        while (true) {
+            batch.clear();
+            ringBuffer.drainTo(batch, batchSize);
+            if (!batch.isEmpty()) {
+                persist(batch);
+            }
+            if (batch.size() < batchSize) {
+                if (!running && ringBuffer.pending() == 0) {
+                    return;
+                }
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+    }
+
+    private void persist(List<SyncLog> batch) {
         try {
-            dbAJdbcTemplate.update(
-                    "INSERT INTO sync_log (source_db, target_db, table_name, operation_type, status, create_time, message) " +
-                            "VALUES (?,?,?,?,?,?,?)",
-                    sourceDb, targetDb, tableName, operationType, status,
-                    Timestamp.valueOf(entry.getCreateTime()), message);
+            List<Object[]> arguments = new ArrayList<>(batch.size());
+            for (SyncLog entry : batch) {
+                arguments.add(new Object[]{entry.getSourceDb(), entry.getTargetDb(), entry.getTableName(),
+                        entry.getOperationType(), entry.getStatus(), Timestamp.valueOf(entry.getCreateTime()),
+                        entry.getMessage()});
+            }
+            dbAJdbcTemplate.batchUpdate(INSERT_SQL, arguments);
         } catch (Exception e) {
-            log.warn("Failed to persist sync log entry: {}", e.getMessage());
+            log.warn("Failed to persist {} sync log entries: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        Thread thread = writerThread;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -74,8 +173,7 @@ public class SyncLogService {
                     new SyncLogRowMapper());
         } catch (Exception e) {
             log.warn("Falling back to in-memory logs because sync_log table is unavailable: {}", e.getMessage());
-            int end = Math.min(limit, inMemoryLogs.size());
-            return new LinkedList<>(inMemoryLogs.subList(0, end));
+            return ringBuffer.latest(limit);
         }
     }
 
@@ -0,0 +1,107 @@
+package com.example.dmsyncbridge.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// stage timers and row counters; rates such as rows per second are derived by the scraper from the counters
+class SyncMetrics {
+
+    static final String OUTCOME_SUCCESS = "success";
+    static final String OUTCOME_RETRY = "retry";
+    static final String OUTCOME_FAILED = "failed";
+    static final String OUTCOME_SUPERSEDED = "superseded";
+    static final String OUTCOME_HANDED_OVER = "handed_over";
+
+    private final MeterRegistry registry;
+    private final Map<List<String>, Timer> applyTimers = new ConcurrentHashMap<>();
+    private final Map<List<String>, Counter> appliedRows = new ConcurrentHashMap<>();
+    private final Map<List<String>, Counter> outcomes = new ConcurrentHashMap<>();
+
+    SyncMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    void recordFetch(String tableName, boolean sideA, long startNanos, long rows) {
+        String db = sideA ? "dbA" : "dbB";
+        Timer.builder("dm.sync.fetch")
+                .description("Time spent reading rows from one side")
+                .tag("table", tableName.toLowerCase())
+                .tag("db", db)
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("dm.sync.rows.read")
+                .description("Rows read for comparison")
+                .tag("table", tableName.toLowerCase())
+                .tag("db", db)
+                .register(registry)
+                .increment(rows);
+    }
+
+    // includes queuing the resulting operations
+    void recordDiff(String tableName, long startNanos, long keys) {
+        Timer.builder("dm.sync.diff")
+                .description("Time spent pairing and comparing rows")
+                .tag("table", tableName.toLowerCase())
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("dm.sync.keys.compared")
+                .description("Primary keys compared")
+                .tag("table", tableName.toLowerCase())
+                .register(registry)
+                .increment(keys);
+    }
+
+    void recordApply(SyncOperation operation, long startNanos, int rows) {
+        List<String> key = operationKey(operation, null);
+        applyTimers.computeIfAbsent(key, k -> Timer.builder("dm.sync.apply")
+                        .description("Time spent writing one batch of operations")
+                        .tag("table", k.get(0))
+                        .tag("target", k.get(1))
+                        .tag("operation", k.get(2))
+                        .register(registry))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        appliedRows.computeIfAbsent(key, k -> Counter.builder("dm.sync.rows.applied")
+                        .description("Rows sent to a target in batches or single statements")
+                        .tag("table", k.get(0))
+                        .tag("target", k.get(1))
+                        .tag("operation", k.get(2))
+                        .register(registry))
+                .increment(rows);
+    }
+
+    void recordOutcome(SyncOperation operation, String outcome) {
+        outcomes.computeIfAbsent(operationKey(operation, outcome), k -> Counter.builder("dm.sync.operations")
+                        .description("Operations by final or intermediate outcome")
+                        .tag("table", k.get(0))
+                        .tag("target", k.get(1))
+                        .tag("operation", k.get(2))
+                        .tag("outcome", k.get(3))
+                        .register(registry))
+                .increment();
+    }
+
+    // per-operation meters sit on the apply path, so they are built once per tag combination instead of per call
+    private static List<String> operationKey(SyncOperation operation, String outcome) {
+        return Arrays.asList(operation.getConfig().getTableName().toLowerCase(), operation.getTargetDb(),
+                operation.getOperationType().name(), outcome);
+    }
+
+    void registerQueue(String targetDb, OperationQueue queue, RetryScheduler retries) {
+        Gauge.builder("dm.sync.queue.depth", queue, OperationQueue::size)
+                .description("Operations waiting for a target")
+                .tag("target", targetDb)
+                .register(registry);
+        Gauge.builder("dm.sync.retry.depth", retries, RetryScheduler::size)
+                .description("Failed operations waiting for their backoff to expire")
+                .tag("target", targetDb)
+                .register(registry);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.entity.SyncConfig;
+
+import java.time.Instant;
+import java.util.BitSet;
+
+class SyncOperation {
+
+    private final String sourceDb;
+    private final String targetDb;
+    private final SyncConfig config;
+    private final SyncPlan plan;
+    private final OperationType operationType;
+    private final CompactRow row;
+    private final Object primaryKeyValue;
+    private int attempts;
+    private Instant nextRetryTime;
+    private long version;
+    private BitSet changedColumns;
+    private long queueOffset = -1;
+
+    SyncOperation(String sourceDb, String targetDb, SyncConfig config, SyncPlan plan, OperationType operationType,
+                  CompactRow row, Object primaryKeyValue) {
+        this.sourceDb = sourceDb;
+        this.targetDb = targetDb;
+        this.config = config;
+        this.plan = plan;
+        this.operationType = operationType;
+        this.row = row;
+        this.primaryKeyValue = primaryKeyValue;
+    }
+
+    public String getSourceDb() {
+        return sourceDb;
+    }
+
+    public String getTargetDb() {
+        return targetDb;
+    }
+
+    public SyncConfig getConfig() {
+        return config;
+    }
+
+    SyncPlan getPlan() {
+        return plan;
+    }
+
+    public OperationType getOperationType() {
+        return operationType;
+    }
+
+    public CompactRow getRow() {
+        return row;
+    }
+
+    public Object getPrimaryKeyValue() {
+        return primaryKeyValue;
+    }
+
+    int incrementAttempts() {
+        return ++attempts;
+    }
+
+    int getAttempts() {
+        return attempts;
+    }
+
+    void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public void setNextRetryTime(Instant nextRetryTime) {
+        this.nextRetryTime = nextRetryTime;
+    }
+
+    public Instant getNextRetryTime() {
+        return nextRetryTime;
+    }
+
+    // position in the target's OperationIndex; the operation log keeps it only for the run that wrote it,
+    // so 0 after a restart
+    long getVersion() {
+        return version;
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    // row columns an UPDATE has to write, null for the whole row; kept by the operation log like the version
+    BitSet getChangedColumns() {
+        return changedColumns;
+    }
+
+    void setChangedColumns(BitSet changedColumns) {
+        this.changedColumns = changedColumns;
+    }
+
+    // where the operation log read this operation from, -1 when it did not come from a log
+    long getQueueOffset() {
+        return queueOffset;
+    }
+
+    void setQueueOffset(long queueOffset) {
+        this.queueOffset = queueOffset;
+    }
+}
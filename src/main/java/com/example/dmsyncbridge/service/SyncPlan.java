@@ -0,0 +1,483 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.entity.SyncConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class SyncPlan {
+
+    private static final Logger log = LoggerFactory.getLogger(SyncPlan.class);
+
+    private final String tableName;
+    private final String primaryKey;
+    private final String lastUpdateColumn;
+    private final boolean watermarks;
+    private final SqlDialect dialect;
+    private final String signature;
+    private final String selectSql;
+    private final String orderedSelectSql;
+    private final String changesFromSql;
+    private final String changesAfterSql;
+    private final String firstPageSql;
+    private final String nextPageSql;
+    private final String keysSql;
+    private final List<String> compareColumns;
+    private final RowSchema schemaA;
+    private final RowSchema schemaB;
+    private final int keyIndexA;
+    private final int keyIndexB;
+    private final int updateIndexA;
+    private final int updateIndexB;
+    private final int[] compareIndexA;
+    private final int[] compareIndexB;
+    private final StatementTemplates templatesA;
+    private final StatementTemplates templatesB;
+
+    private SyncPlan(SyncConfig config, SqlDialect dialect, String selectSql, List<String> compareColumns,
+                     RowSchema schemaA, RowSchema schemaB) {
+        this.tableName = config.getTableName();
+        this.primaryKey = config.getPrimaryKey();
+        this.lastUpdateColumn = config.getLastUpdateColumn();
+        this.dialect = dialect;
+        this.signature = signatureOf(config);
+        this.selectSql = selectSql;
+        this.orderedSelectSql = selectSql + " ORDER BY " + primaryKey;
+        this.firstPageSql = selectSql + " ORDER BY " + primaryKey;
+        this.nextPageSql = selectSql + " WHERE " + primaryKey + " > ? ORDER BY " + primaryKey;
+        this.keysSql = "SELECT " + primaryKey + " FROM " + tableName + " ORDER BY " + primaryKey;
+        String changeOrder = " ORDER BY " + lastUpdateColumn + ", " + primaryKey;
+        this.changesFromSql = selectSql + " WHERE " + lastUpdateColumn + " >= ?" + changeOrder;
+        this.changesAfterSql = selectSql + " WHERE (" + lastUpdateColumn + " > ? OR (" + lastUpdateColumn + " = ? AND "
+                + primaryKey + " > ?))" + changeOrder;
+        this.compareColumns = Collections.unmodifiableList(compareColumns);
+        this.schemaA = schemaA;
+        this.schemaB = schemaB;
+        String keyColumn = primaryKey.toLowerCase();
+        String updateColumn = config.getLastUpdateColumn() == null ? null : config.getLastUpdateColumn().toLowerCase();
+        this.keyIndexA = indexOf(schemaA, keyColumn);
+        this.keyIndexB = indexOf(schemaB, keyColumn);
+        this.updateIndexA = indexOf(schemaA, updateColumn);
+        this.updateIndexB = indexOf(schemaB, updateColumn);
+        this.compareIndexA = new int[compareColumns.size()];
+        this.compareIndexB = new int[compareColumns.size()];
+        for (int i = 0; i < compareColumns.size(); i++) {
+            compareIndexA[i] = indexOf(schemaA, compareColumns.get(i));
+            compareIndexB[i] = indexOf(schemaB, compareColumns.get(i));
+        }
+        this.templatesA = schemaA == null ? null : new StatementTemplates(tableName, primaryKey, schemaA, dialect);
+        this.templatesB = schemaB == null ? null : new StatementTemplates(tableName, primaryKey, schemaB, dialect);
+        this.watermarks = lastUpdateColumn != null && isTimestamp(schemaA, updateIndexA) && isTimestamp(schemaB, updateIndexB);
+        if (lastUpdateColumn != null && schemaA != null && schemaB != null && !watermarks) {
+            log.warn("Column {} of table {} is not a date or timestamp on both sides; the table is compared in full",
+                    lastUpdateColumn, tableName);
+        }
+    }
+
+    // watermarks are bound and compared as timestamps, so the column must hold one on both sides
+    private static boolean isTimestamp(RowSchema schema, int index) {
+        if (schema == null || index < 0) {
+            return false;
+        }
+        int type = schema.jdbcType(index);
+        return type == Types.TIMESTAMP || type == Types.TIMESTAMP_WITH_TIMEZONE || type == Types.DATE;
+    }
+
+    static SyncPlan compile(SyncConfig config, SqlDialect dialect, JdbcTemplate dbAJdbcTemplate,
+                            JdbcTemplate dbBJdbcTemplate) {
+        List<String> selectColumns = resolveSelectColumns(config);
+        String selectSql = "SELECT " + (selectColumns.isEmpty() ? "*" : String.join(", ", selectColumns))
+                + " FROM " + config.getTableName();
+        RowSchema schemaA = describe(dbAJdbcTemplate, selectSql, config);
+        RowSchema schemaB = describe(dbBJdbcTemplate, selectSql, config);
+
+        Set<String> compare = new TreeSet<>();
+        for (String column : config.getIncludeColumns()) {
+            compare.add(column.toLowerCase());
+        }
+        if (compare.isEmpty() || compare.contains("*")) {
+            compare.clear();
+            if (schemaA != null) {
+                compare.addAll(schemaA.columnNames());
+            }
+            if (schemaB != null) {
+                compare.addAll(schemaB.columnNames());
+            }
+        }
+        compare.remove("*");
+        compare.remove(config.getPrimaryKey().toLowerCase());
+        if (config.getLastUpdateColumn() != null) {
+            compare.remove(config.getLastUpdateColumn().toLowerCase());
+        }
+        return new SyncPlan(config, dialect, selectSql, new ArrayList<>(compare), schemaA, schemaB);
+    }
+
+    // empty for wildcard configs, which select * so that added or dropped columns show up in the metadata
+    private static List<String> resolveSelectColumns(SyncConfig config) {
+        Set<String> columns = new TreeSet<>();
+        for (String column : config.getIncludeColumns()) {
+            columns.add(column.toLowerCase());
+        }
+        if (columns.isEmpty() || columns.contains("*")) {
+            return Collections.emptyList();
+        }
+        columns.add(config.getPrimaryKey().toLowerCase());
+        if (config.getLastUpdateColumn() != null) {
+            columns.add(config.getLastUpdateColumn().toLowerCase());
+        }
+        return new ArrayList<>(columns);
+    }
+
+    private static RowSchema describe(JdbcTemplate jdbcTemplate, String selectSql, SyncConfig config) {
+        try {
+            return jdbcTemplate.query(selectSql + " WHERE 1 = 0",
+                    (ResultSetExtractor<RowSchema>) rs -> RowSchema.of(rs.getMetaData()));
+        } catch (Exception e) {
+            log.warn("Unable to describe table {}: {}", config.getTableName(), e.getMessage());
+            return null;
+        }
+    }
+
+    static String signatureOf(SyncConfig config) {
+        return config.getTableName().toLowerCase() + '|' + config.getPrimaryKey().toLowerCase() + '|'
+                + config.getIncludeColumns() + '|' + config.getLastUpdateColumn();
+    }
+
+    private static int indexOf(RowSchema schema, String column) {
+        return schema == null || column == null ? -1 : schema.indexOf(column);
+    }
+
+    boolean isComplete() {
+        return schemaA != null && schemaB != null;
+    }
+
+    boolean matches(SyncConfig config) {
+        return signature.equals(signatureOf(config));
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    String getPrimaryKey() {
+        return primaryKey;
+    }
+
+    String orderedSelectSql(String condition) {
+        if (condition == null) {
+            return orderedSelectSql;
+        }
+        return selectSql + " WHERE " + condition + " ORDER BY " + primaryKey;
+    }
+
+    String pageSql(Object afterKey, int pageSize) {
+        return (afterKey == null ? firstPageSql : nextPageSql) + fetchFirst(pageSize);
+    }
+
+    // primary keys only, for the delete check
+    String keysSql() {
+        return keysSql;
+    }
+
+    // rows past the watermark in (lastUpdateColumn, primaryKey) order
+    String changesSql(SyncWatermark watermark, int pageSize) {
+        return (watermark.getLastKey() == null ? changesFromSql : changesAfterSql) + fetchFirst(pageSize);
+    }
+
+    private static String fetchFirst(int rows) {
+        return " FETCH FIRST " + rows + " ROWS ONLY";
+    }
+
+    List<Object> changesParams(SyncWatermark watermark) {
+        if (watermark.getLastKey() == null) {
+            return Collections.singletonList(watermark.getLastUpdate());
+        }
+        return Arrays.asList(watermark.getLastUpdate(), watermark.getLastUpdate(), watermark.getLastKey());
+    }
+
+    String lookupSql(int keyCount) {
+        return selectSql + " WHERE " + primaryKey + " IN (" + String.join(", ", Collections.nCopies(keyCount, "?")) + ")";
+    }
+
+    boolean supportsWatermarks() {
+        return watermarks;
+    }
+
+    String getSignature() {
+        return signature;
+    }
+
+    Object keyOf(CompactRow row) {
+        int index = row.schema() == schemaA ? keyIndexA : row.schema() == schemaB ? keyIndexB : -1;
+        return index < 0 ? null : row.get(index);
+    }
+
+    List<String> getCompareColumns() {
+        return compareColumns;
+    }
+
+    RowSchema getSchemaA() {
+        return schemaA;
+    }
+
+    RowSchema getSchemaB() {
+        return schemaB;
+    }
+
+    boolean hasDifferences(CompactRow rowA, CompactRow rowB) {
+        for (int i = 0; i < compareIndexA.length; i++) {
+            Object valueA = compareIndexA[i] < 0 ? null : rowA.get(compareIndexA[i]);
+            Object valueB = compareIndexB[i] < 0 ? null : rowB.get(compareIndexB[i]);
+            if (!valuesEqual(valueA, valueB)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // hash of the compared columns; rows hasDifferences finds equal share it whichever side they were read from.
+    // 0 for a row of neither schema
+    long fingerprint(CompactRow row) {
+        int[] indexes = row.schema() == schemaA ? compareIndexA : row.schema() == schemaB ? compareIndexB : null;
+        if (indexes == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int index : indexes) {
+            Object value = index < 0 ? null : row.get(index);
+            int valueHash;
+            if (value == null) {
+                valueHash = 0x9e3779b9;
+            } else if (value instanceof Number) {
+                valueHash = FingerprintStore.numberHash((Number) value);
+            } else if (value instanceof byte[]) {
+                valueHash = Arrays.hashCode((byte[]) value);
+            } else {
+                valueHash = value.hashCode();
+            }
+            hash = (hash ^ valueHash) * 0x100000001b3L;
+        }
+        hash = FingerprintStore.mix(hash);
+        return hash == 0 ? 1 : hash;
+    }
+
+    // columns of the source row an update has to write: the compared columns that differ plus lastUpdateColumn
+    BitSet changedColumns(CompactRow rowA, CompactRow rowB, boolean fromA) {
+        int[] sourceIndexes = fromA ? compareIndexA : compareIndexB;
+        BitSet changed = new BitSet();
+        for (int i = 0; i < compareIndexA.length; i++) {
+            Object valueA = compareIndexA[i] < 0 ? null : rowA.get(compareIndexA[i]);
+            Object valueB = compareIndexB[i] < 0 ? null : rowB.get(compareIndexB[i]);
+            if (sourceIndexes[i] >= 0 && !valuesEqual(valueA, valueB)) {
+                changed.set(sourceIndexes[i]);
+            }
+        }
+        int updateIndex = fromA ? updateIndexA : updateIndexB;
+        if (updateIndex >= 0) {
+            changed.set(updateIndex);
+        }
+        return changed;
+    }
+
+    // like changedColumns, for rows read under either schema; empty when the compared columns are equal
+    BitSet differingColumns(CompactRow source, CompactRow target) {
+        int[] sourceIndexes = source.schema() == schemaA ? compareIndexA : compareIndexB;
+        int[] targetIndexes = target.schema() == schemaA ? compareIndexA : compareIndexB;
+        BitSet changed = new BitSet();
+        for (int i = 0; i < sourceIndexes.length; i++) {
+            Object sourceValue = sourceIndexes[i] < 0 ? null : source.get(sourceIndexes[i]);
+            Object targetValue = targetIndexes[i] < 0 ? null : target.get(targetIndexes[i]);
+            if (sourceIndexes[i] >= 0 && !valuesEqual(sourceValue, targetValue)) {
+                changed.set(sourceIndexes[i]);
+            }
+        }
+        int updateIndex = source.schema() == schemaA ? updateIndexA : updateIndexB;
+        if (!changed.isEmpty() && updateIndex >= 0) {
+            changed.set(updateIndex);
+        }
+        return changed;
+    }
+
+    Instant updateTimestamp(CompactRow row) {
+        int index = row.schema() == schemaA ? updateIndexA : row.schema() == schemaB ? updateIndexB : -1;
+        if (index < 0) {
+            return null;
+        }
+        Object value = row.get(index);
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toInstant();
+        }
+        if (value instanceof java.util.Date) {
+            // java.sql.Date rejects toInstant()
+            return Instant.ofEpochMilli(((java.util.Date) value).getTime());
+        }
+        if (value instanceof LocalDateTime) {
+            return Timestamp.valueOf((LocalDateTime) value).toInstant();
+        }
+        if (value instanceof OffsetDateTime) {
+            return ((OffsetDateTime) value).toInstant();
+        }
+        return null;
+    }
+
+    // maps an equivalent schema, e.g. one decoded from the operation log, onto the plan's own instance
+    RowSchema canonicalSchema(RowSchema schema) {
+        if (schema.sameLayout(schemaA)) {
+            return schemaA;
+        }
+        if (schema.sameLayout(schemaB)) {
+            return schemaB;
+        }
+        return schema;
+    }
+
+    StatementTemplates templatesFor(RowSchema schema) {
+        if (schema == schemaA && templatesA != null) {
+            return templatesA;
+        }
+        if (schema == schemaB && templatesB != null) {
+            return templatesB;
+        }
+        return new StatementTemplates(tableName, primaryKey, schema, dialect);
+    }
+
+    private static boolean valuesEqual(Object valueA, Object valueB) {
+        if (valueA instanceof Number && valueB instanceof Number) {
+            return MergeReconciler.compareKeys(valueA, valueB) == 0;
+        }
+        return Objects.equals(valueA, valueB);
+    }
+
+    static final class StatementTemplates {
+        // column sets seen in practice are few; past this many, updates fall back to writing the whole row
+        private static final int MAX_DELTA_STATEMENTS = 64;
+
+        private final String tableName;
+        private final String primaryKey;
+        private final List<String> columns;
+        private final Map<BitSet, String> deltaUpdateSql = new ConcurrentHashMap<>();
+        private final String insertSql;
+        private final String updateSql;
+        private final String deleteSql;
+        private final String upsertSql;
+        private final int[] updateIndexes;
+
+        private StatementTemplates(String tableName, String primaryKey, RowSchema schema, SqlDialect dialect) {
+            List<String> columns = schema.columnNames();
+            this.tableName = tableName;
+            this.primaryKey = primaryKey;
+            this.columns = columns;
+            List<String> assignments = new ArrayList<>();
+            List<Integer> indexes = new ArrayList<>();
+            for (int i = 0; i < columns.size(); i++) {
+                if (!columns.get(i).equalsIgnoreCase(primaryKey)) {
+                    assignments.add(columns.get(i) + " = ?");
+                    indexes.add(i);
+                }
+            }
+            this.insertSql = "INSERT INTO " + tableName + " (" + String.join(", ", columns) + ") VALUES ("
+                    + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+            this.updateSql = "UPDATE " + tableName + " SET " + String.join(", ", assignments)
+                    + " WHERE " + primaryKey + " = ?";
+            this.deleteSql = "DELETE FROM " + tableName + " WHERE " + primaryKey + " = ?";
+            this.upsertSql = dialect.upsertSql(tableName, primaryKey, columns);
+            this.updateIndexes = indexes.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        boolean upserts() {
+            return upsertSql != null;
+        }
+
+        // an UPDATE writing only the given columns; null when they cover the whole row or too many sets are cached
+        String updateSql(BitSet changed) {
+            String sql = deltaUpdateSql.get(changed);
+            if (sql != null) {
+                return sql;
+            }
+            List<String> assignments = new ArrayList<>();
+            for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+                if (!columns.get(i).equalsIgnoreCase(primaryKey)) {
+                    assignments.add(columns.get(i) + " = ?");
+                }
+            }
+            if (assignments.isEmpty() || assignments.size() == updateIndexes.length
+                    || deltaUpdateSql.size() >= MAX_DELTA_STATEMENTS) {
+                return null;
+            }
+            sql = "UPDATE " + tableName + " SET " + String.join(", ", assignments) + " WHERE " + primaryKey + " = ?";
+            deltaUpdateSql.putIfAbsent((BitSet) changed.clone(), sql);
+            return sql;
+        }
+
+        // which of the given keys exist on the target, for batched updates whose counts the driver withheld
+        String existingKeysSql(int keyCount) {
+            return "SELECT " + primaryKey + " FROM " + tableName + " WHERE " + primaryKey + " IN ("
+                    + String.join(", ", Collections.nCopies(keyCount, "?")) + ")";
+        }
+
+        Object[] updateArguments(BitSet changed, CompactRow row, Object primaryKeyValue) {
+            List<Object> values = new ArrayList<>(changed.cardinality() + 1);
+            for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+                if (!columns.get(i).equalsIgnoreCase(primaryKey)) {
+                    values.add(row.get(i));
+                }
+            }
+            values.add(primaryKeyValue);
+            return values.toArray();
+        }
+
+        String sql(OperationType operationType) {
+            if (upsertSql != null && operationType != OperationType.DELETE) {
+                return upsertSql;
+            }
+            switch (operationType) {
+                case INSERT:
+                    return insertSql;
+                case UPDATE:
+                    return updateSql;
+                default:
+                    return deleteSql;
+            }
+        }
+
+        Object[] arguments(OperationType operationType, CompactRow row, Object primaryKeyValue) {
+            // an upsert binds the full row like an insert
+            OperationType layout = upsertSql != null && operationType == OperationType.UPDATE
+                    ? OperationType.INSERT : operationType;
+            switch (layout) {
+                case INSERT:
+                    Object[] values = new Object[row.size()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = row.get(i);
+                    }
+                    return values;
+                case UPDATE:
+                    Object[] assignments = new Object[updateIndexes.length + 1];
+                    for (int i = 0; i < updateIndexes.length; i++) {
+                        assignments[i] = row.get(updateIndexes[i]);
+                    }
+                    assignments[updateIndexes.length] = primaryKeyValue;
+                    return assignments;
+                default:
+                    return new Object[]{primaryKeyValue};
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.entity.SyncConfig;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+class SyncPlanCache {
+
+    private final JdbcTemplate dbAJdbcTemplate;
+    private final JdbcTemplate dbBJdbcTemplate;
+    private final SqlDialect dialect;
+    private final Map<String, SyncPlan> plans = new ConcurrentHashMap<>();
+
+    SyncPlanCache(JdbcTemplate dbAJdbcTemplate, JdbcTemplate dbBJdbcTemplate, SqlDialect dialect) {
+        this.dbAJdbcTemplate = dbAJdbcTemplate;
+        this.dbBJdbcTemplate = dbBJdbcTemplate;
+        this.dialect = dialect;
+    }
+
+    SyncPlan get(SyncConfig config) {
+        String key = config.getTableName().toLowerCase();
+        SyncPlan plan = plans.get(key);
+        if (plan != null && plan.matches(config) && plan.isComplete()) {
+            return plan;
+        }
+        plan = SyncPlan.compile(config, dialect, dbAJdbcTemplate, dbBJdbcTemplate);
+        plans.put(key, plan);
+        return plan;
+    }
+
+    void invalidate(String tableName) {
+        plans.remove(tableName.toLowerCase());
+    }
+
+    void retain(Collection<SyncConfig> configs) {
+        Set<String> keys = new HashSet<>();
+        for (SyncConfig config : configs) {
+            keys.add(config.getTableName().toLowerCase());
+        }
+        plans.keySet().retainAll(keys);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.dmsyncbridge.service;
+
+import java.time.Instant;
+
+public class SyncProgress {
+
+    private final String tableName;
+    private final String mode;
+    private final String resumedFromKey;
+    private final Instant startTime;
+    private volatile long pagesCompleted;
+    private volatile long keysInspected;
+    private volatile String lastKey;
+    private volatile Instant updateTime;
+    private volatile boolean completed;
+
+    SyncProgress(String tableName, String mode, String resumedFromKey, long keysInspected) {
+        this.tableName = tableName;
+        this.mode = mode;
+        this.resumedFromKey = resumedFromKey;
+        this.keysInspected = keysInspected;
+        this.startTime = Instant.now();
+        this.updateTime = startTime;
+    }
+
+    void pageCompleted(long keys, Object lastKey) {
+        this.pagesCompleted++;
+        this.keysInspected += keys;
+        this.lastKey = lastKey == null ? null : lastKey.toString();
+        this.updateTime = Instant.now();
+    }
+
+    void complete() {
+        this.completed = true;
+        this.updateTime = Instant.now();
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public String getResumedFromKey() {
+        return resumedFromKey;
+    }
+
+    public Instant getStartTime() {
+        return startTime;
+    }
+
+    public long getPagesCompleted() {
+        return pagesCompleted;
+    }
+
+    public long getKeysInspected() {
+        return keysInspected;
+    }
+
+    public String getLastKey() {
+        return lastKey;
+    }
+
+    public Instant getUpdateTime() {
+        return updateTime;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.dmsyncbridge.service;
+
+import java.sql.Timestamp;
+
+final class SyncWatermark {
+
+    private final Timestamp lastUpdate;
+    private final Object lastKey;
+
+    // a null key means no row at lastUpdate has been read yet
+    SyncWatermark(Timestamp lastUpdate, Object lastKey) {
+        this.lastUpdate = lastUpdate;
+        this.lastKey = lastKey;
+    }
+
+    static SyncWatermark after(Timestamp lastUpdate, Object key) {
+        return new SyncWatermark(lastUpdate, key);
+    }
+
+    Timestamp getLastUpdate() {
+        return lastUpdate;
+    }
+
+    Object getLastKey() {
+        return lastKey;
+    }
+
+    @Override
+    public String toString() {
+        return lastKey == null ? ">= " + lastUpdate : "> (" + lastUpdate + ", " + lastKey + ")";
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.dmsyncbridge.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class SyncWatermarkStore {
+
+    private static final Logger log = LoggerFactory.getLogger(SyncWatermarkStore.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicBoolean tableEnsured = new AtomicBoolean();
+
+    SyncWatermarkStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // returns null when the table has no watermark for this database or it was taken under another config
+    SyncWatermark find(String tableName, String db, String signature) {
+        ensureTableExists();
+        List<SyncWatermark> found = jdbcTemplate.query(
+                "SELECT last_update, last_key, last_key_type FROM sync_watermark "
+                        + "WHERE table_name = ? AND db_name = ? AND config_signature = ?",
+                (rs, rowNum) -> new SyncWatermark(rs.getTimestamp(1), parseKey(rs.getString(2), rs.getInt(3))),
+                tableName.toLowerCase(), db, signature);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    void save(String tableName, String db, String signature, SyncWatermark watermark) {
+        ensureTableExists();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Object key = watermark.getLastKey();
+        int updated = jdbcTemplate.update("UPDATE sync_watermark SET config_signature = ?, last_update = ?, last_key = ?, "
+                        + "last_key_type = ?, update_time = ? WHERE table_name = ? AND db_name = ?",
+                signature, watermark.getLastUpdate(), keyText(key), keyType(key), now, tableName.toLowerCase(), db);
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO sync_watermark (table_name, db_name, config_signature, last_update, last_key, "
+                            + "last_key_type, update_time) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    tableName.toLowerCase(), db, signature, watermark.getLastUpdate(), keyText(key), keyType(key), now);
+        }
+    }
+
+    ScanCheckpoint findCheckpoint(String tableName, String signature) {
+        ensureTableExists();
+        List<ScanCheckpoint> found = jdbcTemplate.query(
+                "SELECT last_key, last_key_type, cutoff_a, cutoff_b, keys_inspected FROM sync_scan_checkpoint "
+                        + "WHERE table_name = ? AND config_signature = ?",
+                (rs, rowNum) -> new ScanCheckpoint(parseKey(rs.getString(1), rs.getInt(2)), rs.getTimestamp(3),
+                        rs.getTimestamp(4), rs.getLong(5)),
+                tableName.toLowerCase(), signature);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    void saveCheckpoint(String tableName, String signature, ScanCheckpoint checkpoint) {
+        ensureTableExists();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Object key = checkpoint.getLastKey();
+        int updated = jdbcTemplate.update("UPDATE sync_scan_checkpoint SET config_signature = ?, last_key = ?, "
+                        + "last_key_type = ?, cutoff_a = ?, cutoff_b = ?, keys_inspected = ?, update_time = ? "
+                        + "WHERE table_name = ?",
+                signature, keyText(key), keyType(key), checkpoint.getCutoffA(), checkpoint.getCutoffB(),
+                checkpoint.getKeysInspected(), now, tableName.toLowerCase());
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO sync_scan_checkpoint (table_name, config_signature, last_key, last_key_type, "
+                            + "cutoff_a, cutoff_b, keys_inspected, update_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                    tableName.toLowerCase(), signature, keyText(key), keyType(key), checkpoint.getCutoffA(),
+                    checkpoint.getCutoffB(), checkpoint.getKeysInspected(), now);
+        }
+    }
+
+    void clearCheckpoint(String tableName) {
+        ensureTableExists();
+        jdbcTemplate.update("DELETE FROM sync_scan_checkpoint WHERE table_name = ?", tableName.toLowerCase());
+    }
+
+    // the last key up to which the multi-way merge with the other nodes was applied
+    Object findNodeCheckpoint(String tableName, String signature) {
+        ensureTableExists();
+        List<Object> found = jdbcTemplate.query(
+                "SELECT last_key, last_key_type FROM sync_node_checkpoint WHERE table_name = ? AND config_signature = ?",
+                (rs, rowNum) -> parseKey(rs.getString(1), rs.getInt(2)), tableName.toLowerCase(), signature);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    void saveNodeCheckpoint(String tableName, String signature, Object key) {
+        ensureTableExists();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int updated = jdbcTemplate.update("UPDATE sync_node_checkpoint SET config_signature = ?, last_key = ?, "
+                        + "last_key_type = ?, update_time = ? WHERE table_name = ?",
+                signature, keyText(key), keyType(key), now, tableName.toLowerCase());
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO sync_node_checkpoint (table_name, config_signature, last_key, last_key_type, "
+                            + "update_time) VALUES (?, ?, ?, ?, ?)",
+                    tableName.toLowerCase(), signature, keyText(key), keyType(key), now);
+        }
+    }
+
+    void clearNodeCheckpoint(String tableName) {
+        ensureTableExists();
+        jdbcTemplate.update("DELETE FROM sync_node_checkpoint WHERE table_name = ?", tableName.toLowerCase());
+    }
+
+    // forgets which rows of the table are known to be in sync, so its next pass compares it in full
+    void reset(String tableName) {
+        ensureTableExists();
+        jdbcTemplate.update("DELETE FROM sync_watermark WHERE table_name = ?", tableName.toLowerCase());
+        jdbcTemplate.update("DELETE FROM sync_capture_state WHERE table_name = ?", tableName.toLowerCase());
+    }
+
+    // a table is captured once a full comparison finished while its triggers were already recording
+    boolean isCaptureReady(String tableName, String signature) {
+        ensureTableExists();
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sync_capture_state WHERE table_name = ? AND config_signature = ?",
+                Integer.class, tableName.toLowerCase(), signature);
+        return count != null && count > 0;
+    }
+
+    void markCaptureReady(String tableName, String signature) {
+        ensureTableExists();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int updated = jdbcTemplate.update("UPDATE sync_capture_state SET config_signature = ?, ready_time = ? "
+                + "WHERE table_name = ?", signature, now, tableName.toLowerCase());
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO sync_capture_state (table_name, config_signature, ready_time) "
+                    + "VALUES (?, ?, ?)", tableName.toLowerCase(), signature, now);
+        }
+    }
+
+    // keys are stored as text with their JDBC type, so a resumed scan binds and compares them as the driver read them
+    private static int keyType(Object key) {
+        if (key instanceof Integer) {
+            return Types.INTEGER;
+        }
+        if (key instanceof Long) {
+            return Types.BIGINT;
+        }
+        if (key instanceof Short) {
+            return Types.SMALLINT;
+        }
+        if (key instanceof Byte) {
+            return Types.TINYINT;
+        }
+        if (key instanceof BigDecimal || key instanceof BigInteger) {
+            return Types.DECIMAL;
+        }
+        if (key instanceof Timestamp) {
+            return Types.TIMESTAMP;
+        }
+        if (key instanceof java.sql.Date) {
+            return Types.DATE;
+        }
+        return Types.VARCHAR;
+    }
+
+    private static String keyText(Object key) {
+        if (key instanceof BigDecimal) {
+            return ((BigDecimal) key).toPlainString();
+        }
+        return key == null ? null : key.toString();
+    }
+
+    private static Object parseKey(String text, int jdbcType) {
+        if (text == null) {
+            return null;
+        }
+        switch (jdbcType) {
+            case Types.INTEGER:
+                return Integer.valueOf(text);
+            case Types.BIGINT:
+                return Long.valueOf(text);
+            case Types.SMALLINT:
+                return Short.valueOf(text);
+            case Types.TINYINT:
+                return Byte.valueOf(text);
+            case Types.DECIMAL:
+                return new BigDecimal(text);
+            case Types.TIMESTAMP:
+                return Timestamp.valueOf(text);
+            case Types.DATE:
+                return java.sql.Date.valueOf(text);
+            default:
+                return text;
+        }
+    }
+
+    private void ensureTableExists() {
+        if (tableEnsured.get()) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS sync_watermark (" +
+                    "table_name VARCHAR(128) NOT NULL, " +
+                    "db_name VARCHAR(16) NOT NULL, " +
+                    "config_signature VARCHAR(4000), " +
+                    "last_update TIMESTAMP, " +
+                    "last_key VARCHAR(256), " +
+                    "last_key_type INT, " +
+                    "update_time TIMESTAMP, " +
+                    "PRIMARY KEY (table_name, db_name))");
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS sync_scan_checkpoint (" +
+                    "table_name VARCHAR(128) PRIMARY KEY, " +
+                    "config_signature VARCHAR(4000), " +
+                    "last_key VARCHAR(256), " +
+                    "last_key_type INT, " +
+                    "cutoff_a TIMESTAMP, " +
+                    "cutoff_b TIMESTAMP, " +
+                    "keys_inspected BIGINT, " +
+                    "update_time TIMESTAMP)");
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS sync_node_checkpoint (" +
+                    "table_name VARCHAR(128) PRIMARY KEY, " +
+                    "config_signature VARCHAR(4000), " +
+                    "last_key VARCHAR(256), " +
+                    "last_key_type INT, " +
+                    "update_time TIMESTAMP)");
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS sync_capture_state (" +
+                    "table_name VARCHAR(128) PRIMARY KEY, " +
+                    "config_signature VARCHAR(4000), " +
+                    "ready_time TIMESTAMP)");
+            tableEnsured.set(true);
+        } catch (Exception e) {
+            log.warn("Unable to ensure sync_watermark tables exist: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.entity.SyncConfig;
+
+// adaptive cadence of one table: a pass that found changes halves the interval, an idle pass doubles it
+class TableSchedule {
+
+    private final SyncConfig config;
+    private final long minInterval;
+    private final long maxInterval;
+    private long interval;
+    private long nextRunMillis;
+    private boolean running;
+
+    TableSchedule(SyncConfig config, long interval, long minInterval, long maxInterval, long nowMillis) {
+        this.config = config;
+        this.minInterval = Math.max(1, minInterval);
+        this.maxInterval = Math.max(this.minInterval, maxInterval);
+        this.interval = clamp(interval);
+        this.nextRunMillis = nowMillis;
+    }
+
+    SyncConfig getConfig() {
+        return config;
+    }
+
+    int getPriority() {
+        return config.getPriority() == null ? 0 : config.getPriority();
+    }
+
+    synchronized long getInterval() {
+        return interval;
+    }
+
+    synchronized long getNextRunMillis() {
+        return nextRunMillis;
+    }
+
+    synchronized boolean isDue(long nowMillis) {
+        return !running && nowMillis >= nextRunMillis;
+    }
+
+    synchronized void start() {
+        running = true;
+    }
+
+    // changes is the number of operations the pass queued, or negative when it failed or was skipped
+    synchronized void finish(long changes, long nowMillis) {
+        if (changes > 0) {
+            interval = clamp(interval / 2);
+        } else if (changes == 0) {
+            interval = clamp(interval * 2);
+        }
+        nextRunMillis = nowMillis + interval;
+        running = false;
+    }
+
+    private long clamp(long value) {
+        return Math.min(maxInterval, Math.max(minInterval, value));
+    }
+}
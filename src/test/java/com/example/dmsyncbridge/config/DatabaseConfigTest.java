@@ -0,0 +1,67 @@
+package com.example.dmsyncbridge.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DatabaseConfigTest {
+
+    @Test
+    void createsPoolWithPerDatabaseSettings() {
+        DatabaseConfig.DbAProperties properties = new DatabaseConfig.DbAProperties();
+        properties.setUrl("jdbc:h2:mem:pool_settings;DB_CLOSE_DELAY=-1");
+        properties.setUsername("sa");
+        properties.setPassword("");
+        properties.setDriverClassName("org.h2.Driver");
+        properties.setFetchSize(250);
+        properties.getPool().setMinSize(1);
+        properties.getPool().setMaxSize(4);
+        properties.getPool().setValidationQuery("SELECT 1");
+        properties.getPool().setLeakDetectionThreshold(5000);
+
+        DatabaseConfig config = new DatabaseConfig();
+        DataSource dataSource = config.dbADataSource(properties);
+        try {
+            assertThat(dataSource).isInstanceOf(HikariDataSource.class);
+            HikariDataSource hikari = (HikariDataSource) dataSource;
+            assertThat(hikari.getPoolName()).isEqualTo("dbA");
+            assertThat(hikari.getMinimumIdle()).isEqualTo(1);
+            assertThat(hikari.getMaximumPoolSize()).isEqualTo(4);
+            assertThat(hikari.getConnectionTestQuery()).isEqualTo("SELECT 1");
+            assertThat(hikari.getLeakDetectionThreshold()).isEqualTo(5000);
+
+            JdbcTemplate jdbcTemplate = config.dbAJdbcTemplate(dataSource, properties);
+            assertThat(jdbcTemplate.getFetchSize()).isEqualTo(250);
+            assertThat(jdbcTemplate.queryForObject("SELECT 1", Integer.class)).isEqualTo(1);
+        } finally {
+            ((HikariDataSource) dataSource).close();
+        }
+    }
+
+    @Test
+    void createsOnePoolPerNamedNode() throws Exception {
+        DatabaseConfig.NodesProperties properties = new DatabaseConfig.NodesProperties();
+        for (String name : new String[]{"siteC", "siteD"}) {
+            DatabaseConfig.NodeProperties node = new DatabaseConfig.NodeProperties();
+            node.setUrl("jdbc:h2:mem:node_" + name + ";DB_CLOSE_DELAY=-1");
+            node.setUsername("sa");
+            node.setPassword("");
+            node.setDriverClassName("org.h2.Driver");
+            node.setFetchSize(100);
+            node.getPool().setMinSize(1);
+            properties.getNodes().put(name, node);
+        }
+
+        try (SyncNodes nodes = new DatabaseConfig().syncNodes(properties)) {
+            assertThat(nodes.getTemplates()).containsOnlyKeys("siteC", "siteD");
+            JdbcTemplate siteD = nodes.getTemplates().get("siteD");
+            assertThat(((HikariDataSource) siteD.getDataSource()).getPoolName()).isEqualTo("siteD");
+            assertThat(siteD.getFetchSize()).isEqualTo(100);
+            assertThat(siteD.queryForObject("SELECT 1", Integer.class)).isEqualTo(1);
+        }
+    }
+}
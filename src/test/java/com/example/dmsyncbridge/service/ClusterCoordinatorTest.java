@@ -0,0 +1,104 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.config.SyncProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClusterCoordinatorTest {
+
+    private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(database);
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void spreadsTablesOverLiveMembersAndTakesOverFromADeadOne() throws InterruptedException {
+        ClusterCoordinator first = coordinator("node-1", 1000);
+        ClusterCoordinator second = coordinator("node-2", 1000);
+        first.heartbeat(Collections.emptySet());
+        second.heartbeat(Collections.emptySet());
+        first.heartbeat(Collections.emptySet());
+        assertThat(first.getMembers()).containsExactly("node-1", "node-2");
+
+        int ownedByFirst = 0;
+        String ofSecond = null;
+        for (int i = 0; i < 40; i++) {
+            String table = "table_" + i;
+            assertThat(first.owns(table)).isNotEqualTo(second.owns(table));
+            if (first.owns(table)) {
+                ownedByFirst++;
+                assertThat(first.acquire(table)).isTrue();
+            } else {
+                ofSecond = table;
+                assertThat(second.acquire(table)).isTrue();
+            }
+        }
+        assertThat(ownedByFirst).isBetween(5, 35);
+
+        // node-2 stops heartbeating; once its heartbeat and leases expire node-1 takes every table
+        Thread.sleep(1200);
+        assertThat(second.holdsLease(ofSecond)).isFalse();
+        first.heartbeat(Collections.emptySet());
+        assertThat(first.getMembers()).containsExactly("node-1");
+        assertThat(first.owns(ofSecond)).isTrue();
+        assertThat(first.acquire(ofSecond)).isTrue();
+    }
+
+    @Test
+    void busyTablesStayWithTheirOwnerUntilThePassFinishes() {
+        ClusterCoordinator first = coordinator("node-1", 60000);
+        first.heartbeat(Collections.emptySet());
+        Set<String> tables = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            tables.add("table_" + i);
+            assertThat(first.acquire("table_" + i)).isTrue();
+        }
+
+        ClusterCoordinator second = coordinator("node-2", 60000);
+        second.heartbeat(Collections.emptySet());
+        first.heartbeat(tables);
+        List<String> moved = new ArrayList<>();
+        for (String table : tables) {
+            if (second.owns(table)) {
+                moved.add(table);
+                assertThat(second.acquire(table)).isFalse();
+                assertThat(first.ownedByOther(table)).isTrue();
+                assertThat(first.holdsLease(table)).isTrue();
+            }
+        }
+        assertThat(moved).isNotEmpty();
+
+        first.heartbeat(Collections.emptySet());
+        for (String table : moved) {
+            assertThat(first.holdsLease(table)).isFalse();
+            assertThat(second.acquire(table)).isTrue();
+            assertThat(second.holdsLease(table)).isTrue();
+        }
+    }
+
+    private ClusterCoordinator coordinator(String instanceId, long leaseTimeout) {
+        SyncProperties.ClusterProperties properties = new SyncProperties.ClusterProperties();
+        properties.setEnabled(true);
+        properties.setInstanceId(instanceId);
+        properties.setLeaseTimeout(leaseTimeout);
+        return new ClusterCoordinator(jdbcTemplate, new H2Dialect(), properties);
+    }
+}
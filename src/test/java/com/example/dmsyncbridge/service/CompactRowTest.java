@@ -0,0 +1,75 @@
+package com.example.dmsyncbridge.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactRowTest {
+
+    private EmbeddedDatabase db;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        db = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbc = new JdbcTemplate(db);
+        jdbc.execute("CREATE TABLE sample (id BIGINT PRIMARY KEY, qty INT, price DOUBLE, active BOOLEAN, " +
+                "amount DECIMAL(10,2), label VARCHAR(20))");
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    void storesPrimitivesPositionallyAndRestoresBoxedValues() {
+        jdbc.update("INSERT INTO sample VALUES (?,?,?,?,?,?)", 1L, 7, 2.5d, true, new BigDecimal("10.50"), "first");
+        jdbc.update("INSERT INTO sample VALUES (?,?,?,?,?,?)", 2L, null, null, null, null, null);
+
+        List<CompactRow> rows = jdbc.query("SELECT * FROM sample ORDER BY id", rs -> {
+            RowSchema schema = RowSchema.of(rs.getMetaData());
+            List<CompactRow> result = new java.util.ArrayList<>();
+            while (rs.next()) {
+                result.add(schema.read(rs));
+            }
+            return result;
+        });
+
+        CompactRow first = rows.get(0);
+        assertThat(first.schema()).isSameAs(rows.get(1).schema());
+        assertThat(first.schema().columnNames()).containsExactly("id", "qty", "price", "active", "amount", "label");
+        assertThat(first.primitives).hasSize(4);
+        assertThat(first.references).hasSize(2);
+        assertThat(value(first, "id")).isEqualTo(1L);
+        assertThat(value(first, "qty")).isEqualTo(7);
+        assertThat(value(first, "price")).isEqualTo(2.5d);
+        assertThat(value(first, "active")).isEqualTo(true);
+        assertThat(value(first, "amount")).isEqualTo(new BigDecimal("10.50"));
+        assertThat(value(first, "label")).isEqualTo("first");
+
+        CompactRow second = rows.get(1);
+        assertThat(value(second, "qty")).isNull();
+        assertThat(value(second, "price")).isNull();
+        assertThat(value(second, "active")).isNull();
+        assertThat(value(second, "label")).isNull();
+        assertThat(second.schema().indexOf("missing")).isEqualTo(-1);
+    }
+
+    // column names are in lower case, as produced by RowSchema
+    private static Object value(CompactRow row, String columnName) {
+        return row.get(row.schema().indexOf(columnName));
+    }
+}
@@ -1,18 +1,24 @@
 package com.example.dmsyncbridge.service;
 
+import com.example.dmsyncbridge.config.SyncProperties;
 import com.example.dmsyncbridge.entity.SyncConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
 
 import javax.sql.DataSource;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.BitSet;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -27,6 +33,7 @@ class DmSyncServiceTest {
     private SyncConfigService configService;
     private SyncLogService logService;
     private DmSyncService dmSyncService;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     void setUp() {
@@ -40,10 +47,12 @@ class DmSyncServiceTest {
                 .build();
         jdbcA = new JdbcTemplate(dbA);
         jdbcB = new JdbcTemplate(dbB);
-        logService = new SyncLogService(jdbcA);
+        logService = new SyncLogService(jdbcA, new SyncProperties());
         logService.ensureTableExists();
         configService = new SyncConfigService();
-        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService);
+        meterRegistry = new SimpleMeterRegistry();
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService,
+                new SyncProperties(), meterRegistry);
 
         jdbcA.execute("CREATE TABLE person (id INT PRIMARY KEY, name VARCHAR(100), email VARCHAR(100), last_update TIMESTAMP)");
         jdbcB.execute("CREATE TABLE person (id INT PRIMARY KEY, name VARCHAR(100), email VARCHAR(100), last_update TIMESTAMP)");
@@ -51,6 +60,8 @@ class DmSyncServiceTest {
 
     @AfterEach
     void tearDown() {
+        dmSyncService.shutdown();
+        logService.shutdown();
         dbA.shutdown();
         dbB.shutdown();
     }
@@ -83,6 +94,102 @@ class DmSyncServiceTest {
         assertThat(emailsB).containsExactly("alice@demo", "bob@demo");
     }
 
+    @Test
+    void recordsStageMetricsPerTable() {
+        for (int id = 1; id <= 3; id++) {
+            jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                    id, "Person" + id, "p" + id + "@demo", Timestamp.from(Instant.now()));
+        }
+        jdbcB.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                1, "Person1", "p1@demo", Timestamp.from(Instant.now().minusSeconds(60)));
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setLastUpdateColumn("last_update");
+        config.setActiveFlag(true);
+        configService.create(config);
+
+        dmSyncService.synchronizeAll();
+
+        assertThat(meterRegistry.get("dm.sync.rows.read").tags("table", "person", "db", "dbA").counter().count())
+                .isEqualTo(3);
+        assertThat(meterRegistry.get("dm.sync.rows.read").tags("table", "person", "db", "dbB").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("dm.sync.fetch").tags("table", "person", "db", "dbB").timer().count())
+                .isPositive();
+        assertThat(meterRegistry.get("dm.sync.diff").tag("table", "person").timer().count()).isPositive();
+        assertThat(meterRegistry.get("dm.sync.operations")
+                .tags("table", "person", "target", "dbB", "operation", "INSERT", "outcome", "success")
+                .counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("dm.sync.rows.applied").tags("target", "dbB").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("dm.sync.apply").tags("target", "dbB").timer().count()).isPositive();
+        assertThat(meterRegistry.get("dm.sync.queue.depth").tag("target", "dbB").gauge().value()).isZero();
+    }
+
+    @Test
+    void adaptiveScheduleSpeedsUpChangedTablesAndBacksOffIdleOnes() throws InterruptedException {
+        jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                1, "Alice", "alice@demo", Timestamp.from(Instant.now()));
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setLastUpdateColumn("last_update");
+        config.setInterval(200L);
+        config.setMinInterval(100L);
+        config.setMaxInterval(400L);
+        config.setActiveFlag(true);
+        configService.create(config);
+
+        dmSyncService.dispatchDueTables();
+        awaitInterval("person", 100);
+        assertThat(jdbcB.queryForObject("SELECT COUNT(*) FROM person", Integer.class)).isEqualTo(1);
+
+        Thread.sleep(150);
+        dmSyncService.dispatchDueTables();
+        awaitInterval("person", 200);
+        assertThat(dmSyncService.scheduleOf("person").isDue(System.currentTimeMillis())).isFalse();
+    }
+
+    private void awaitInterval(String tableName, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (dmSyncService.scheduleOf(tableName).getInterval() != expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(dmSyncService.scheduleOf(tableName).getInterval()).isEqualTo(expected);
+    }
+
+    @Test
+    void genericDialectAppliesInsertsAndUpdatesWithoutMerge() {
+        jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                1, "Alice", "alice@demo", Timestamp.from(Instant.now()));
+        jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                2, "Bob", "bob@demo", Timestamp.from(Instant.now()));
+        jdbcB.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                1, "Alice", "alice@old", Timestamp.from(Instant.now().minusSeconds(60)));
+
+        SyncProperties properties = new SyncProperties();
+        properties.setDialect(SyncProperties.Dialect.GENERIC);
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService, properties,
+                new SimpleMeterRegistry());
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        config.setLastUpdateColumn("last_update");
+        config.setActiveFlag(true);
+        configService.create(config);
+
+        dmSyncService.synchronizeAll();
+
+        List<String> emailsB = jdbcB.query("SELECT email FROM person ORDER BY id", (rs, rowNum) -> rs.getString(1));
+        assertThat(emailsB).containsExactly("alice@demo", "bob@demo");
+    }
+
     @Test
     void replaysOperationsAfterOutage() {
         jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
@@ -91,7 +198,9 @@ class DmSyncServiceTest {
         ToggleableDataSource toggleable = new ToggleableDataSource(dbB);
         toggleable.setOnline(false);
         JdbcTemplate offlineTemplate = new JdbcTemplate(toggleable);
-        dmSyncService = new DmSyncService(jdbcA, offlineTemplate, dbA, toggleable, configService, logService);
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, offlineTemplate, dbA, toggleable, configService, logService,
+                new SyncProperties(), new SimpleMeterRegistry());
 
         SyncConfig config = new SyncConfig();
         config.setTableName("person");
@@ -113,6 +222,1030 @@ class DmSyncServiceTest {
         assertThat(dmSyncService.getPendingOperationCount("dbB")).isEqualTo(0);
     }
 
+    @Test
+    void passesWhileTheTargetIsDownQueueEachChangeOnce() {
+        for (int id = 1; id <= 5; id++) {
+            jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, "Person " + id, id + "@demo");
+        }
+        ToggleableDataSource toggleable = new ToggleableDataSource(dbB);
+        toggleable.setOnline(false);
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, new JdbcTemplate(toggleable), dbA, toggleable, configService,
+                logService, new SyncProperties(), new SimpleMeterRegistry());
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        configService.create(config);
+
+        for (int pass = 0; pass < 3; pass++) {
+            dmSyncService.synchronizeAll();
+        }
+        assertThat(dmSyncService.getPendingOperationCount("dbB")).isEqualTo(5);
+
+        // only the row that changed is queued again
+        jdbcA.update("UPDATE person SET email = 'first@demo' WHERE id = 1");
+        dmSyncService.synchronizeAll();
+        dmSyncService.synchronizeAll();
+        assertThat(dmSyncService.getPendingOperationCount("dbB")).isEqualTo(6);
+
+        toggleable.setOnline(true);
+        dmSyncService.synchronizeAll();
+        assertThat(jdbcB.queryForObject("SELECT COUNT(*) FROM person", Integer.class)).isEqualTo(5);
+        assertThat(jdbcB.queryForObject("SELECT email FROM person WHERE id = 1", String.class)).isEqualTo("first@demo");
+        assertThat(dmSyncService.getPendingOperationCount("dbB")).isZero();
+    }
+
+    @Test
+    void replaysOperationsLoggedToDiskAfterOutage(@TempDir Path queueDirectory) {
+        jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                1, "Alice", "alice@demo", Timestamp.from(Instant.now()));
+
+        SyncProperties properties = new SyncProperties();
+        properties.getQueue().setDirectory(queueDirectory.toString());
+        ToggleableDataSource toggleable = new ToggleableDataSource(dbB);
+        toggleable.setOnline(false);
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, new JdbcTemplate(toggleable), dbA, toggleable, configService,
+                logService, properties, new SimpleMeterRegistry());
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        configService.create(config);
+
+        dmSyncService.synchronizeAll();
+        assertThat(dmSyncService.getPendingOperationCount("dbB")).isEqualTo(1);
+
+        // read back from the log in the same run, the operation is still the row's latest
+        toggleable.setOnline(true);
+        dmSyncService.flushPending();
+
+        assertThat(jdbcB.queryForObject("SELECT email FROM person WHERE id = 1", String.class)).isEqualTo("alice@demo");
+        assertThat(dmSyncService.getPendingOperationCount("dbB")).isEqualTo(0);
+    }
+
+    @Test
+    void queuedOperationsSurviveRestart(@TempDir Path queueDirectory) {
+        jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                1, "Alice", "alice@demo", Timestamp.from(Instant.now()));
+
+        SyncProperties properties = new SyncProperties();
+        properties.getQueue().setDirectory(queueDirectory.toString());
+        ToggleableDataSource toggleable = new ToggleableDataSource(dbB);
+        toggleable.setOnline(false);
+        JdbcTemplate offlineTemplate = new JdbcTemplate(toggleable);
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, offlineTemplate, dbA, toggleable, configService, logService, properties,
+                new SimpleMeterRegistry());
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email", "last_update"));
+        config.setLastUpdateColumn("last_update");
+        configService.create(config);
+
+        dmSyncService.synchronizeAll();
+        assertThat(dmSyncService.getPendingOperationCount("dbB")).isEqualTo(1);
+        dmSyncService.shutdown();
+
+        toggleable.setOnline(true);
+        dmSyncService = new DmSyncService(jdbcA, offlineTemplate, dbA, toggleable, configService, logService, properties,
+                new SimpleMeterRegistry());
+        assertThat(dmSyncService.getPendingOperationCount("dbB")).isEqualTo(1);
+        dmSyncService.flushPending();
+
+        assertThat(jdbcB.queryForObject("SELECT email FROM person WHERE id = 1", String.class)).isEqualTo("alice@demo");
+        assertThat(dmSyncService.getPendingOperationCount("dbB")).isEqualTo(0);
+    }
+
+    @Test
+    void retriesFailedOperationsWhenTheirBackoffExpires() throws InterruptedException {
+        jdbcB.execute("ALTER TABLE person ADD CONSTRAINT no_bob CHECK (name <> 'Bob')");
+        jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                1, "Bob", "bob@demo", Timestamp.from(Instant.now()));
+
+        SyncProperties properties = new SyncProperties();
+        properties.getRetry().setInitialBackoff(300);
+        properties.getRetry().setJitter(0);
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService, properties,
+                new SimpleMeterRegistry());
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        configService.create(config);
+
+        dmSyncService.synchronizeAll();
+        assertThat(dmSyncService.getPendingOperationCount("dbB")).isEqualTo(1);
+        jdbcB.execute("ALTER TABLE person DROP CONSTRAINT no_bob");
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (jdbcB.queryForObject("SELECT COUNT(*) FROM person", Integer.class) == 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(jdbcB.queryForObject("SELECT name FROM person WHERE id = 1", String.class)).isEqualTo("Bob");
+        assertThat(dmSyncService.getPendingOperationCount("dbB")).isEqualTo(0);
+    }
+
+    @Test
+    void operationsWaitingForRetrySurviveACrash(@TempDir Path queueDirectory) {
+        jdbcB.execute("ALTER TABLE person ADD CONSTRAINT no_bob CHECK (name <> 'Bob')");
+        jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", 1, "Bob", "bob@demo");
+
+        SyncProperties properties = new SyncProperties();
+        properties.getQueue().setDirectory(queueDirectory.toString());
+        properties.getRetry().setInitialBackoff(60000);
+        properties.getRetry().setJitter(0);
+        dmSyncService.shutdown();
+        DmSyncService crashed = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService, properties,
+                new SimpleMeterRegistry());
+        dmSyncService = crashed;
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        configService.create(config);
+
+        crashed.synchronizeAll();
+        assertThat(crashed.getPendingOperationCount("dbB")).isEqualTo(1);
+        jdbcB.execute("ALTER TABLE person DROP CONSTRAINT no_bob");
+
+        // a new instance on the same directory, without shutdown() moving the retry back to the queue
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService, properties,
+                new SimpleMeterRegistry());
+        try {
+            assertThat(dmSyncService.getPendingOperationCount("dbB")).isEqualTo(1);
+            dmSyncService.flushPending();
+
+            assertThat(jdbcB.queryForObject("SELECT name FROM person WHERE id = 1", String.class)).isEqualTo("Bob");
+            assertThat(dmSyncService.getPendingOperationCount("dbB")).isZero();
+        } finally {
+            crashed.shutdown();
+        }
+    }
+
+    @Test
+    void newerOperationsReplaceOlderOnesForTheSameRow() {
+        jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", 1, "Alice", "alice@demo");
+        jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", 2, "Bob", "bob@old");
+        jdbcB.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", 1, "Alice", "alice@old");
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        configService.create(config);
+        SyncPlan plan = SyncPlan.compile(config, new DmDialect(), jdbcA, jdbcB);
+        CompactRow alice = readRow(plan, 1);
+        CompactRow oldBob = readRow(plan, 2);
+        jdbcA.update("UPDATE person SET email = ? WHERE id = ?", "bob@demo", 2);
+        CompactRow bob = readRow(plan, 2);
+
+        dmSyncService.enqueue(new SyncOperation("dbA", "dbB", config, plan, OperationType.UPDATE, alice, 1));
+        dmSyncService.enqueue(new SyncOperation("dbA", "dbB", config, plan, OperationType.DELETE, alice, 1));
+        dmSyncService.enqueue(new SyncOperation("dbA", "dbB", config, plan, OperationType.INSERT, oldBob, 2));
+        dmSyncService.enqueue(new SyncOperation("dbA", "dbB", config, plan, OperationType.UPDATE, bob, 2));
+        dmSyncService.flushPending();
+
+        assertThat(jdbcB.queryForList("SELECT email FROM person ORDER BY id", String.class))
+                .containsExactly("bob@demo");
+        assertThat(meterRegistry.get("dm.sync.operations").tag("outcome", "superseded").counters().stream()
+                .mapToDouble(counter -> counter.count()).sum()).isEqualTo(2);
+        assertThat(meterRegistry.get("dm.sync.operations").tags("operation", "INSERT", "outcome", "success")
+                .counter().count()).isEqualTo(1);
+        assertThat(dmSyncService.getPendingOperationCount("dbB")).isZero();
+    }
+
+    @Test
+    void updatesOnlyTheColumnsThatDiffer() {
+        Timestamp hourAgo = Timestamp.from(Instant.now().minusSeconds(3600));
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)", 1, "Alice", "alice@new", now);
+        jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)", 2, "Robert", "robert@demo", now);
+        jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)", 3, "Carol", "carol@demo", now);
+        jdbcB.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)", 1, "Alice", "alice@old", hourAgo);
+        jdbcB.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)", 2, "Bob", "bob@demo", hourAgo);
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setLastUpdateColumn("last_update");
+        configService.create(config);
+        SyncPlan plan = SyncPlan.compile(config, new DmDialect(), jdbcA, jdbcB);
+        CompactRow alice = readRow(plan, 1);
+        CompactRow aliceB = jdbcB.query("SELECT * FROM person WHERE id = 1", rs -> {
+            rs.next();
+            return plan.getSchemaB().read(rs);
+        });
+        BitSet changed = plan.changedColumns(alice, aliceB, true);
+        assertThat(changed.stream().mapToObj(i -> plan.getSchemaA().columnNames().get(i)))
+                .containsExactlyInAnyOrder("email", "last_update");
+
+        // columns the update does not carry keep what dbB wrote meanwhile
+        jdbcB.update("UPDATE person SET name = 'Alicia' WHERE id = 1");
+        dmSyncService.enqueue(update(config, plan, alice, changed));
+        // a replaced update still owes its columns to the target
+        CompactRow robert = readRow(plan, 2);
+        dmSyncService.enqueue(update(config, plan, robert, columns(plan, "name")));
+        dmSyncService.enqueue(update(config, plan, robert, columns(plan, "email")));
+        // a row missing on the target is written in full
+        dmSyncService.enqueue(update(config, plan, readRow(plan, 3), columns(plan, "email")));
+        dmSyncService.flushPending();
+
+        assertThat(jdbcB.queryForList("SELECT name || ' ' || email FROM person ORDER BY id", String.class))
+                .containsExactly("Alicia alice@new", "Robert robert@demo", "Carol carol@demo");
+        assertThat(dmSyncService.getPendingOperationCount("dbB")).isZero();
+    }
+
+    @Test
+    void fingerprintsTellWhichSideChangedARowWithoutTimestamps(@TempDir Path fingerprintDirectory) {
+        for (int id = 1; id <= 3; id++) {
+            jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, "user" + id, "user" + id + "@demo");
+        }
+        jdbcB.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", 1, "user1", "user1@demo");
+        SyncProperties properties = new SyncProperties();
+        properties.getFingerprint().setEnabled(true);
+        properties.getFingerprint().setDirectory(fingerprintDirectory.toString());
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService, properties, meterRegistry);
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        configService.create(config);
+        dmSyncService.synchronizeAll();
+
+        // the baseline outlives a restart
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService, properties, meterRegistry);
+        jdbcB.update("UPDATE person SET email = 'user1@b' WHERE id = 1");
+        jdbcA.update("UPDATE person SET name = 'user2-a' WHERE id = 2");
+        dmSyncService.synchronizeAll();
+
+        assertThat(jdbcA.queryForList("SELECT name || ' ' || email FROM person ORDER BY id", String.class))
+                .containsExactly("user1 user1@b", "user2-a user2@demo", "user3 user3@demo");
+        assertThat(jdbcB.queryForList("SELECT name || ' ' || email FROM person ORDER BY id", String.class))
+                .containsExactly("user1 user1@b", "user2-a user2@demo", "user3 user3@demo");
+        // one update per changed row instead of one in each direction
+        assertThat(meterRegistry.get("dm.sync.operations").tags("operation", "UPDATE", "outcome", "success")
+                .counters().stream().mapToDouble(counter -> counter.count()).sum()).isEqualTo(2);
+    }
+
+    private static SyncOperation update(SyncConfig config, SyncPlan plan, CompactRow row, BitSet changedColumns) {
+        SyncOperation operation = new SyncOperation("dbA", "dbB", config, plan, OperationType.UPDATE, row,
+                plan.keyOf(row));
+        operation.setChangedColumns(changedColumns);
+        return operation;
+    }
+
+    private static BitSet columns(SyncPlan plan, String column) {
+        BitSet columns = new BitSet();
+        columns.set(plan.getSchemaA().indexOf(column));
+        return columns;
+    }
+
+    private CompactRow readRow(SyncPlan plan, int id) {
+        return jdbcA.query("SELECT * FROM person WHERE id = ?", rs -> {
+            rs.next();
+            return plan.getSchemaA().read(rs);
+        }, id);
+    }
+
+    @Test
+    void mergesBothSidesInPrimaryKeyOrder() {
+        for (int id = 50; id >= 1; id--) {
+            jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, "user" + id, "user" + id + "@demo");
+            if (id % 2 == 0) {
+                jdbcB.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, "user" + id, "user" + id + "@demo");
+            }
+        }
+        jdbcB.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", 99, "orphan", "orphan@demo");
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        configService.create(config);
+
+        dmSyncService.synchronizeAll();
+
+        List<Integer> idsB = jdbcB.queryForList("SELECT id FROM person ORDER BY id", Integer.class);
+        assertThat(idsB).hasSize(50).startsWith(1, 2, 3).endsWith(50);
+        assertThat(jdbcA.queryForObject("SELECT COUNT(*) FROM person", Integer.class)).isEqualTo(50);
+    }
+
+    @Test
+    void isolatesFailingRowsInsideBatch() {
+        jdbcB.execute("ALTER TABLE person ALTER COLUMN email VARCHAR(20)");
+        for (int id = 1; id <= 10; id++) {
+            String email = id == 7 ? "a-much-too-long-address@demo" : "user" + id + "@demo";
+            jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, "user" + id, email);
+        }
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        configService.create(config);
+
+        dmSyncService.synchronizeAll();
+
+        List<Integer> idsB = jdbcB.queryForList("SELECT id FROM person ORDER BY id", Integer.class);
+        assertThat(idsB).containsExactly(1, 2, 3, 4, 5, 6, 8, 9, 10);
+        assertThat(dmSyncService.getPendingOperationCount("dbB")).isEqualTo(1);
+    }
+
+    @Test
+    void rechecksBatchedUpdatesWhoseCountIsUnknown() {
+        jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", 1, "Alice", "alice@demo");
+        jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", 2, "Bob", "bob@demo");
+        jdbcB.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", 1, "Alice", "alice@old");
+
+        SyncProperties properties = new SyncProperties();
+        properties.setDialect(SyncProperties.Dialect.GENERIC);
+        DataSource noInfo = new NoInfoBatchDataSource(dbB);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, new JdbcTemplate(noInfo), dbA, noInfo, configService, logService,
+                properties, registry);
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        configService.create(config);
+        SyncPlan plan = SyncPlan.compile(config, new GenericDialect(), jdbcA, jdbcB);
+        dmSyncService.enqueue(new SyncOperation("dbA", "dbB", config, plan, OperationType.UPDATE, readRow(plan, 1), 1));
+        dmSyncService.enqueue(new SyncOperation("dbA", "dbB", config, plan, OperationType.UPDATE, readRow(plan, 2), 2));
+        dmSyncService.flushPending();
+
+        assertThat(jdbcB.queryForList("SELECT email FROM person ORDER BY id", String.class))
+                .containsExactly("alice@demo", "bob@demo");
+        // the batch of two plus a single-row retry for Bob, who was missing; Alice is not sent again
+        assertThat(registry.get("dm.sync.rows.applied").counters().stream().mapToDouble(Counter::count).sum())
+                .isEqualTo(3.0);
+    }
+
+    @Test
+    void synchronizesTablesConcurrently() {
+        jdbcA.execute("CREATE TABLE orders (order_id INT PRIMARY KEY, amount INT)");
+        jdbcB.execute("CREATE TABLE orders (order_id INT PRIMARY KEY, amount INT)");
+        for (int id = 1; id <= 20; id++) {
+            jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, "user" + id, "user" + id + "@demo");
+            jdbcA.update("INSERT INTO orders (order_id, amount) VALUES (?,?)", id, id * 10);
+        }
+
+        SyncProperties properties = new SyncProperties();
+        properties.setWorkers(2);
+        properties.setMaxConcurrentTables(java.util.Collections.singletonMap("dbB", 1));
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService, properties,
+                new SimpleMeterRegistry());
+
+        SyncConfig person = new SyncConfig();
+        person.setTableName("person");
+        person.setPrimaryKey("id");
+        person.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        configService.create(person);
+        SyncConfig orders = new SyncConfig();
+        orders.setTableName("orders");
+        orders.setPrimaryKey("order_id");
+        orders.setIncludeColumns(java.util.Collections.singletonList("amount"));
+        configService.create(orders);
+
+        dmSyncService.synchronizeAll();
+
+        assertThat(jdbcB.queryForObject("SELECT COUNT(*) FROM person", Integer.class)).isEqualTo(20);
+        assertThat(jdbcB.queryForObject("SELECT SUM(amount) FROM orders", Integer.class)).isEqualTo(2100);
+    }
+
+    @Test
+    void checksumDiffOnlyReconcilesMismatchingRanges() {
+        for (int id = 1; id <= 2000; id++) {
+            jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, "user" + id, "user" + id + "@demo");
+            if (id != 1500) {
+                jdbcB.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, "user" + id, "user" + id + "@demo");
+            }
+        }
+        jdbcB.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", 2500, "orphan", "orphan@demo");
+
+        SyncProperties properties = new SyncProperties();
+        properties.getChecksum().setEnabled(true);
+        properties.getChecksum().setLeafRows(50);
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService, properties,
+                new SimpleMeterRegistry());
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        configService.create(config);
+
+        dmSyncService.synchronizeAll();
+
+        assertThat(jdbcB.queryForObject("SELECT COUNT(*) FROM person", Integer.class)).isEqualTo(2000);
+        assertThat(jdbcB.queryForObject("SELECT email FROM person WHERE id = 1500", String.class)).isEqualTo("user1500@demo");
+        assertThat(jdbcB.queryForObject("SELECT COUNT(*) FROM person WHERE id = 2500", Integer.class)).isZero();
+
+        logService.shutdown();
+        String summary = jdbcA.queryForObject("SELECT message FROM sync_log WHERE operation_type = 'SYNC'", String.class);
+        long inspected = Long.parseLong(summary.replaceAll("\\D", ""));
+        assertThat(inspected).isGreaterThan(0).isLessThan(200);
+    }
+
+    @Test
+    void checksumDiffFindsValuesSwappedBetweenKeysOfOneRange() {
+        for (int id = 1; id <= 20; id++) {
+            jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, "user" + id, "user@demo");
+            jdbcB.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id,
+                    id == 11 ? "user12" : id == 12 ? "user11" : "user" + id, "user@demo");
+        }
+
+        SyncProperties properties = new SyncProperties();
+        properties.getChecksum().setEnabled(true);
+        properties.getChecksum().setLeafRows(5);
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService, properties,
+                new SimpleMeterRegistry());
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        configService.create(config);
+
+        dmSyncService.synchronizeAll();
+
+        // with 16 buckets over ids 1..20, ids 11 and 12 share a leaf range of two rows
+        assertThat(jdbcB.queryForList("SELECT name FROM person WHERE id IN (11, 12) ORDER BY id", String.class))
+                .containsExactly("user11", "user12");
+    }
+
+    @Test
+    void wildcardPlanPicksUpAddedColumns() {
+        jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                1, "Alice", "alice@demo", Timestamp.from(Instant.now().minusSeconds(1)));
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setLastUpdateColumn("last_update");
+        config.setActiveFlag(true);
+        configService.create(config);
+
+        dmSyncService.synchronizeAll();
+        assertThat(jdbcB.queryForObject("SELECT email FROM person WHERE id = 1", String.class)).isEqualTo("alice@demo");
+
+        jdbcA.execute("ALTER TABLE person ADD COLUMN phone VARCHAR(20)");
+        jdbcB.execute("ALTER TABLE person ADD COLUMN phone VARCHAR(20)");
+        jdbcA.update("UPDATE person SET phone = ?, last_update = ? WHERE id = 1", "555-0100", Timestamp.from(Instant.now()));
+
+        dmSyncService.synchronizeAll();
+
+        assertThat(jdbcB.queryForObject("SELECT phone FROM person WHERE id = 1", String.class)).isEqualTo("555-0100");
+    }
+
+    @Test
+    void resumesFromPersistedWatermarksAfterRestart() {
+        Timestamp hourAgo = Timestamp.from(Instant.now().minusSeconds(3600));
+        for (int id = 1; id <= 3; id++) {
+            jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                    id, "user" + id, "user" + id + "@demo", hourAgo);
+        }
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        config.setLastUpdateColumn("last_update");
+        configService.create(config);
+        dmSyncService.synchronizeAll();
+        assertThat(jdbcB.queryForObject("SELECT COUNT(*) FROM person", Integer.class)).isEqualTo(3);
+
+        // a change outside every window only a full scan would notice
+        jdbcB.update("UPDATE person SET email = 'untouched@demo' WHERE id = 1");
+        jdbcA.update("UPDATE person SET email = 'changed@demo', last_update = ? WHERE id = 2", Timestamp.from(Instant.now()));
+
+        SyncConfigService restartedConfigs = new SyncConfigService();
+        SyncConfig restarted = new SyncConfig();
+        restarted.setTableName("person");
+        restarted.setPrimaryKey("id");
+        restarted.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        restarted.setLastUpdateColumn("last_update");
+        restartedConfigs.create(restarted);
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, restartedConfigs, logService,
+                new SyncProperties(), new SimpleMeterRegistry());
+
+        dmSyncService.synchronizeAll();
+
+        assertThat(jdbcB.queryForObject("SELECT email FROM person WHERE id = 2", String.class)).isEqualTo("changed@demo");
+        assertThat(jdbcB.queryForObject("SELECT email FROM person WHERE id = 1", String.class)).isEqualTo("untouched@demo");
+    }
+
+    @Test
+    void dateUpdateColumnsKeepWatermarks() {
+        jdbcA.execute("CREATE TABLE visit (id INT PRIMARY KEY, note VARCHAR(50), visited DATE)");
+        jdbcB.execute("CREATE TABLE visit (id INT PRIMARY KEY, note VARCHAR(50), visited DATE)");
+        jdbcA.update("INSERT INTO visit (id, note, visited) VALUES (?,?,?)", 1, "first", java.sql.Date.valueOf("2020-01-01"));
+        SyncConfig config = new SyncConfig();
+        config.setTableName("visit");
+        config.setPrimaryKey("id");
+        config.setLastUpdateColumn("visited");
+        configService.create(config);
+        dmSyncService.synchronizeAll();
+
+        // a date past the watermark, which sits at the first pass's cutoff
+        jdbcA.update("UPDATE visit SET note = 'second', visited = ? WHERE id = 1",
+                java.sql.Date.valueOf(java.time.LocalDate.now().plusDays(1)));
+        dmSyncService.synchronizeAll();
+
+        assertThat(jdbcB.queryForObject("SELECT note FROM visit WHERE id = 1", String.class)).isEqualTo("second");
+        assertThat(jdbcA.queryForObject("SELECT COUNT(*) FROM sync_watermark WHERE table_name = 'visit'", Integer.class))
+                .isEqualTo(2);
+    }
+
+    @Test
+    void updateColumnsThatAreNotTimestampsFallBackToFullComparisons() {
+        jdbcA.execute("CREATE TABLE visit (id INT PRIMARY KEY, note VARCHAR(50), visited VARCHAR(30))");
+        jdbcB.execute("CREATE TABLE visit (id INT PRIMARY KEY, note VARCHAR(50), visited VARCHAR(30))");
+        jdbcA.update("INSERT INTO visit (id, note, visited) VALUES (?,?,?)", 1, "first", "2020-01-01 10:00:00");
+        SyncConfig config = new SyncConfig();
+        config.setTableName("visit");
+        config.setPrimaryKey("id");
+        config.setLastUpdateColumn("visited");
+        configService.create(config);
+        dmSyncService.synchronizeAll();
+
+        jdbcA.update("UPDATE visit SET note = 'second', visited = '2020-01-02 10:00:00' WHERE id = 1");
+        dmSyncService.synchronizeAll();
+
+        assertThat(jdbcB.queryForObject("SELECT note FROM visit WHERE id = 1", String.class)).isEqualTo("second");
+        assertThat(jdbcA.queryForObject("SELECT COUNT(*) FROM sync_watermark WHERE table_name = 'visit'", Integer.class))
+                .isZero();
+    }
+
+    @Test
+    void incrementalWindowPropagatesChangesMadeOnDbB() {
+        Timestamp hourAgo = Timestamp.from(Instant.now().minusSeconds(3600));
+        jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)", 1, "Alice", "alice@demo", hourAgo);
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        config.setLastUpdateColumn("last_update");
+        configService.create(config);
+        dmSyncService.synchronizeAll();
+
+        jdbcB.update("UPDATE person SET email = 'alice@new', last_update = ? WHERE id = 1", Timestamp.from(Instant.now()));
+        dmSyncService.synchronizeAll();
+
+        assertThat(jdbcA.queryForObject("SELECT email FROM person WHERE id = 1", String.class)).isEqualTo("alice@new");
+        assertThat(jdbcB.queryForObject("SELECT COUNT(*) FROM person", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void periodicKeyComparisonRemovesRowsDeletedOnDbA() {
+        Timestamp hourAgo = Timestamp.from(Instant.now().minusSeconds(3600));
+        for (int id = 1; id <= 3; id++) {
+            jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                    id, "user" + id, "user" + id + "@demo", hourAgo);
+        }
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        config.setLastUpdateColumn("last_update");
+        configService.create(config);
+        dmSyncService.synchronizeAll();
+        assertThat(jdbcB.queryForObject("SELECT COUNT(*) FROM person", Integer.class)).isEqualTo(3);
+
+        // a deleted row leaves nothing past the watermark, so the incremental pass cannot see it
+        jdbcA.update("DELETE FROM person WHERE id = 2");
+        dmSyncService.synchronizeAll();
+        assertThat(jdbcB.queryForList("SELECT id FROM person ORDER BY id", Integer.class)).containsExactly(1, 2, 3);
+
+        config.setDeleteCheckInterval(1L);
+        dmSyncService.synchronizeAll();
+
+        assertThat(jdbcB.queryForList("SELECT id FROM person ORDER BY id", Integer.class)).containsExactly(1, 3);
+        assertThat(dmSyncService.getProgress()).singleElement()
+                .satisfies(progress -> assertThat(progress.getMode()).isEqualTo("CHANGES"));
+    }
+
+    @Test
+    void pagedFullScanResumesFromCheckpoint() {
+        for (int id = 1; id <= 10; id++) {
+            jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, "user" + id, "user" + id + "@demo");
+            if (id % 2 == 0) {
+                jdbcB.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, "user" + id, "user" + id + "@demo");
+            }
+        }
+        jdbcB.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", 11, "orphan", "orphan@demo");
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        config.setPageSize(3);
+        configService.create(config);
+        SyncWatermarkStore store = new SyncWatermarkStore(jdbcA);
+        store.saveCheckpoint("person", SyncPlan.signatureOf(config), new ScanCheckpoint("4", null, null, 4));
+
+        dmSyncService.synchronizeAll();
+
+        // keys up to the checkpoint were reconciled by the interrupted run and are not read again
+        List<Integer> idsB = jdbcB.queryForList("SELECT id FROM person ORDER BY id", Integer.class);
+        assertThat(idsB).containsExactly(2, 4, 5, 6, 7, 8, 9, 10);
+        assertThat(store.findCheckpoint("person", SyncPlan.signatureOf(config))).isNull();
+        assertThat(dmSyncService.getProgress()).singleElement().satisfies(progress -> {
+            assertThat(progress.getResumedFromKey()).isEqualTo("4");
+            assertThat(progress.getKeysInspected()).isEqualTo(11);
+            assertThat(progress.getPagesCompleted()).isGreaterThan(1);
+            assertThat(progress.isCompleted()).isTrue();
+        });
+    }
+
+    @Test
+    void fullScanWithoutThePipelineReadsAndAppliesPagesInline() {
+        for (int id = 1; id <= 40; id++) {
+            jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, "user" + id, "user" + id + "@demo");
+            if (id % 3 == 0) {
+                jdbcB.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, "old" + id, "user" + id + "@demo");
+            }
+        }
+        jdbcB.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", 41, "orphan", "orphan@demo");
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        config.setPageSize(4);
+        configService.create(config);
+        SyncProperties properties = new SyncProperties();
+        properties.getPipeline().setEnabled(false);
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService, properties,
+                new SimpleMeterRegistry());
+
+        dmSyncService.synchronizeAll();
+
+        assertThat(jdbcB.queryForList("SELECT id FROM person ORDER BY id", Integer.class)).hasSize(40).endsWith(40);
+        assertThat(jdbcB.queryForObject("SELECT COUNT(*) FROM person WHERE name LIKE 'old%'", Integer.class))
+                .isZero();
+        assertThat(dmSyncService.getProgress()).singleElement().satisfies(progress -> {
+            assertThat(progress.getKeysInspected()).isEqualTo(41);
+            assertThat(progress.getPagesCompleted()).isGreaterThan(1);
+        });
+    }
+
+    @Test
+    void clusteredInstancesEachSynchronizeTheirShareOfTheTables() {
+        for (int i = 0; i < 8; i++) {
+            jdbcA.execute("CREATE TABLE item_" + i + " (id INT PRIMARY KEY, name VARCHAR(100))");
+            jdbcB.execute("CREATE TABLE item_" + i + " (id INT PRIMARY KEY, name VARCHAR(100))");
+            jdbcA.update("INSERT INTO item_" + i + " (id, name) VALUES (1, 'item')");
+            SyncConfig config = new SyncConfig();
+            config.setTableName("item_" + i);
+            config.setPrimaryKey("id");
+            config.setIncludeColumns(java.util.Collections.singletonList("name"));
+            configService.create(config);
+        }
+        DmSyncService first = clusteredService("node-1");
+        DmSyncService second = clusteredService("node-2");
+        try {
+            first.heartbeat();
+            second.heartbeat();
+            first.heartbeat();
+
+            List<String> skippedByFirst = first.synchronizeAll();
+            List<String> skippedBySecond = second.synchronizeAll();
+
+            // each instance reports the tables it left to the other
+            assertThat(skippedByFirst).isNotEmpty().doesNotContainAnyElementsOf(skippedBySecond);
+            assertThat(skippedByFirst.size() + skippedBySecond.size()).isEqualTo(8);
+            for (int i = 0; i < 8; i++) {
+                assertThat(jdbcB.queryForObject("SELECT COUNT(*) FROM item_" + i, Integer.class)).isEqualTo(1);
+            }
+            assertThat(jdbcA.queryForList("SELECT DISTINCT owner_id FROM sync_table_lease ORDER BY owner_id",
+                    String.class)).containsExactly("node-1", "node-2");
+            assertThat(jdbcA.queryForObject("SELECT COUNT(*) FROM sync_table_lease", Integer.class)).isEqualTo(8);
+            assertThat(first.getClusterStatus()).containsEntry("members", java.util.Arrays.asList("node-1", "node-2"));
+        } finally {
+            first.shutdown();
+            second.shutdown();
+        }
+    }
+
+    @Test
+    void queuedOperationsOfHandedOverTablesAreLeftToTheNewOwner() {
+        for (int i = 0; i < 8; i++) {
+            jdbcA.execute("CREATE TABLE item_" + i + " (id INT PRIMARY KEY, name VARCHAR(100))");
+            jdbcB.execute("CREATE TABLE item_" + i + " (id INT PRIMARY KEY, name VARCHAR(100))");
+            jdbcA.update("INSERT INTO item_" + i + " (id, name) VALUES (1, 'item')");
+            SyncConfig config = new SyncConfig();
+            config.setTableName("item_" + i);
+            config.setPrimaryKey("id");
+            config.setIncludeColumns(java.util.Collections.singletonList("name"));
+            configService.create(config);
+        }
+        ToggleableDataSource toggleable = new ToggleableDataSource(dbB);
+        DmSyncService first = clusteredService("node-1", new JdbcTemplate(toggleable), toggleable);
+        DmSyncService second = clusteredService("node-2");
+        try {
+            first.heartbeat();
+            first.synchronizeAll();
+            toggleable.setOnline(false);
+            for (int i = 0; i < 8; i++) {
+                jdbcA.update("UPDATE item_" + i + " SET name = 'renamed'");
+            }
+            first.synchronizeAll();
+            assertThat(first.getPendingOperationCount("dbB")).isEqualTo(8);
+
+            // node-2 joins; node-1 hands over the tables the ring moves to it
+            second.heartbeat();
+            first.heartbeat();
+            toggleable.setOnline(true);
+            first.flushPending();
+
+            List<String> kept = jdbcA.queryForList("SELECT table_name FROM sync_table_lease WHERE owner_id = 'node-1'",
+                    String.class);
+            assertThat(kept).isNotEmpty().hasSizeLessThan(8);
+            for (int i = 0; i < 8; i++) {
+                assertThat(jdbcB.queryForObject("SELECT name FROM item_" + i, String.class))
+                        .isEqualTo(kept.contains("item_" + i) ? "renamed" : "item");
+            }
+            assertThat(first.getPendingOperationCount("dbB")).isZero();
+
+            second.heartbeat();
+            second.synchronizeAll();
+            for (int i = 0; i < 8; i++) {
+                assertThat(jdbcB.queryForObject("SELECT name FROM item_" + i, String.class)).isEqualTo("renamed");
+            }
+        } finally {
+            first.shutdown();
+            second.shutdown();
+        }
+    }
+
+    private DmSyncService clusteredService(String instanceId) {
+        return clusteredService(instanceId, jdbcB, dbB);
+    }
+
+    private DmSyncService clusteredService(String instanceId, JdbcTemplate dbBTemplate, DataSource dbBSource) {
+        SyncProperties properties = new SyncProperties();
+        properties.setDialect(SyncProperties.Dialect.H2);
+        properties.getCluster().setEnabled(true);
+        properties.getCluster().setInstanceId(instanceId);
+        return new DmSyncService(jdbcA, dbBTemplate, dbA, dbBSource, configService, logService, properties,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void additionalNodesFollowTheNewestRowAndDbAsKeys() {
+        EmbeddedDatabase siteC = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        EmbeddedDatabase siteD = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        JdbcTemplate jdbcC = new JdbcTemplate(siteC);
+        JdbcTemplate jdbcD = new JdbcTemplate(siteD);
+        jdbcC.execute("CREATE TABLE person (id INT PRIMARY KEY, name VARCHAR(100), email VARCHAR(100), last_update TIMESTAMP)");
+        jdbcD.execute("CREATE TABLE person (id INT PRIMARY KEY, name VARCHAR(100), email VARCHAR(100), last_update TIMESTAMP)");
+        Timestamp earlier = Timestamp.from(Instant.now().minusSeconds(600));
+        Timestamp later = Timestamp.from(Instant.now().minusSeconds(60));
+        for (int id = 1; id <= 5; id++) {
+            jdbcA.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                    id, "user" + id, "user" + id + "@demo", earlier);
+            if (id != 3) {
+                jdbcC.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                        id, id == 2 ? "stale" : "user" + id, "user" + id + "@demo", earlier);
+            }
+            jdbcD.update("INSERT INTO person (id, name, email, last_update) VALUES (?,?,?,?)",
+                    id, id == 4 ? "from-d" : "user" + id, "user" + id + "@demo", id == 4 ? later : earlier);
+        }
+        jdbcC.update("INSERT INTO person (id, name, email, last_update) VALUES (9, 'deleted', 'deleted@demo', ?)", later);
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setLastUpdateColumn("last_update");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email", "last_update"));
+        // the merge reads dbA in pages of two and each node for the key range of the page
+        config.setPageSize(2);
+        configService.create(config);
+        java.util.Map<String, JdbcTemplate> nodes = new java.util.LinkedHashMap<>();
+        nodes.put("siteC", jdbcC);
+        nodes.put("siteD", jdbcD);
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService, new SyncProperties(),
+                new SimpleMeterRegistry(), new com.example.dmsyncbridge.config.SyncNodes(nodes));
+        try {
+            dmSyncService.synchronizeAll();
+
+            List<String> expected = java.util.Arrays.asList("user1", "user2", "user3", "from-d", "user5");
+            for (JdbcTemplate jdbc : java.util.Arrays.asList(jdbcA, jdbcB, jdbcC, jdbcD)) {
+                assertThat(jdbc.queryForList("SELECT name FROM person ORDER BY id", String.class))
+                        .containsExactlyElementsOf(expected);
+            }
+            assertThat(dmSyncService.getNodePendingOperationCounts()).containsEntry("siteC", 0).containsEntry("siteD", 0);
+            assertThat(jdbcA.queryForObject("SELECT COUNT(*) FROM sync_node_checkpoint", Integer.class)).isZero();
+        } finally {
+            siteC.shutdown();
+            siteD.shutdown();
+        }
+    }
+
+    @Test
+    void failedNodeMergesAreReportedAsFailedPasses() {
+        EmbeddedDatabase siteC = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        new JdbcTemplate(siteC).execute("CREATE TABLE person (id INT PRIMARY KEY, name VARCHAR(100), email VARCHAR(100), "
+                + "last_update TIMESTAMP)");
+        jdbcA.update("INSERT INTO person (id, name, email) VALUES (1, 'Alice', 'alice@demo')");
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        configService.create(config);
+        DataSource brokenReads = new BrokenReadsDataSource(siteC);
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService, new SyncProperties(),
+                new SimpleMeterRegistry(), new com.example.dmsyncbridge.config.SyncNodes(
+                java.util.Collections.singletonMap("siteC", new JdbcTemplate(brokenReads))));
+        try {
+            dmSyncService.synchronizeAll();
+
+            logService.shutdown();
+            assertThat(jdbcA.queryForList("SELECT status FROM sync_log WHERE operation_type = 'SYNC'", String.class))
+                    .containsExactly("FAILED");
+            // dbA and dbB were still reconciled
+            assertThat(jdbcB.queryForObject("SELECT COUNT(*) FROM person", Integer.class)).isEqualTo(1);
+        } finally {
+            siteC.shutdown();
+        }
+    }
+
+    @Test
+    void rowsANodeRejectsWaitForTheirRetryWithoutPilingUp() {
+        EmbeddedDatabase siteC = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        JdbcTemplate jdbcC = new JdbcTemplate(siteC);
+        jdbcC.execute("CREATE TABLE person (id INT PRIMARY KEY, name VARCHAR(100), email VARCHAR(100), last_update TIMESTAMP)");
+        jdbcC.execute("ALTER TABLE person ADD CONSTRAINT no_bob CHECK (name <> 'Bob')");
+        for (int id = 1; id <= 3; id++) {
+            jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, id == 2 ? "Bob" : "user" + id,
+                    "user" + id + "@demo");
+        }
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        configService.create(config);
+        SyncProperties properties = new SyncProperties();
+        properties.getRetry().setInitialBackoff(60000);
+        properties.getRetry().setJitter(0);
+        dmSyncService.shutdown();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService, properties, registry,
+                new com.example.dmsyncbridge.config.SyncNodes(java.util.Collections.singletonMap("siteC", jdbcC)));
+        try {
+            // the second pass neither retries the rejected insert early nor queues a second one beside it
+            dmSyncService.synchronizeAll();
+            dmSyncService.synchronizeAll();
+            assertThat(jdbcC.queryForList("SELECT name FROM person ORDER BY id", String.class))
+                    .containsExactly("user1", "user3");
+            assertThat(dmSyncService.getNodePendingOperationCounts()).containsEntry("siteC", 1);
+            assertThat(registry.find("dm.sync.operations").tags("target", "siteC", "outcome", "failed").counter())
+                    .isNull();
+
+            jdbcC.execute("ALTER TABLE person DROP CONSTRAINT no_bob");
+            dmSyncService.synchronizeAll();
+            assertThat(jdbcC.queryForList("SELECT name FROM person ORDER BY id", String.class))
+                    .containsExactly("user1", "Bob", "user3");
+            assertThat(dmSyncService.getNodePendingOperationCounts()).containsEntry("siteC", 0);
+        } finally {
+            siteC.shutdown();
+        }
+    }
+
+    @Test
+    void changeCaptureReplaysLoggedKeysAfterInitialComparison() {
+        for (int id = 1; id <= 3; id++) {
+            jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", id, "user" + id, "user" + id + "@demo");
+        }
+        SyncProperties properties = new SyncProperties();
+        properties.setDialect(SyncProperties.Dialect.H2);
+        properties.getCdc().setEnabled(true);
+        dmSyncService.shutdown();
+        dmSyncService = new DmSyncService(jdbcA, jdbcB, dbA, dbB, configService, logService, properties,
+                new SimpleMeterRegistry());
+
+        SyncConfig config = new SyncConfig();
+        config.setTableName("person");
+        config.setPrimaryKey("id");
+        config.setIncludeColumns(java.util.Arrays.asList("name", "email"));
+        configService.create(config);
+        dmSyncService.synchronizeAll();
+        assertThat(jdbcB.queryForObject("SELECT COUNT(*) FROM person", Integer.class)).isEqualTo(3);
+        assertThat(dmSyncService.getProgress()).singleElement().satisfies(
+                progress -> assertThat(progress.getMode()).isEqualTo("FULL_SCAN"));
+
+        jdbcA.update("UPDATE person SET email = 'changed@demo' WHERE id = 2");
+        jdbcA.update("DELETE FROM person WHERE id = 3");
+        jdbcA.update("INSERT INTO person (id, name, email) VALUES (?,?,?)", 4, "user4", "user4@demo");
+        assertThat(jdbcA.queryForObject("SELECT COUNT(*) FROM sync_change_log", Integer.class)).isEqualTo(3);
+        dmSyncService.synchronizeAll();
+
+        // only the three keys changed on dbA; the bridge's own writes to dbB were not logged there
+        assertThat(dmSyncService.getProgress()).singleElement().satisfies(progress -> {
+            assertThat(progress.getMode()).isEqualTo("CAPTURE");
+            assertThat(progress.getKeysInspected()).isEqualTo(3);
+        });
+        assertThat(jdbcB.queryForList("SELECT email FROM person ORDER BY id", String.class))
+                .containsExactly("user1@demo", "changed@demo", "user4@demo");
+        assertThat(jdbcA.queryForObject("SELECT COUNT(*) FROM sync_change_log", Integer.class)).isZero();
+        assertThat(jdbcB.queryForObject("SELECT COUNT(*) FROM sync_change_log", Integer.class)).isZero();
+    }
+
+    // reports every batched statement as Statement.SUCCESS_NO_INFO, as some drivers do
+    private static class NoInfoBatchDataSource extends org.springframework.jdbc.datasource.AbstractDataSource {
+        private final DataSource delegate;
+
+        private NoInfoBatchDataSource(DataSource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public java.sql.Connection getConnection() throws SQLException {
+            return wrap(delegate.getConnection());
+        }
+
+        @Override
+        public java.sql.Connection getConnection(String username, String password) throws SQLException {
+            return wrap(delegate.getConnection(username, password));
+        }
+
+        private static java.sql.Connection wrap(java.sql.Connection connection) {
+            return proxy(java.sql.Connection.class, connection, (method, result) ->
+                    method.getName().equals("prepareStatement")
+                            ? proxy(java.sql.PreparedStatement.class, result, (statementMethod, counts) ->
+                                    statementMethod.getName().equals("executeBatch")
+                                            ? noInfo(((int[]) counts).length) : counts)
+                            : result);
+        }
+
+        private static int[] noInfo(int length) {
+            int[] counts = new int[length];
+            java.util.Arrays.fill(counts, java.sql.Statement.SUCCESS_NO_INFO);
+            return counts;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, Object target,
+                                   java.util.function.BiFunction<java.lang.reflect.Method, Object, Object> after) {
+            return (T) java.lang.reflect.Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (self, method, args) -> {
+                        try {
+                            return after.apply(method, method.invoke(target, args));
+                        } catch (java.lang.reflect.InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+
+    // the connection drops as soon as a query result is read
+    private static class BrokenReadsDataSource extends org.springframework.jdbc.datasource.AbstractDataSource {
+        private final DataSource delegate;
+
+        private BrokenReadsDataSource(DataSource delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public java.sql.Connection getConnection() throws SQLException {
+            return wrap(delegate.getConnection());
+        }
+
+        @Override
+        public java.sql.Connection getConnection(String username, String password) throws SQLException {
+            return wrap(delegate.getConnection(username, password));
+        }
+
+        private static java.sql.Connection wrap(java.sql.Connection connection) {
+            return NoInfoBatchDataSource.proxy(java.sql.Connection.class, connection, (method, result) ->
+                    method.getName().equals("prepareStatement")
+                            ? NoInfoBatchDataSource.proxy(java.sql.PreparedStatement.class, result, (statementMethod, rs) ->
+                                    statementMethod.getName().equals("executeQuery")
+                                            ? NoInfoBatchDataSource.proxy(java.sql.ResultSet.class, rs, (rsMethod, value) -> {
+                                                if (rsMethod.getName().equals("next")) {
+                                                    throw new IllegalStateException("Connection reset");
+                                                }
+                                                return value;
+                                            }) : rs)
+                            : result);
+        }
+    }
+
     private static class ToggleableDataSource extends org.springframework.jdbc.datasource.AbstractDataSource {
         private final DataSource delegate;
         private final AtomicBoolean online = new AtomicBoolean(true);
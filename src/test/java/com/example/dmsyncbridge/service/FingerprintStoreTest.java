@@ -0,0 +1,53 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.config.SyncProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FingerprintStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void keepsFingerprintsAcrossGrowthRemovalAndReopen() {
+        SyncProperties.FingerprintProperties properties = new SyncProperties.FingerprintProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        properties.setInitialCapacity(16);
+        FingerprintStore store = new FingerprintStore(properties);
+        for (long id = 1; id <= 200; id++) {
+            store.record("orders", id, id * 7 + 1);
+        }
+        for (long id = 2; id <= 200; id += 2) {
+            store.forget("orders", id);
+        }
+        store.record("orders", 3L, 99);
+        assertThat(store.size("orders")).isEqualTo(100);
+        store.close();
+
+        FingerprintStore reopened = new FingerprintStore(properties);
+        assertThat(reopened.size("ORDERS")).isEqualTo(100);
+        assertThat(reopened.find("orders", 3)).isEqualTo(99);
+        assertThat(reopened.find("orders", new BigDecimal("5.00"))).isEqualTo(36);
+        for (long id = 7; id <= 200; id++) {
+            assertThat(reopened.find("orders", id)).isEqualTo(id % 2 == 0 ? 0 : id * 7 + 1);
+        }
+        assertThat(reopened.find("customers", 1L)).isZero();
+        reopened.close();
+    }
+
+    @Test
+    void disabledStoreRecordsNothing() {
+        FingerprintStore store = new FingerprintStore(new SyncProperties.FingerprintProperties());
+        store.record("orders", 1L, 42);
+
+        assertThat(store.find("orders", 1L)).isZero();
+        assertThat(store.size("orders")).isZero();
+    }
+}
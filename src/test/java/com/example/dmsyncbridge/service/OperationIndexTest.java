@@ -0,0 +1,85 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.entity.SyncConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OperationIndexTest {
+
+    @Test
+    void keepsTheLatestOperationPerRowAcrossGrowthAndRemoval() {
+        OperationIndex index = new OperationIndex(4096);
+        List<SyncOperation> first = new ArrayList<>();
+        for (long id = 1; id <= 3000; id++) {
+            first.add(index.register(operation(OperationType.INSERT, id, null)));
+        }
+        SyncOperation update = operation(OperationType.UPDATE, 7L, columns(1));
+        SyncOperation merged = index.register(update);
+        for (int i = 1; i < 3000; i += 2) {
+            index.completed(first.get(i));
+        }
+
+        assertThat(index.size()).isEqualTo(1500);
+        // the insert of row 7 was never applied, so the update carries it
+        assertThat(merged.getOperationType()).isEqualTo(OperationType.INSERT);
+        assertThat(index.isCurrent(first.get(6))).isFalse();
+        assertThat(index.isCurrent(merged)).isTrue();
+        for (int i = 0; i < 3000; i += 2) {
+            assertThat(index.isCurrent(first.get(i))).isEqualTo(i != 6);
+        }
+    }
+
+    @Test
+    void updatesOwedToTheTargetWriteTheUnionOfTheirColumns() {
+        OperationIndex index = new OperationIndex(16);
+        index.register(operation(OperationType.UPDATE, 1L, columns(1)));
+        SyncOperation next = index.register(operation(OperationType.UPDATE, 1L, columns(3)));
+        SyncOperation wide = index.register(operation(OperationType.UPDATE, 2L, columns(70)));
+        SyncOperation afterWide = index.register(operation(OperationType.UPDATE, 2L, columns(2)));
+
+        assertThat(next.getChangedColumns()).isEqualTo(columns(1, 3));
+        assertThat(wide.getChangedColumns()).isEqualTo(columns(70));
+        // columns past what a slot holds are written in full once merged
+        assertThat(afterWide.getChangedColumns()).isNull();
+    }
+
+    @Test
+    void rowsPastTheCapacityStayCurrentUntilIndexed() {
+        OperationIndex index = new OperationIndex(0);
+        List<SyncOperation> registered = new ArrayList<>();
+        for (long id = 1; id <= 1000; id++) {
+            registered.add(index.register(operation(OperationType.INSERT, id, null)));
+        }
+
+        assertThat(index.size()).isEqualTo(768);
+        SyncOperation unindexed = registered.get(999);
+        assertThat(unindexed.getVersion()).isZero();
+        assertThat(index.isCurrent(unindexed)).isTrue();
+        index.completed(registered.get(0));
+        SyncOperation newer = index.register(operation(OperationType.UPDATE, 1000L, null));
+        assertThat(index.isCurrent(unindexed)).isFalse();
+        assertThat(index.isCurrent(newer)).isTrue();
+    }
+
+    private static SyncOperation operation(OperationType type, Object key, BitSet changedColumns) {
+        SyncConfig config = new SyncConfig();
+        config.setTableName("Orders");
+        config.setPrimaryKey("id");
+        SyncOperation operation = new SyncOperation("dbA", "dbB", config, null, type, null, key);
+        operation.setChangedColumns(changedColumns);
+        return operation;
+    }
+
+    private static BitSet columns(int... indexes) {
+        BitSet columns = new BitSet();
+        for (int index : indexes) {
+            columns.set(index);
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.config.SyncProperties;
+import com.example.dmsyncbridge.entity.SyncConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OperationLogTest {
+
+    @TempDir
+    Path directory;
+
+    private EmbeddedDatabase db;
+    private JdbcTemplate jdbc;
+    private SyncConfig config;
+    private SyncPlan plan;
+    private OperationCodec.TableLookup tables;
+
+    @BeforeEach
+    void setUp() {
+        db = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbc = new JdbcTemplate(db);
+        jdbc.execute("CREATE TABLE sample (id BIGINT PRIMARY KEY, qty INT, amount DECIMAL(10,2), label VARCHAR(20), " +
+                "last_update TIMESTAMP)");
+        config = new SyncConfig();
+        config.setTableName("sample");
+        config.setPrimaryKey("id");
+        plan = SyncPlan.compile(config, SqlDialect.of(SyncProperties.Dialect.DM), jdbc, jdbc);
+        tables = new OperationCodec.TableLookup() {
+            @Override
+            public SyncConfig config(String tableName) {
+                return "sample".equals(tableName) ? config : null;
+            }
+
+            @Override
+            public SyncPlan plan(SyncConfig config) {
+                return plan;
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    void survivesReopenAcrossSegments() throws IOException {
+        Timestamp updated = Timestamp.valueOf("2024-05-24 10:12:45.123456");
+        for (long id = 1; id <= 200; id++) {
+            jdbc.update("INSERT INTO sample VALUES (?,?,?,?,?)", id, id % 3 == 0 ? null : (int) id,
+                    new BigDecimal(id + ".25"), "row" + id, updated);
+        }
+        OperationLog operationLog = new OperationLog(directory, 4096, "dbB", tables);
+        for (CompactRow row : readRows()) {
+            operationLog.add(new SyncOperation("dbA", "dbB", config, plan, OperationType.INSERT, row, value(row, "id")));
+        }
+        assertThat(segmentCount()).isGreaterThan(2);
+
+        assertThat(operationLog.poll(50)).hasSize(50);
+        operationLog.commit();
+        operationLog.close();
+
+        OperationLog reopened = new OperationLog(directory, 4096, "dbB", tables);
+        assertThat(reopened.size()).isEqualTo(150);
+        List<SyncOperation> remaining = reopened.poll(1000);
+        assertThat(remaining).hasSize(150);
+        SyncOperation first = remaining.get(0);
+        assertThat(first.getPrimaryKeyValue()).isEqualTo(51L);
+        assertThat(first.getRow().schema()).isSameAs(plan.getSchemaA());
+        assertThat(value(first.getRow(), "qty")).isNull();
+        assertThat(value(first.getRow(), "amount")).isEqualTo(new BigDecimal("51.25"));
+        assertThat(value(first.getRow(), "label")).isEqualTo("row51");
+        assertThat(value(first.getRow(), "last_update")).isEqualTo(updated);
+        assertThat(value(remaining.get(1).getRow(), "qty")).isEqualTo(52);
+
+        reopened.commit();
+        assertThat(segmentCount()).isEqualTo(1);
+        reopened.close();
+    }
+
+    @Test
+    void replaysUncommittedOperationsWithRetryState() throws IOException {
+        jdbc.update("INSERT INTO sample VALUES (?,?,?,?,?)", 1L, 1, BigDecimal.ONE, "one", null);
+        OperationLog operationLog = new OperationLog(directory, 4096, "dbB", tables);
+        SyncOperation operation = new SyncOperation("dbA", "dbB", config, plan, OperationType.UPDATE,
+                readRows().get(0), 1L);
+        operation.incrementAttempts();
+        operation.setVersion(7);
+        operation.setChangedColumns(BitSet.valueOf(new long[]{0b10010}));
+        operationLog.add(operation);
+        operationLog.commit();
+        assertThat(operationLog.poll(10)).singleElement().satisfies(op -> {
+            assertThat(op.getVersion()).isEqualTo(7);
+            assertThat(op.getChangedColumns()).isEqualTo(BitSet.valueOf(new long[]{0b10010}));
+        });
+        operationLog.close();
+
+        OperationLog reopened = new OperationLog(directory, 4096, "dbB", tables);
+        List<SyncOperation> replayed = reopened.poll(10);
+        assertThat(replayed).singleElement().satisfies(op -> {
+            assertThat(op.getOperationType()).isEqualTo(OperationType.UPDATE);
+            assertThat(op.getAttempts()).isEqualTo(1);
+            assertThat(op.getSourceDb()).isEqualTo("dbA");
+            assertThat(op.getVersion()).isZero();
+        });
+        reopened.close();
+    }
+
+    @Test
+    void checkpointStaysAtRetainedOperation() throws IOException {
+        for (long id = 1; id <= 3; id++) {
+            jdbc.update("INSERT INTO sample VALUES (?,?,?,?,?)", id, (int) id, BigDecimal.ONE, "row" + id, null);
+        }
+        OperationLog operationLog = new OperationLog(directory, 4096, "dbB", tables);
+        for (CompactRow row : readRows()) {
+            operationLog.add(new SyncOperation("dbA", "dbB", config, plan, OperationType.INSERT, row, value(row, "id")));
+        }
+        List<SyncOperation> polled = operationLog.poll(3);
+        operationLog.commit(polled.get(1).getQueueOffset());
+        operationLog.close();
+
+        OperationLog reopened = new OperationLog(directory, 4096, "dbB", tables);
+        assertThat(reopened.poll(10)).extracting(SyncOperation::getPrimaryKeyValue).containsExactly(2L, 3L);
+        reopened.close();
+    }
+
+    private static Object value(CompactRow row, String columnName) {
+        return row.get(row.schema().indexOf(columnName));
+    }
+
+    private List<CompactRow> readRows() {
+        return jdbc.query("SELECT * FROM sample ORDER BY id", rs -> {
+            List<CompactRow> rows = new ArrayList<>();
+            while (rs.next()) {
+                rows.add(plan.getSchemaA().read(rs));
+            }
+            return rows;
+        });
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".log")).count();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.dmsyncbridge.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PagePrefetcherTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .build();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        database.shutdown();
+    }
+
+    @Test
+    void readsAheadNoFurtherThanItsDepth() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        try (PagePrefetcher prefetcher = new PagePrefetcher(executor, 2, null, afterKey -> {
+            int page = reads.incrementAndGet();
+            return page(afterKey == null ? 0 : (Long) afterKey, page < 5 ? 3 : 1);
+        })) {
+            Thread.sleep(200);
+            // two pages wait in the hand-off and a third blocks on it
+            assertThat(reads.get()).isEqualTo(3);
+
+            List<Object> keys = new ArrayList<>();
+            PageBuffer page;
+            do {
+                page = prefetcher.next();
+                keys.add(page.getLastKey());
+            } while (!page.isExhausted());
+            assertThat(keys).containsExactly(3L, 6L, 9L, 12L, 13L);
+            assertThat(reads.get()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void rethrowsAFailedReadOnTheMergingThread() throws Exception {
+        try (PagePrefetcher prefetcher = new PagePrefetcher(executor, 2, null, afterKey -> {
+            if (afterKey != null) {
+                throw new SQLException("connection reset");
+            }
+            return page(0, 3);
+        })) {
+            assertThat(prefetcher.next().getLastKey()).isEqualTo(3L);
+            assertThatThrownBy(prefetcher::next).isInstanceOf(SQLException.class).hasMessage("connection reset");
+        }
+    }
+
+    // a page of `rows` consecutive keys after the given one; fewer than the page size of 3 ends the table
+    private PageBuffer page(long afterKey, int rows) throws SQLException {
+        PageBuffer page = new PageBuffer(3, afterKey);
+        try (RowCursor cursor = RowCursor.open(database, "SELECT X AS id FROM SYSTEM_RANGE(?, ?)",
+                Arrays.asList(afterKey + 1, afterKey + rows), 0, null, "id")) {
+            page.fill(cursor, 3);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.config.SyncProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class SyncJobServiceTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private DmSyncService dmSyncService;
+    private SyncJobService jobService;
+
+    @BeforeEach
+    void setUp() {
+        dmSyncService = mock(DmSyncService.class);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Collections.emptyList();
+        }).when(dmSyncService).synchronizeTables(anyCollection());
+        SyncProperties properties = new SyncProperties();
+        properties.getJobs().setConcurrency(1);
+        properties.getJobs().setQueueCapacity(1);
+        jobService = new SyncJobService(dmSyncService, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        jobService.shutdown();
+    }
+
+    @Test
+    void mergesTriggersForQueuedAndRunningTables() throws InterruptedException {
+        SyncJob running = jobService.submit(Collections.singletonList("orders"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        SyncJob queued = jobService.submit(Arrays.asList("customers", "Orders"));
+
+        assertThat(queued.getId()).isNotEqualTo(running.getId());
+        assertThat(queued.getTableNames()).containsExactly("customers");
+        assertThat(queued.getStatus()).isEqualTo(SyncJob.Status.QUEUED);
+        assertThat(running.getStatus()).isEqualTo(SyncJob.Status.RUNNING);
+        assertThat(running.getMergedTriggers()).isEqualTo(1);
+
+        assertThat(jobService.submit(Collections.singletonList("customers"))).isSameAs(queued);
+        assertThat(queued.getMergedTriggers()).isEqualTo(1);
+
+        release.countDown();
+        awaitStatus(queued, SyncJob.Status.COMPLETED);
+        assertThat(running.getStatus()).isEqualTo(SyncJob.Status.COMPLETED);
+        verify(dmSyncService, times(2)).synchronizeTables(anyCollection());
+    }
+
+    @Test
+    void rejectsTriggersBeyondTheQueueCapacity() throws InterruptedException {
+        jobService.submit(Collections.singletonList("orders"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        SyncJob queued = jobService.submit(Collections.singletonList("customers"));
+
+        SyncJob rejected = jobService.submit(Collections.singletonList("products"));
+
+        assertThat(rejected.getStatus()).isEqualTo(SyncJob.Status.REJECTED);
+        assertThat(rejected.getMessage()).contains("queue is full");
+        assertThat(jobService.find(rejected.getId())).isEmpty();
+        assertThat(jobService.find(queued.getId())).contains(queued);
+    }
+
+    @Test
+    void reportsTablesAnotherPassWasRunning() throws InterruptedException {
+        doAnswer(invocation -> Collections.singletonList("orders"))
+                .when(dmSyncService).synchronizeTables(Arrays.asList("orders", "customers"));
+
+        SyncJob job = jobService.submit(Arrays.asList("orders", "customers"));
+
+        awaitStatus(job, SyncJob.Status.INCOMPLETE);
+        assertThat(job.getMessage()).contains("[orders]");
+    }
+
+    private static void awaitStatus(SyncJob job, SyncJob.Status status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (job.getStatus() != status && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(job.getStatus()).isEqualTo(status);
+    }
+}
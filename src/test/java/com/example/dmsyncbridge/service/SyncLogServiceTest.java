@@ -0,0 +1,91 @@
+package com.example.dmsyncbridge.service;
+
+import com.example.dmsyncbridge.config.SyncProperties;
+import com.example.dmsyncbridge.entity.SyncLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SyncLogServiceTest {
+
+    private EmbeddedDatabase db;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        db = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbc = new JdbcTemplate(db);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    void flushesQueuedEntriesInBatches() {
+        SyncProperties properties = new SyncProperties();
+        properties.getLog().setBatchSize(50);
+        SyncLogService logService = new SyncLogService(jdbc, properties);
+        logService.ensureTableExists();
+
+        for (int i = 0; i < 1000; i++) {
+            logService.record("dbA", "dbB", "person", "INSERT", "SUCCESS", "row " + i);
+        }
+        logService.shutdown();
+
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM sync_log", Integer.class)).isEqualTo(1000);
+        assertThat(logService.getDroppedCount()).isZero();
+    }
+
+    @Test
+    void fallsBackToRingBufferNewestFirst() {
+        SyncProperties properties = new SyncProperties();
+        properties.getLog().setCapacity(16);
+        properties.getLog().setOverflowPolicy(SyncProperties.OverflowPolicy.DROP);
+        SyncLogService logService = new SyncLogService(jdbc, properties);
+
+        for (int i = 0; i < 40; i++) {
+            logService.record("dbA", "dbB", "person", "UPDATE", "SUCCESS", "row " + i);
+        }
+        logService.shutdown();
+
+        List<SyncLog> recent = logService.findRecent(3);
+        assertThat(recent).hasSize(3);
+        assertThat(recent).extracting(entry -> Integer.parseInt(entry.getMessage().substring(4)))
+                .isSortedAccordingTo(java.util.Comparator.reverseOrder());
+    }
+
+    @Test
+    void ringBufferRejectsWhenFullUntilDrained() {
+        SyncLogRingBuffer ringBuffer = new SyncLogRingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(ringBuffer.tryPublish(entry("row " + i))).isTrue();
+        }
+        assertThat(ringBuffer.tryPublish(entry("row 4"))).isFalse();
+
+        List<SyncLog> drained = new java.util.ArrayList<>();
+        assertThat(ringBuffer.drainTo(drained, 2)).isEqualTo(2);
+        assertThat(ringBuffer.tryPublish(entry("row 4"))).isTrue();
+
+        assertThat(ringBuffer.latest(10)).extracting(SyncLog::getMessage)
+                .containsExactly("row 4", "row 3", "row 2", "row 1");
+    }
+
+    private SyncLog entry(String message) {
+        SyncLog log = new SyncLog();
+        log.setMessage(message);
+        return log;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.dmsyncbridge.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SyncWatermarkStoreTest {
+
+    private EmbeddedDatabase db;
+    private SyncWatermarkStore store;
+
+    @BeforeEach
+    void setUp() {
+        db = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        store = new SyncWatermarkStore(new JdbcTemplate(db));
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    void resumeKeysKeepTheirType() {
+        Timestamp cutoff = Timestamp.valueOf("2024-05-01 10:00:00");
+        store.saveCheckpoint("orders", "sig", new ScanCheckpoint(9L, cutoff, cutoff, 9));
+        store.save("orders", "dbA", "sig", new SyncWatermark(cutoff, new BigDecimal("12.50")));
+        store.save("orders", "dbB", "sig", new SyncWatermark(cutoff, "k-10"));
+
+        Object checkpointKey = store.findCheckpoint("orders", "sig").getLastKey();
+        assertThat(checkpointKey).isEqualTo(9L);
+        // compared as numbers, not as the text "9"
+        assertThat(MergeReconciler.compareKeys(checkpointKey, 10)).isNegative();
+        assertThat(store.find("orders", "dbA", "sig").getLastKey()).isEqualTo(new BigDecimal("12.50"));
+        assertThat(store.find("orders", "dbB", "sig").getLastKey()).isEqualTo("k-10");
+    }
+}